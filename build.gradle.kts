@@ -3,6 +3,7 @@ plugins {
     id("org.springframework.boot") version "3.5.5"
     id("io.spring.dependency-management") version "1.1.7"
     id("jacoco")
+    id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "edu.trincoll"
@@ -15,10 +16,14 @@ repositories {
 dependencies {
     implementation("org.springframework.boot:spring-boot-starter-web")
     implementation("org.springframework.boot:spring-boot-starter-validation")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
+    implementation("org.roaringbitmap:RoaringBitmap:1.3.0")
     
     testImplementation("org.springframework.boot:spring-boot-starter-test")
     testImplementation("org.assertj:assertj-core")
     testImplementation("org.mockito:mockito-core")
+    testImplementation("org.openjdk.jol:jol-core:0.17")
 }
 
 val isJacocoReportRequested =
@@ -68,6 +73,26 @@ tasks.check {
     dependsOn(tasks.jacocoTestCoverageVerification)
 }
 
+// Benchmarks live in src/jmh/java. `./gradlew benchmark` runs the whole suite and
+// writes build/reports/jmh/results.json, which can be diffed between releases.
+// -PjmhSizes=10000,100000 narrows the dataset sizes, -PjmhInclude=<regex> the benchmarks.
+jmh {
+    jmhVersion.set("1.37")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+    jvmArgs.addAll("-Xms2g", "-Xmx" + (findProperty("jmhHeap") ?: "16g"))
+    findProperty("jmhSizes")?.let { sizes ->
+        benchmarkParameters.put("size", objects.listProperty<String>().value(sizes.toString().split(",")))
+    }
+    findProperty("jmhInclude")?.let { includes.add(it.toString()) }
+}
+
+tasks.register("benchmark") {
+    group = "verification"
+    description = "Runs the JMH benchmark suite and writes a JSON report to build/reports/jmh/results.json"
+    dependsOn(tasks.named("jmh"))
+}
+
 java {
     toolchain {
         languageVersion.set(JavaLanguageVersion.of(21))
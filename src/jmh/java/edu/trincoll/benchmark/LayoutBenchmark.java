@@ -0,0 +1,90 @@
+package edu.trincoll.benchmark;
+
+import edu.trincoll.model.Quote;
+import edu.trincoll.repository.ColumnarQuoteRepository;
+import edu.trincoll.repository.InMemoryQuoteRepository;
+import edu.trincoll.repository.QuoteRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The analytic queries against the row-oriented (indexed) and the columnar
+ * repository, on the same data. The aggregates behind
+ * {@code QuoteService.groupByCategory} and {@code getAllUniqueTags} are called on
+ * the repository, since the service would answer every call after the first
+ * from its result cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LayoutBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"inMemory", "columnar"})
+    public String layout;
+
+    private QuoteRepository repository;
+
+    @Setup(Level.Trial)
+    public void load() {
+        repository = layout.equals("columnar") ? new ColumnarQuoteRepository() : new InMemoryQuoteRepository();
+        repository.saveAll(QuoteFixtures.quotes(size, 42));
+    }
+
+    @Benchmark
+    public Map<Quote.Status, Long> countByStatus() {
+        return repository.countByStatus();
+    }
+
+    @Benchmark
+    public SortedSet<String> distinctCategories() {
+        return repository.findDistinctCategories();
+    }
+
+    @Benchmark
+    public List<String> mostPopularTags() {
+        return repository.findMostPopularTags(10);
+    }
+
+    @Benchmark
+    public List<Quote> findByCategory() {
+        return repository.findByCategory(QuoteFixtures.category(ThreadLocalRandom.current().nextInt(QuoteFixtures.CATEGORIES)));
+    }
+
+    @Benchmark
+    public List<Quote> findByStatus() {
+        return repository.findByStatus(Quote.Status.ARCHIVED);
+    }
+
+    @Benchmark
+    public SortedMap<String, List<Quote>> groupByCategory() {
+        return repository.groupByCategory();
+    }
+
+    @Benchmark
+    public SortedSet<String> distinctTags() {
+        return repository.findDistinctTags();
+    }
+}
@@ -0,0 +1,97 @@
+package edu.trincoll.benchmark;
+
+import edu.trincoll.metrics.MeteredQuoteRepository;
+import edu.trincoll.metrics.QueryMetrics;
+import edu.trincoll.model.Quote;
+import edu.trincoll.repository.InMemoryQuoteRepository;
+import edu.trincoll.repository.QueryResult;
+import edu.trincoll.repository.QuoteQuery;
+import edu.trincoll.repository.QuoteRepository;
+import edu.trincoll.service.ParallelQueries;
+import edu.trincoll.service.QuoteService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of the query metrics: the same finders and service queries on a
+ * plain repository and service, on ones recording as the application does by
+ * default (histogram buckets), and with percentiles computed in process as
+ * well. The cheapest calls, a lookup by id and a cached aggregate, show the
+ * fixed cost per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsOverheadBenchmark {
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    @Param({"plain", "instrumented", "percentiles"})
+    public String metrics;
+
+    private QuoteRepository repository;
+    private QuoteService service;
+
+    @Setup(Level.Trial)
+    public void load() {
+        repository = new InMemoryQuoteRepository();
+        QueryMetrics serviceMetrics = QueryMetrics.NONE;
+        if (!metrics.equals("plain")) {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            double[] percentiles = metrics.equals("percentiles") ? new double[]{0.5, 0.95, 0.99} : new double[0];
+            repository = new MeteredQuoteRepository(repository,
+                    new QueryMetrics(registry, "quotes.repository", percentiles, true));
+            serviceMetrics = new QueryMetrics(registry, "quotes.service", percentiles, true);
+        }
+        service = new QuoteService(repository, ParallelQueries.SEQUENTIAL, serviceMetrics);
+        repository.saveAll(QuoteFixtures.quotes(size, 42));
+    }
+
+    @Benchmark
+    public Optional<Quote> findById() {
+        return repository.findById(1 + ThreadLocalRandom.current().nextLong(size));
+    }
+
+    @Benchmark
+    public List<Quote> findByTag() {
+        return repository.findByTag(QuoteFixtures.tag(ThreadLocalRandom.current().nextInt(50)));
+    }
+
+    @Benchmark
+    public QueryResult query() {
+        String category = QuoteFixtures.category(ThreadLocalRandom.current().nextInt(QuoteFixtures.CATEGORIES));
+        return repository.query(new QuoteQuery(Quote.Status.ACTIVE, category, null, null, null, null, 20));
+    }
+
+    @Benchmark
+    public Map<Quote.Status, Long> serviceCountByStatus() {
+        return service.countByStatus();
+    }
+
+    @Benchmark
+    public List<Quote> serviceSearch() {
+        return service.search(QuoteFixtures.word(new SplittableRandom(ThreadLocalRandom.current().nextLong())));
+    }
+}
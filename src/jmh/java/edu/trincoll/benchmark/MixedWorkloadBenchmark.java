@@ -0,0 +1,106 @@
+package edu.trincoll.benchmark;
+
+import edu.trincoll.model.Quote;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrent readers and writers against one store. Each group is a different
+ * reader/writer thread mix; JMH reports throughput per method within a group.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MixedWorkloadBenchmark {
+
+    // 7 readers : 1 writer
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(7)
+    public List<Quote> readMostlyRead(QuoteStore store) {
+        return read(store);
+    }
+
+    @Benchmark
+    @Group("readMostly")
+    @GroupThreads(1)
+    public Quote readMostlyWrite(QuoteStore store) {
+        return write(store);
+    }
+
+    // 4 readers : 4 writers
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(4)
+    public List<Quote> balancedRead(QuoteStore store) {
+        return read(store);
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(4)
+    public Quote balancedWrite(QuoteStore store) {
+        return write(store);
+    }
+
+    // 1 reader : 3 writers
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(1)
+    public List<Quote> writeHeavyRead(QuoteStore store) {
+        return read(store);
+    }
+
+    @Benchmark
+    @Group("writeHeavy")
+    @GroupThreads(3)
+    public Quote writeHeavyWrite(QuoteStore store) {
+        return write(store);
+    }
+
+    // 16 readers polling the dashboard aggregate : 1 writer
+
+    @Benchmark
+    @Group("dashboard")
+    @GroupThreads(16)
+    public Map<Quote.Status, Long> dashboardRead(QuoteStore store) {
+        return store.service.countByStatus();
+    }
+
+    @Benchmark
+    @Group("dashboard")
+    @GroupThreads(1)
+    public Quote dashboardWrite(QuoteStore store) {
+        return write(store);
+    }
+
+    private static List<Quote> read(QuoteStore store) {
+        return switch ((int) (store.randomId() % 3)) {
+            case 0 -> store.repository.findByCategory(store.randomCategory());
+            case 1 -> store.repository.findByAuthor(store.randomAuthor());
+            default -> store.service.search(store.randomWord() + " " + store.randomWord());
+        };
+    }
+
+    private static Quote write(QuoteStore store) {
+        Quote quote = store.randomQuote();
+        quote.setStatus(quote.getStatus() == Quote.Status.ACTIVE ? Quote.Status.INACTIVE : Quote.Status.ACTIVE);
+        return store.service.save(quote);
+    }
+}
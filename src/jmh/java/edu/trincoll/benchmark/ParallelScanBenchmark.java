@@ -0,0 +1,66 @@
+package edu.trincoll.benchmark;
+
+import edu.trincoll.model.Quote;
+import edu.trincoll.repository.InMemoryQuoteRepository;
+import edu.trincoll.search.SearchMode;
+import edu.trincoll.service.ParallelQueries;
+import edu.trincoll.service.QuoteService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of substring search, the only QuoteService scan left on the dedicated
+ * pool, with the size of that pool. The category groups and distinct tags are
+ * aggregated by the repository and are measured in {@link LayoutBenchmark}
+ * instead. A parallelism of 1 runs sequentially; parallelism beyond the
+ * machine's core count shows where the speedup flattens out.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelScanBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int parallelism;
+
+    private ParallelQueries parallel;
+    private QuoteService service;
+
+    @Setup(Level.Trial)
+    public void load() {
+        InMemoryQuoteRepository repository = new InMemoryQuoteRepository();
+        repository.saveAll(QuoteFixtures.quotes(size, 42));
+        parallel = parallelism == 1 ? ParallelQueries.SEQUENTIAL : ParallelQueries.of(parallelism, 1);
+        service = new QuoteService(repository, parallel);
+    }
+
+    @TearDown(Level.Trial)
+    public void shutDown() {
+        parallel.close();
+    }
+
+    @Benchmark
+    public List<Quote> searchSubstring() {
+        return service.search("wisdom", SearchMode.SUBSTRING);
+    }
+}
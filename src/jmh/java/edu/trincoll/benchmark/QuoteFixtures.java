@@ -0,0 +1,90 @@
+package edu.trincoll.benchmark;
+
+import edu.trincoll.model.Quote;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic quote data with realistic cardinalities: about 200 categories,
+ * a few thousand authors, and a tag vocabulary with a skewed popularity curve.
+ */
+final class QuoteFixtures {
+
+    static final int CATEGORIES = 200;
+    static final int AUTHORS = 4_000;
+    static final int SOURCES = 20_000;
+    static final int PUBLISHERS = 300;
+    static final int TAGS = 1_000;
+
+    private static final String[] WORDS = {
+            "love", "life", "wisdom", "time", "truth", "courage", "fear", "hope", "nature", "mind",
+            "heart", "virtue", "friendship", "death", "happiness", "freedom", "power", "art", "war", "peace",
+            "knowledge", "silence", "change", "faith", "beauty", "work", "reason", "memory", "soul", "fate"
+    };
+
+    private QuoteFixtures() {
+    }
+
+    /**
+     * Builds {@code count} unsaved quotes; the same seed always yields the same data
+     */
+    static List<Quote> quotes(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Quote> quotes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            quotes.add(quote(random, i));
+        }
+        return quotes;
+    }
+
+    static Quote quote(SplittableRandom random, int n) {
+        Quote quote = new Quote(sentence(random, 3 + random.nextInt(5)) + " " + n,
+                sentence(random, 10 + random.nextInt(20)));
+        quote.setCategory(category(random.nextInt(CATEGORIES)));
+        quote.setAuthor(author(random.nextInt(AUTHORS)));
+        quote.setSource("Source " + random.nextInt(SOURCES));
+        quote.setPublisher("Publisher " + random.nextInt(PUBLISHERS));
+        int tags = 1 + random.nextInt(5);
+        for (int t = 0; t < tags; t++) {
+            quote.addTag(tag(skewed(random, TAGS)));
+        }
+        int roll = random.nextInt(10);
+        quote.setStatus(roll < 7 ? Quote.Status.ACTIVE : roll < 9 ? Quote.Status.INACTIVE : Quote.Status.ARCHIVED);
+        return quote;
+    }
+
+    static String category(int n) {
+        return "Category " + n;
+    }
+
+    static String author(int n) {
+        return "Author " + n;
+    }
+
+    static String tag(int n) {
+        return n < WORDS.length ? WORDS[n] : "tag-" + n;
+    }
+
+    static String word(SplittableRandom random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String sentence(SplittableRandom random, int words) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(word(random));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Index in [0, bound) biased toward small values, so low tags are the popular ones
+     */
+    private static int skewed(SplittableRandom random, int bound) {
+        double u = random.nextDouble();
+        return (int) (bound * u * u * u);
+    }
+}
@@ -0,0 +1,67 @@
+package edu.trincoll.benchmark;
+
+import edu.trincoll.model.Quote;
+import edu.trincoll.search.SearchMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded latency of the QuoteService analytics and search methods.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QuoteServiceBenchmark {
+
+    @Benchmark
+    public List<Quote> search(QuoteStore store) {
+        return store.service.search(store.randomWord());
+    }
+
+    @Benchmark
+    public List<Quote> searchSubstring(QuoteStore store) {
+        return store.service.search(store.randomWord(), SearchMode.SUBSTRING);
+    }
+
+    @Benchmark
+    public Map<String, List<Quote>> groupByCategory(QuoteStore store) {
+        return store.service.groupByCategory();
+    }
+
+    @Benchmark
+    public Set<String> getAllUniqueTags(QuoteStore store) {
+        return store.service.getAllUniqueTags();
+    }
+
+    @Benchmark
+    public List<String> getMostPopularTags(QuoteStore store) {
+        return store.service.getMostPopularTags(20);
+    }
+
+    @Benchmark
+    public List<Quote> findByAllTags(QuoteStore store) {
+        return store.service.findByAllTags(Set.of(store.randomTag(), "tag-" + (50 + store.randomId() % 950)));
+    }
+
+    @Benchmark
+    public List<Quote> findByAnyTag(QuoteStore store) {
+        return store.service.findByAnyTag(Set.of("tag-" + (50 + store.randomId() % 950), "tag-999"));
+    }
+
+    @Benchmark
+    public Map<Quote.Status, Long> countByStatus(QuoteStore store) {
+        return store.service.countByStatus();
+    }
+}
@@ -0,0 +1,121 @@
+package edu.trincoll.benchmark;
+
+import edu.trincoll.model.Quote;
+import edu.trincoll.repository.InMemoryQuoteRepository;
+import edu.trincoll.service.QuoteService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A repository and service preloaded with {@code size} quotes, shared by every
+ * thread of a benchmark. Quotes saved during an iteration are removed again
+ * afterwards so the dataset size stays what the parameter says.
+ */
+@State(Scope.Benchmark)
+public class QuoteStore {
+
+    private static final int LOAD_BATCH = 10_000;
+
+    @Param({"10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    public InMemoryQuoteRepository repository;
+    public QuoteService service;
+
+    /**
+     * Creation times of the first and last preloaded quotes
+     */
+    public LocalDateTime firstCreated;
+    public LocalDateTime lastCreated;
+
+    @Setup(Level.Trial)
+    public void load() {
+        repository = new InMemoryQuoteRepository();
+        service = new QuoteService(repository);
+        SplittableRandom random = new SplittableRandom(42);
+        for (int loaded = 0; loaded < size; loaded += LOAD_BATCH) {
+            int batch = Math.min(LOAD_BATCH, size - loaded);
+            List<Quote> quotes = new ArrayList<>(batch);
+            for (int i = 0; i < batch; i++) {
+                quotes.add(QuoteFixtures.quote(random, loaded + i));
+            }
+            repository.saveAll(quotes);
+        }
+        firstCreated = repository.findById(1L).orElseThrow().getCreatedAt();
+        lastCreated = repository.findById((long) size).orElseThrow().getCreatedAt();
+    }
+
+    @TearDown(Level.Iteration)
+    public void dropInserted() {
+        // ids are assigned from 1, so anything above size was inserted by a benchmark
+        while (repository.count() > size) {
+            var page = repository.findAll((long) size, 10_000);
+            page.items().forEach(q -> repository.deleteById(q.getId()));
+        }
+    }
+
+    /**
+     * Id of a random preloaded quote
+     */
+    public long randomId() {
+        return 1 + ThreadLocalRandom.current().nextLong(size);
+    }
+
+    /**
+     * A preloaded quote, fetched for an update benchmark
+     */
+    public Quote randomQuote() {
+        return repository.findById(randomId()).orElseThrow();
+    }
+
+    /**
+     * A random time between the first and last preloaded quote's creation
+     */
+    public LocalDateTime randomCreatedTime() {
+        return firstCreated.plusNanos(ThreadLocalRandom.current().nextLong(Math.max(1, createdSpan().toNanos())));
+    }
+
+    /**
+     * The time the preloaded quotes were created over
+     */
+    public Duration createdSpan() {
+        return Duration.between(firstCreated, lastCreated);
+    }
+
+    public String randomCategory() {
+        return QuoteFixtures.category(ThreadLocalRandom.current().nextInt(QuoteFixtures.CATEGORIES));
+    }
+
+    public String randomAuthor() {
+        return QuoteFixtures.author(ThreadLocalRandom.current().nextInt(QuoteFixtures.AUTHORS));
+    }
+
+    /**
+     * One of the 50 most common tags, so tag queries return non-trivial results
+     */
+    public String randomTag() {
+        return QuoteFixtures.tag(ThreadLocalRandom.current().nextInt(50));
+    }
+
+    public String randomWord() {
+        return QuoteFixtures.word(new SplittableRandom(ThreadLocalRandom.current().nextLong()));
+    }
+
+    /**
+     * A new, unsaved quote
+     */
+    public Quote newQuote() {
+        return QuoteFixtures.quote(new SplittableRandom(ThreadLocalRandom.current().nextLong()), size);
+    }
+}
@@ -0,0 +1,88 @@
+package edu.trincoll.benchmark;
+
+import edu.trincoll.model.Quote;
+import edu.trincoll.persistence.FileQuoteJournal;
+import edu.trincoll.repository.InMemoryQuoteRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Time from opening a journal directory to a fully indexed repository, when the
+ * state is one mapped snapshot of {@code size} quotes.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RecoveryBenchmark {
+
+    private static final int LOAD_BATCH = 10_000;
+
+    @Param({"100000", "1000000", "5000000"})
+    public int size;
+
+    private Path directory;
+
+    @Setup(Level.Trial)
+    public void writeSnapshot() throws IOException {
+        directory = Files.createTempDirectory("quote-recovery");
+        // one snapshot is due exactly when the last batch has been logged
+        try (FileQuoteJournal journal = open(size)) {
+            InMemoryQuoteRepository repository = new InMemoryQuoteRepository(journal);
+            SplittableRandom random = new SplittableRandom(42);
+            for (int loaded = 0; loaded < size; loaded += LOAD_BATCH) {
+                int batch = Math.min(LOAD_BATCH, size - loaded);
+                List<Quote> quotes = new ArrayList<>(batch);
+                for (int i = 0; i < batch; i++) {
+                    quotes.add(QuoteFixtures.quote(random, loaded + i));
+                }
+                repository.saveAll(quotes);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteSnapshot() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private FileQuoteJournal open(long snapshotEvery) {
+        return new FileQuoteJournal(directory, FileQuoteJournal.SyncMode.INTERVAL, Duration.ofMillis(10), snapshotEvery);
+    }
+
+    @Benchmark
+    public long recover() {
+        // a huge threshold keeps the benchmark from writing snapshots of its own
+        try (FileQuoteJournal journal = open(Long.MAX_VALUE)) {
+            return new InMemoryQuoteRepository(journal).count();
+        }
+    }
+}
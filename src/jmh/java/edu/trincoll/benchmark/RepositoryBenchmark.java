@@ -0,0 +1,193 @@
+package edu.trincoll.benchmark;
+
+import edu.trincoll.model.Quote;
+import edu.trincoll.repository.CursorPage;
+import edu.trincoll.repository.QueryResult;
+import edu.trincoll.repository.QuoteQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded latency of every QuoteRepository finder and of save/saveAll.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmark {
+
+    private static final int SAVE_ALL_BATCH = 1_000;
+
+    @Benchmark
+    public Optional<Quote> findById(QuoteStore store) {
+        return store.repository.findById(store.randomId());
+    }
+
+    @Benchmark
+    public List<Quote> findAll(QuoteStore store) {
+        return store.repository.findAll();
+    }
+
+    @Benchmark
+    public CursorPage<Quote, Long> findAllPage(QuoteStore store) {
+        return store.repository.findAll(store.randomId(), 100);
+    }
+
+    @Benchmark
+    public List<Quote> findByStatus(QuoteStore store) {
+        return store.repository.findByStatus(Quote.Status.ARCHIVED);
+    }
+
+    @Benchmark
+    public CursorPage<Quote, Long> findByStatusPage(QuoteStore store) {
+        return store.repository.findByStatus(Quote.Status.ARCHIVED, store.randomId(), 100);
+    }
+
+    @Benchmark
+    public Map<Quote.Status, Long> countByStatus(QuoteStore store) {
+        return store.repository.countByStatus();
+    }
+
+    @Benchmark
+    public List<Quote> findByCategory(QuoteStore store) {
+        return store.repository.findByCategory(store.randomCategory());
+    }
+
+    @Benchmark
+    public CursorPage<Quote, Long> findByCategoryPage(QuoteStore store) {
+        return store.repository.findByCategory(store.randomCategory(), store.randomId(), 100);
+    }
+
+    @Benchmark
+    public SortedSet<String> findDistinctCategories(QuoteStore store) {
+        return store.repository.findDistinctCategories();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SortedMap<String, List<Quote>> groupByCategory(QuoteStore store) {
+        return store.repository.groupByCategory();
+    }
+
+    @Benchmark
+    public List<Quote> findByTag(QuoteStore store) {
+        return store.repository.findByTag(store.randomTag());
+    }
+
+    @Benchmark
+    public List<Quote> findByAllTags(QuoteStore store) {
+        return store.repository.findByAllTags(List.of(store.randomTag(), store.randomTag()));
+    }
+
+    @Benchmark
+    public List<Quote> findByAnyTag(QuoteStore store) {
+        return store.repository.findByAnyTag(List.of(store.randomTag(), store.randomTag()));
+    }
+
+    @Benchmark
+    public List<String> findMostPopularTags(QuoteStore store) {
+        return store.repository.findMostPopularTags(20);
+    }
+
+    @Benchmark
+    public SortedSet<String> findDistinctTags(QuoteStore store) {
+        return store.repository.findDistinctTags();
+    }
+
+    @Benchmark
+    public List<Quote> findCreatedBetween(QuoteStore store) {
+        LocalDateTime from = store.randomCreatedTime();
+        return store.repository.findCreatedBetween(from, from.plus(store.createdSpan().dividedBy(100)));
+    }
+
+    @Benchmark
+    public List<Quote> findUpdatedSince(QuoteStore store) {
+        // preloaded quotes are never updated, so their updated time is their creation time
+        return store.repository.findUpdatedSince(store.lastCreated.minus(store.createdSpan().dividedBy(100)));
+    }
+
+    @Benchmark
+    public List<Quote> findLatest(QuoteStore store) {
+        return store.repository.findLatest(20);
+    }
+
+    @Benchmark
+    public List<Quote> findByTitleContaining(QuoteStore store) {
+        return store.repository.findByTitleContaining(" " + store.randomId());
+    }
+
+    @Benchmark
+    public List<Quote> findByText(QuoteStore store) {
+        return store.repository.findByText(store.randomWord() + " " + store.randomWord());
+    }
+
+    @Benchmark
+    public CursorPage<Quote, Long> findByTextPage(QuoteStore store) {
+        return store.repository.findByText(store.randomWord(), store.randomId(), 100);
+    }
+
+    @Benchmark
+    public QueryResult query(QuoteStore store) {
+        return store.repository.query(new QuoteQuery(Quote.Status.ACTIVE, store.randomCategory(),
+                null, null, null, QuoteQuery.Sort.TITLE, 20));
+    }
+
+    @Benchmark
+    public QueryResult queryByTagAndText(QuoteStore store) {
+        return store.repository.query(new QuoteQuery(null, null, Set.of(store.randomTag()), null,
+                store.randomWord(), QuoteQuery.Sort.UPDATED, 20));
+    }
+
+    @Benchmark
+    public List<Quote> findByAuthor(QuoteStore store) {
+        return store.repository.findByAuthor(store.randomAuthor());
+    }
+
+    @Benchmark
+    public List<Quote> findBySource(QuoteStore store) {
+        return store.repository.findBySource("Source 17");
+    }
+
+    @Benchmark
+    public List<Quote> findByPublisher(QuoteStore store) {
+        return store.repository.findByPublisher("Publisher 17");
+    }
+
+    @Benchmark
+    public Quote saveUpdate(QuoteStore store) {
+        Quote quote = store.randomQuote();
+        quote.setCategory(store.randomCategory());
+        return store.repository.save(quote);
+    }
+
+    @Benchmark
+    public Quote saveNew(QuoteStore store) {
+        return store.repository.save(store.newQuote());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Quote> saveAll(QuoteStore store) {
+        List<Quote> batch = new ArrayList<>(SAVE_ALL_BATCH);
+        for (int i = 0; i < SAVE_ALL_BATCH; i++) {
+            batch.add(store.newQuote());
+        }
+        return store.repository.saveAll(batch);
+    }
+}
@@ -0,0 +1,109 @@
+package edu.trincoll.controller;
+
+import edu.trincoll.repository.ChangeFeed;
+import edu.trincoll.repository.QuoteChange;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Streams a {@link ChangeFeed} as server-sent events. Every change is sent as a
+ * {@code change} event whose id is its sequence number, so a reconnecting
+ * client resumes through the Last-Event-ID header.
+ * <p>
+ * Each client is followed by a virtual thread of its own, so a slow client only
+ * holds up itself. Writers never wait for it; if it falls behind by more than
+ * the feed holds, it gets a {@code resync} event carrying the latest sequence
+ * number and the stream ends. The client should then reload the quotes and
+ * resume from that number.
+ * <p>
+ * Open streams are ended when the application shuts down, before the web
+ * server waits for active requests, so they do not hold up a graceful shutdown.
+ */
+@Component
+public class ChangeFeedWriter implements SmartLifecycle {
+
+    private static final int BATCH_SIZE = 256;
+    // an idle stream sends a comment this often, which also notices clients that left
+    private static final long HEARTBEAT_MILLIS = 15_000;
+    private static final long TIMEOUT_MILLIS = 30 * 60_000;
+
+    private final Set<SseEmitter> open = ConcurrentHashMap.newKeySet();
+    private volatile boolean running;
+
+    /**
+     * @param after sequence number of the last change the client has seen, or
+     *              null to receive only changes made from now on
+     */
+    public SseEmitter stream(ChangeFeed feed, Long after) {
+        SseEmitter emitter = new SseEmitter(TIMEOUT_MILLIS);
+        long position = after == null ? feed.latest() : after;
+        Thread follower = Thread.ofVirtual().name("change-feed").unstarted(() -> follow(feed, position, emitter));
+        emitter.onCompletion(() -> {
+            open.remove(emitter);
+            follower.interrupt();
+        });
+        emitter.onError(e -> follower.interrupt());
+        emitter.onTimeout(emitter::complete);
+        open.add(emitter);
+        follower.start();
+        return emitter;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        open.forEach(SseEmitter::complete);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // stop before the web server's graceful shutdown starts waiting
+        return Integer.MAX_VALUE;
+    }
+
+    private static void follow(ChangeFeed feed, long after, SseEmitter emitter) {
+        long position = after;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                ChangeFeed.Batch batch = feed.await(position, BATCH_SIZE, HEARTBEAT_MILLIS);
+                if (batch.resyncRequired()) {
+                    emitter.send(SseEmitter.event().name("resync").data(Map.of("latest", feed.latest())));
+                    emitter.complete();
+                    return;
+                }
+                if (batch.changes().isEmpty()) {
+                    emitter.send(SseEmitter.event().comment("keep-alive"));
+                }
+                for (QuoteChange change : batch.changes()) {
+                    emitter.send(SseEmitter.event()
+                            .id(Long.toString(change.sequence()))
+                            .name("change")
+                            .data(change, MediaType.APPLICATION_JSON));
+                    position = change.sequence();
+                }
+            }
+        } catch (InterruptedException e) {
+            // the stream was completed or timed out
+            Thread.currentThread().interrupt();
+        } catch (IOException | IllegalStateException e) {
+            // the client went away; the emitter has already been completed
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package edu.trincoll.controller;
+
+import edu.trincoll.repository.QuoteRepository;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+
+/**
+ * Adds an ETag to the responses of {@link ETagged} endpoints and answers
+ * {@code 304 Not Modified} when the request's If-None-Match still matches,
+ * before the handler or the service runs.
+ * <p>
+ * The tag is the repository version, store-wide or of one quote, and is read
+ * before the handler runs, so a response is never tagged newer than its body;
+ * a write racing the request costs the client one extra full response at
+ * worst. The tags themselves are made by {@link ETags}.
+ * <p>
+ * Some URLs are served as JSON or as NDJSON depending on the Accept header.
+ * A handler that declares what it produces gets a tag naming that
+ * representation, and every tagged response varies by Accept, so caches
+ * never answer one representation's conditional request with the other's.
+ */
+@Component
+public class ETagInterceptor implements HandlerInterceptor {
+
+    private final QuoteRepository repository;
+    private final ETags etags;
+
+    public ETagInterceptor(QuoteRepository repository, ETags etags) {
+        this.repository = repository;
+        this.etags = etags;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod method)) return true;
+        ETagged tagged = method.getMethodAnnotation(ETagged.class);
+        if (tagged == null) return true;
+        if (!request.getMethod().equals("GET") && !request.getMethod().equals("HEAD")) return true;
+        // a streamed response was tagged when it started
+        if (request.getDispatcherType() == DispatcherType.ASYNC) return true;
+
+        String etag = etag(tagged.value(), request);
+        if (etag == null) return true;
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        if (ETags.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return false;
+        }
+        return true;
+    }
+
+    private String etag(ETagged.Scope scope, HttpServletRequest request) {
+        if (scope == ETagged.Scope.STORE) {
+            // set by the handler mapping when the handler declares what it produces
+            @SuppressWarnings("unchecked")
+            Set<MediaType> produces =
+                    (Set<MediaType>) request.getAttribute(HandlerMapping.PRODUCIBLE_MEDIA_TYPES_ATTRIBUTE);
+            return produces == null || produces.isEmpty()
+                    ? etags.store(repository.version())
+                    : etags.store(repository.version(), produces.iterator().next().getSubtype());
+        }
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String id = variables == null ? null : variables.get("id");
+        if (id == null) return null;
+        long quoteId;
+        try {
+            quoteId = Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            // let the handler report the bad id
+            return null;
+        }
+        OptionalLong version = repository.version(quoteId);
+        return version.isPresent() ? etags.quote(quoteId, version.getAsLong()) : null;
+    }
+}
@@ -0,0 +1,29 @@
+package edu.trincoll.controller;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a GET endpoint whose response is fully determined by the stored quotes,
+ * so {@link ETagInterceptor} can tag it with a version and answer conditional
+ * requests without calling it
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ETagged {
+
+    Scope value() default Scope.STORE;
+
+    enum Scope {
+        /**
+         * Depends on the whole store, tagged with the store-wide version
+         */
+        STORE,
+        /**
+         * Depends on the quote named by the {@code id} path variable, tagged with its version
+         */
+        QUOTE
+    }
+}
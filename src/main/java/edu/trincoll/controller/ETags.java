@@ -0,0 +1,70 @@
+package edu.trincoll.controller;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * The entity tags the API hands out and accepts back. A tag is a repository
+ * version, store-wide or of one quote; versions restart with the process, so
+ * every tag also carries the startup time and tags from an earlier run never match.
+ * A URL served in more than one representation gets a distinct tag for each.
+ */
+@Component
+public class ETags {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    /**
+     * The tag of the whole store at a version
+     */
+    public String store(long version) {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    /**
+     * The tag of the whole store at a version, in a representation other than
+     * the default JSON, such as {@code x-ndjson}
+     */
+    public String store(long version, String representation) {
+        return "\"" + epoch + "-" + version + "-" + representation + "\"";
+    }
+
+    /**
+     * The tag of one quote at a version
+     */
+    public String quote(long id, long version) {
+        return "\"" + epoch + "-" + id + "-" + version + "\"";
+    }
+
+    /**
+     * The quote version named by an If-Match header, or null if no tag in it
+     * is a strong tag of this quote from this run. If-Match uses the strong
+     * comparison, so weak tags never match.
+     */
+    public Long quoteVersion(String ifMatch, long id) {
+        String prefix = "\"" + epoch + "-" + id + "-";
+        for (String candidate : ifMatch.split(",")) {
+            String tag = candidate.trim();
+            if (!tag.startsWith(prefix) || !tag.endsWith("\"") || tag.length() <= prefix.length() + 1) continue;
+            try {
+                return Long.valueOf(tag.substring(prefix.length(), tag.length() - 1));
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        return null;
+    }
+
+    /**
+     * True if an If-None-Match header names the tag, or is {@code *}; weak
+     * tags compare equal to strong ones, as the header's weak comparison requires
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) return true;
+        }
+        return false;
+    }
+}
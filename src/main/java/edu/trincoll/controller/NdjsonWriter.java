@@ -0,0 +1,56 @@
+package edu.trincoll.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Iterator;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Writes a stream of values as newline-delimited JSON (one document per line).
+ * Values are serialized as the stream produces them, so memory stays bounded
+ * and the first line reaches the client before the rest has been read.
+ */
+@Component
+public class NdjsonWriter {
+
+    // flush often enough for a quick first byte without a syscall per line
+    private static final int FLUSH_EVERY = 256;
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter writer;
+
+    public NdjsonWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.writer = objectMapper.writer()
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n");
+    }
+
+    /**
+     * NDJSON response whose body opens the stream when the response is written
+     * and closes it afterwards
+     */
+    public ResponseEntity<StreamingResponseBody> write(Supplier<? extends Stream<?>> values) {
+        StreamingResponseBody body = out -> {
+            try (Stream<?> stream = values.get();
+                 JsonGenerator generator = objectMapper.createGenerator(out)) {
+                Iterator<?> it = stream.iterator();
+                int written = 0;
+                while (it.hasNext()) {
+                    writer.writeValue(generator, it.next());
+                    if (++written == 1 || written % FLUSH_EVERY == 0) generator.flush();
+                }
+                if (written > 0) generator.writeRaw('\n');
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+}
@@ -1,35 +1,103 @@
 package edu.trincoll.controller;
 
 import edu.trincoll.model.Quote;
+import edu.trincoll.repository.CursorPage;
+import edu.trincoll.repository.QueryResult;
+import edu.trincoll.repository.QuoteQuery;
+import edu.trincoll.repository.VersionConflictException;
+import edu.trincoll.repository.Versioned;
+import edu.trincoll.search.SearchMode;
+import edu.trincoll.service.BatchResult;
 import edu.trincoll.service.QuoteService;
+import edu.trincoll.service.ResultCache;
+import edu.trincoll.service.SingleFlight;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * REST controller - should ONLY handle HTTP concerns.
  * All business logic should be in the service layer.
+ * Endpoints marked {@link ETagged} answer conditional GETs through {@link ETagInterceptor}.
  */
 @RestController
 @RequestMapping("/api/quotes")
 public class QuoteController {
     
     private final QuoteService service;
+    private final NdjsonWriter ndjson;
+    private final ChangeFeedWriter changes;
+    private final ETags etags;
     
-    public QuoteController(QuoteService service) {
+    public QuoteController(QuoteService service, NdjsonWriter ndjson, ChangeFeedWriter changes, ETags etags) {
         this.service = service;
+        this.ndjson = ndjson;
+        this.changes = changes;
+        this.etags = etags;
     }
     
     @GetMapping
+    @ETagged
     public List<Quote> getAllQuotes() {
         return service.findAll();
     }
     
+    // Streaming variants of the large collection endpoints, selected by
+    // Accept: application/x-ndjson. One JSON document per line.
+    
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ETagged
+    public ResponseEntity<StreamingResponseBody> streamAllQuotes() {
+        return ndjson.write(service::streamAll);
+    }
+    
+    @GetMapping(value = "/grouped", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ETagged
+    public ResponseEntity<StreamingResponseBody> streamQuotesGroupedByCategory() {
+        return ndjson.write(service::streamGroupedByCategory);
+    }
+    
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ETagged
+    public ResponseEntity<StreamingResponseBody> streamSearchQuotes(@RequestParam String query,
+                                                                    @RequestParam(defaultValue = "TOKEN") SearchMode mode) {
+        return ndjson.write(() -> service.streamSearch(query, mode));
+    }
+    
+    // Server-sent events for every save and delete. Resume with Last-Event-ID
+    // (or ?after=) set to the last sequence number seen.
+    
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) Long after,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return changes.stream(service.changeFeed(), lastEventId != null ? lastEventId : after);
+    }
+    
+    // Paged variants of the list endpoints, selected by the presence of ?limit=.
+    // Pass the returned nextCursor back as ?after= to get the following page.
+    
+    @GetMapping(params = "limit")
+    @ETagged
+    public ResponseEntity<CursorPage<Quote, Long>> getQuotePage(@RequestParam int limit,
+                                                                @RequestParam(required = false) Long after) {
+        return page(() -> service.findAll(after, limit));
+    }
+    
     @GetMapping("/{id}")
+    @ETagged(ETagged.Scope.QUOTE)
     public ResponseEntity<Quote> getQuoteById(@PathVariable Long id) {
         return service.findById(id)
                 .map(ResponseEntity::ok)
@@ -46,15 +114,51 @@ public class QuoteController {
         }
     }
     
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResult<Long>> createQuotes(@RequestBody List<Quote> quotes) {
+        try {
+            return ResponseEntity.ok(service.saveBatch(quotes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     @PutMapping("/{id}")
-    public ResponseEntity<Quote> updateQuote(@PathVariable Long id, @RequestBody Quote quote) {
-        if (!service.existsById(id)) {
-            return ResponseEntity.notFound().build();
+    public ResponseEntity<Quote> updateQuote(@PathVariable Long id, @RequestBody Quote quote,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return write(id, ifMatch, expected -> service.update(id, expected, quote));
+    }
+    
+    @PatchMapping(value = "/{id}", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/merge-patch+json"})
+    public ResponseEntity<Quote> patchQuote(@PathVariable Long id, @RequestBody Map<String, Object> changes,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return write(id, ifMatch, expected -> service.patch(id, expected, changes));
+    }
+    
+    /**
+     * Runs an update under an optional If-Match precondition and tags the
+     * response with the quote's new version. A tag that is not a current
+     * tag of this quote fails the precondition, as does a stale one, and any
+     * If-Match, {@code *} included, fails it when there is no such quote.
+     */
+    private ResponseEntity<Quote> write(Long id, String ifMatch, Function<Long, Optional<Versioned<Quote>>> update) {
+        Long expected = null;
+        if (ifMatch != null && !ifMatch.trim().equals("*")) {
+            expected = etags.quoteVersion(ifMatch, id);
+            if (expected == null) {
+                return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+            }
         }
-        quote.setId(id);
         try {
-            Quote updated = service.save(quote);
-            return ResponseEntity.ok(updated);
+            return update.apply(expected)
+                    .map(saved -> ResponseEntity.ok().eTag(etags.quote(id, saved.version())).body(saved.value()))
+                    .orElseGet(() -> ifMatch != null
+                            ? ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build()
+                            : ResponseEntity.notFound().build());
+        } catch (VersionConflictException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                    .eTag(etags.quote(id, e.currentVersion()))
+                    .build();
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
@@ -72,33 +176,138 @@ public class QuoteController {
     
     // Additional endpoints for collections operations
     
+    // Reads by time, served from the createdAt/updatedAt indexes. Times are ISO
+    // local date-times such as 2025-01-31T12:00:00.
+    
+    @GetMapping("/created")
+    @ETagged
+    public List<Quote> getQuotesCreatedBetween(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return service.findCreatedBetween(from, to);
+    }
+    
+    @GetMapping("/updated")
+    @ETagged
+    public List<Quote> getQuotesUpdatedSince(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) {
+        return service.findUpdatedSince(since);
+    }
+    
+    @GetMapping("/latest")
+    @ETagged
+    public ResponseEntity<List<Quote>> getLatestQuotes(@RequestParam(defaultValue = "10") int limit) {
+        try {
+            return ResponseEntity.ok(service.findLatest(limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    // Any combination of filters in one request. With ?explain=true the quotes
+    // come back together with the plan that found them.
+    
+    @GetMapping("/query")
+    @ETagged
+    public ResponseEntity<?> queryQuotes(@RequestParam(required = false) Quote.Status status,
+                                         @RequestParam(required = false) String category,
+                                         @RequestParam(required = false) Set<String> tag,
+                                         @RequestParam(required = false) String author,
+                                         @RequestParam(required = false) String text,
+                                         @RequestParam(defaultValue = "ID") QuoteQuery.Sort sort,
+                                         @RequestParam(defaultValue = "20") int limit,
+                                         @RequestParam(defaultValue = "false") boolean explain) {
+        try {
+            QueryResult result = service.query(new QuoteQuery(status, category, tag, author, text, sort, limit));
+            return ResponseEntity.ok(explain ? result : result.items());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     @GetMapping("/status/{status}")
+    @ETagged
     public List<Quote> getQuotesByStatus(@PathVariable Quote.Status status) {
         return service.findByStatus(status);
     }
     
+    @GetMapping(value = "/status/{status}", params = "limit")
+    @ETagged
+    public ResponseEntity<CursorPage<Quote, Long>> getQuotePageByStatus(@PathVariable Quote.Status status,
+                                                                        @RequestParam int limit,
+                                                                        @RequestParam(required = false) Long after) {
+        return page(() -> service.findByStatus(status, after, limit));
+    }
+    
     @GetMapping("/category/{category}")
+    @ETagged
     public List<Quote> getQuotesByCategory(@PathVariable String category) {
         return service.findByCategory(category);
     }
     
+    @GetMapping(value = "/category/{category}", params = "limit")
+    @ETagged
+    public ResponseEntity<CursorPage<Quote, Long>> getQuotePageByCategory(@PathVariable String category,
+                                                                          @RequestParam int limit,
+                                                                          @RequestParam(required = false) Long after) {
+        return page(() -> service.findByCategory(category, after, limit));
+    }
+    
     @GetMapping("/grouped")
+    @ETagged
     public Map<String, List<Quote>> getQuotesGroupedByCategory() {
         return service.groupByCategory();
     }
     
     @GetMapping("/tags")
+    @ETagged
     public Set<String> getAllTags() {
         return service.getAllUniqueTags();
     }
     
+    @GetMapping("/tags/popular")
+    @ETagged
+    public List<String> getPopularTags(@RequestParam(defaultValue = "10") int limit) {
+        return service.getMostPopularTags(limit);
+    }
+    
     @GetMapping("/stats/status")
+    @ETagged
     public Map<Quote.Status, Long> getStatusStatistics() {
         return service.countByStatus();
     }
     
+    @GetMapping("/stats/cache")
+    public ResultCache.Stats getCacheStatistics() {
+        return service.cacheStats();
+    }
+
+    @GetMapping("/stats/coalescing")
+    public SingleFlight.Stats getCoalescingStatistics() {
+        return service.coalescingStats();
+    }
+
     @GetMapping("/search")
-    public List<Quote> searchQuotes(@RequestParam String query) {
-        return service.search(query);
+    @ETagged
+    public List<Quote> searchQuotes(@RequestParam String query,
+                                    @RequestParam(defaultValue = "TOKEN") SearchMode mode) {
+        return service.search(query, mode);
+    }
+    
+    @GetMapping(value = "/search", params = "limit")
+    @ETagged
+    public ResponseEntity<CursorPage<Quote, Long>> searchQuotePage(@RequestParam String query,
+                                                                   @RequestParam(defaultValue = "TOKEN") SearchMode mode,
+                                                                   @RequestParam int limit,
+                                                                   @RequestParam(required = false) Long after) {
+        return page(() -> service.search(query, mode, after, limit));
+    }
+    
+    private static ResponseEntity<CursorPage<Quote, Long>> page(Supplier<CursorPage<Quote, Long>> query) {
+        try {
+            return ResponseEntity.ok(query.get());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 }
\ No newline at end of file
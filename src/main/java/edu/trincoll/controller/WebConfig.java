@@ -0,0 +1,23 @@
+package edu.trincoll.controller;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Registers the conditional-request handling for the quote endpoints
+ */
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final ETagInterceptor etags;
+
+    public WebConfig(ETagInterceptor etags) {
+        this.etags = etags;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(etags).addPathPatterns("/api/quotes/**");
+    }
+}
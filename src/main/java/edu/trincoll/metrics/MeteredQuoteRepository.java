@@ -0,0 +1,281 @@
+package edu.trincoll.metrics;
+
+import edu.trincoll.model.Quote;
+import edu.trincoll.repository.AccessListener;
+import edu.trincoll.repository.ChangeFeed;
+import edu.trincoll.repository.CursorPage;
+import edu.trincoll.repository.QueryResult;
+import edu.trincoll.repository.QuoteQuery;
+import edu.trincoll.repository.QuoteRepository;
+import edu.trincoll.repository.QuoteSnapshot;
+import edu.trincoll.repository.Versioned;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A {@link QuoteRepository} that records every finder call of the repository
+ * it wraps in {@link QueryMetrics}. Quotes examined and whether a call was
+ * answered from an index or a scan are recorded for a combined query, from its
+ * plan, and for every finder the wrapped repository reports through its
+ * {@link AccessListener}: in the map-based store the title and full-text
+ * finders, in the columnar store every finder and aggregate it answers with
+ * a column scan, and its full-text finders. Writes, versions, the change feed
+ * and snapshots are passed through unrecorded.
+ */
+public class MeteredQuoteRepository implements QuoteRepository {
+
+    private final QuoteRepository delegate;
+    private final QueryMetrics metrics;
+
+    public MeteredQuoteRepository(QuoteRepository delegate, QueryMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        delegate.setAccessListener((method, index, examined) -> {
+            metrics.scanned(method, examined);
+            metrics.index(method, index);
+        });
+    }
+
+    // ------------------------
+    // Finders
+    // ------------------------
+
+    @Override
+    public Optional<Quote> findById(Long id) {
+        long start = metrics.start();
+        return metrics.record("findById", start, delegate.findById(id));
+    }
+
+    @Override
+    public List<Quote> findAll() {
+        long start = metrics.start();
+        return metrics.record("findAll", start, delegate.findAll());
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findAll(Long after, int limit) {
+        long start = metrics.start();
+        return metrics.record("findAllPage", start, delegate.findAll(after, limit));
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        long start = metrics.start();
+        boolean exists = delegate.existsById(id);
+        metrics.record("existsById", start);
+        return exists;
+    }
+
+    @Override
+    public long count() {
+        long start = metrics.start();
+        long count = delegate.count();
+        metrics.record("count", start);
+        return count;
+    }
+
+    @Override
+    public List<Quote> findByStatus(Quote.Status status) {
+        long start = metrics.start();
+        return metrics.record("findByStatus", start, delegate.findByStatus(status));
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findByStatus(Quote.Status status, Long after, int limit) {
+        long start = metrics.start();
+        return metrics.record("findByStatusPage", start, delegate.findByStatus(status, after, limit));
+    }
+
+    @Override
+    public Map<Quote.Status, Long> countByStatus() {
+        long start = metrics.start();
+        return metrics.record("countByStatus", start, delegate.countByStatus());
+    }
+
+    @Override
+    public List<Quote> findByCategory(String category) {
+        long start = metrics.start();
+        return metrics.record("findByCategory", start, delegate.findByCategory(category));
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findByCategory(String category, Long after, int limit) {
+        long start = metrics.start();
+        return metrics.record("findByCategoryPage", start, delegate.findByCategory(category, after, limit));
+    }
+
+    @Override
+    public SortedSet<String> findDistinctCategories() {
+        long start = metrics.start();
+        return metrics.record("findDistinctCategories", start, delegate.findDistinctCategories());
+    }
+
+    @Override
+    public SortedMap<String, List<Quote>> groupByCategory() {
+        long start = metrics.start();
+        return metrics.record("groupByCategory", start, delegate.groupByCategory());
+    }
+
+    @Override
+    public List<Quote> findByTag(String tag) {
+        long start = metrics.start();
+        return metrics.record("findByTag", start, delegate.findByTag(tag));
+    }
+
+    @Override
+    public List<Quote> findByAllTags(Collection<String> tags) {
+        long start = metrics.start();
+        return metrics.record("findByAllTags", start, delegate.findByAllTags(tags));
+    }
+
+    @Override
+    public List<Quote> findByAnyTag(Collection<String> tags) {
+        long start = metrics.start();
+        return metrics.record("findByAnyTag", start, delegate.findByAnyTag(tags));
+    }
+
+    @Override
+    public List<String> findMostPopularTags(int limit) {
+        long start = metrics.start();
+        return metrics.record("findMostPopularTags", start, delegate.findMostPopularTags(limit));
+    }
+
+    @Override
+    public SortedSet<String> findDistinctTags() {
+        long start = metrics.start();
+        return metrics.record("findDistinctTags", start, delegate.findDistinctTags());
+    }
+
+    @Override
+    public List<Quote> findByTitleContaining(String searchTerm) {
+        long start = metrics.start();
+        return metrics.record("findByTitleContaining", start, delegate.findByTitleContaining(searchTerm));
+    }
+
+    @Override
+    public List<Quote> findCreatedBetween(LocalDateTime from, LocalDateTime to) {
+        long start = metrics.start();
+        return metrics.record("findCreatedBetween", start, delegate.findCreatedBetween(from, to));
+    }
+
+    @Override
+    public List<Quote> findUpdatedSince(LocalDateTime since) {
+        long start = metrics.start();
+        return metrics.record("findUpdatedSince", start, delegate.findUpdatedSince(since));
+    }
+
+    @Override
+    public List<Quote> findLatest(int limit) {
+        long start = metrics.start();
+        return metrics.record("findLatest", start, delegate.findLatest(limit));
+    }
+
+    @Override
+    public List<Quote> findByText(String query) {
+        long start = metrics.start();
+        return metrics.record("findByText", start, delegate.findByText(query));
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findByText(String query, Long after, int limit) {
+        long start = metrics.start();
+        return metrics.record("findByTextPage", start, delegate.findByText(query, after, limit));
+    }
+
+    @Override
+    public List<Quote> findByAuthor(String author) {
+        long start = metrics.start();
+        return metrics.record("findByAuthor", start, delegate.findByAuthor(author));
+    }
+
+    @Override
+    public List<Quote> findBySource(String source) {
+        long start = metrics.start();
+        return metrics.record("findBySource", start, delegate.findBySource(source));
+    }
+
+    @Override
+    public List<Quote> findByPublisher(String publisher) {
+        long start = metrics.start();
+        return metrics.record("findByPublisher", start, delegate.findByPublisher(publisher));
+    }
+
+    @Override
+    public QueryResult query(QuoteQuery query) {
+        long start = metrics.start();
+        QueryResult result = delegate.query(query);
+        metrics.record("query", start, result.items().size());
+        metrics.scanned("query", result.plan().examined());
+        metrics.index("query", !result.plan().access().equals("scan"));
+        return result;
+    }
+
+    // ------------------------
+    // Passed through
+    // ------------------------
+
+    @Override
+    public Quote save(Quote entity) {
+        return delegate.save(entity);
+    }
+
+    @Override
+    public List<Quote> saveAll(List<Quote> entities) {
+        return delegate.saveAll(entities);
+    }
+
+    @Override
+    public Optional<Versioned<Quote>> update(Long id, Long expectedVersion, UnaryOperator<Quote> change) {
+        return delegate.update(id, expectedVersion, change);
+    }
+
+    @Override
+    public CursorPage<Long, Long> updateStatusWhere(Quote.Status from, Quote.Status to, Predicate<Quote> predicate,
+                                                    Long after, int limit) {
+        return delegate.updateStatusWhere(from, to, predicate, after, limit);
+    }
+
+    @Override
+    public int updateStatusUpdatedBefore(Quote.Status from, Quote.Status to, LocalDateTime cutoff, int batchSize) {
+        return delegate.updateStatusUpdatedBefore(from, to, cutoff, batchSize);
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        delegate.deleteById(id);
+    }
+
+    @Override
+    public void deleteAll() {
+        delegate.deleteAll();
+    }
+
+    @Override
+    public long version() {
+        return delegate.version();
+    }
+
+    @Override
+    public OptionalLong version(Long id) {
+        return delegate.version(id);
+    }
+
+    @Override
+    public ChangeFeed changeFeed() {
+        return delegate.changeFeed();
+    }
+
+    @Override
+    public QuoteSnapshot snapshot() {
+        return delegate.snapshot();
+    }
+}
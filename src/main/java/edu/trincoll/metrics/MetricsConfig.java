@@ -0,0 +1,71 @@
+package edu.trincoll.metrics;
+
+import edu.trincoll.repository.QuoteRepository;
+import edu.trincoll.service.QuoteService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Records repository finders and service queries in the application's
+ * {@link MeterRegistry}, and publishes the service's cache and coalescing counts
+ */
+@Configuration
+@EnableConfigurationProperties(MetricsProperties.class)
+public class MetricsConfig {
+
+    @Bean
+    public QueryMetrics serviceMetrics(ObjectProvider<MeterRegistry> registry, MetricsProperties properties) {
+        return queryMetrics(registry, properties, "quotes.service");
+    }
+
+    /**
+     * Wraps the repository bean, whichever implementation is active, so every
+     * component using it is recorded
+     */
+    @Bean
+    public static BeanPostProcessor meteredQuoteRepository(ObjectProvider<MeterRegistry> registry,
+                                                           ObjectProvider<MetricsProperties> properties) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof QuoteRepository repository) || bean instanceof MeteredQuoteRepository) {
+                    return bean;
+                }
+                QueryMetrics metrics = queryMetrics(registry, properties.getObject(), "quotes.repository");
+                return metrics.enabled() ? new MeteredQuoteRepository(repository, metrics) : bean;
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder quoteServiceMeters(QuoteService service) {
+        return registry -> {
+            FunctionCounter.builder("quotes.service.cache.evictions", service, s -> s.cacheStats().evictions())
+                    .description("Cached results evicted to stay within the bound")
+                    .register(registry);
+            Gauge.builder("quotes.service.cache.size", service, s -> s.cacheStats().size())
+                    .description("Results held by the aggregate result cache")
+                    .register(registry);
+            FunctionCounter.builder("quotes.service.coalesced", service, s -> s.coalescingStats().coalesced())
+                    .description("Calls that shared another caller's computation")
+                    .register(registry);
+            Gauge.builder("quotes.service.in.flight", service, s -> s.coalescingStats().inFlight())
+                    .description("Computations running that later callers may join")
+                    .register(registry);
+        };
+    }
+
+    private static QueryMetrics queryMetrics(ObjectProvider<MeterRegistry> registry, MetricsProperties properties,
+                                             String prefix) {
+        MeterRegistry meters = registry.getIfAvailable();
+        if (!properties.enabled() || meters == null) return QueryMetrics.NONE;
+        return new QueryMetrics(meters, prefix, properties.percentiles(), properties.histogram());
+    }
+}
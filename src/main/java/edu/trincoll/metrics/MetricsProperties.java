@@ -0,0 +1,21 @@
+package edu.trincoll.metrics;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the query metrics, under {@code quotes.metrics}. Repository finders
+ * and service queries are recorded unless {@code quotes.metrics.enabled=false}.
+ *
+ * @param enabled     whether query methods are recorded
+ * @param percentiles latency percentiles computed in process, such as {@code 0.5,0.95,0.99};
+ *                    none by default, as they roughly double the cost of recording a call
+ * @param histogram   whether latency histogram buckets are published, from which the
+ *                    monitoring system computes percentiles across instances
+ */
+@ConfigurationProperties("quotes.metrics")
+public record MetricsProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue({}) double[] percentiles,
+        @DefaultValue("true") boolean histogram) {
+}
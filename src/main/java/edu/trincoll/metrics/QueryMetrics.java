@@ -0,0 +1,183 @@
+package edu.trincoll.metrics;
+
+import edu.trincoll.repository.CursorPage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Records the latency, result size, quotes scanned and index or cache hits of
+ * query methods, every meter tagged with the method name. All meter names
+ * start with a prefix naming the layer, such as {@code quotes.service}:
+ * <ul>
+ *   <li>{@code <prefix>.calls}: a timer, with histogram buckets and optionally
+ *       percentiles computed in process</li>
+ *   <li>{@code <prefix>.results}: quotes (or entries) returned by methods returning many</li>
+ *   <li>{@code <prefix>.scanned}: quotes read to answer, where a method knows it</li>
+ *   <li>{@code <prefix>.index} and {@code <prefix>.cache}: counts tagged
+ *       {@code result=hit|miss}, with a {@code .ratio} gauge of hits per lookup</li>
+ * </ul>
+ * The meters of a method are registered on its first call and then found with
+ * one map lookup. Recording a call costs two clock reads and a few uncontended
+ * adds, about 0.2 microseconds; percentiles computed in process roughly double
+ * that, so by default they are left to the monitoring system, which derives
+ * them from the histogram buckets. Calls that throw are not recorded.
+ * {@link #NONE} records nothing and does not read the clock.
+ */
+public final class QueryMetrics {
+
+    public static final QueryMetrics NONE = new QueryMetrics(null, "", new double[0], false);
+
+    private final MeterRegistry registry;
+    private final String prefix;
+    private final double[] percentiles;
+    private final boolean histogram;
+    private final Map<String, Timer> calls = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> results = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> scanned = new ConcurrentHashMap<>();
+    private final Map<String, HitCounters> indexHits = new ConcurrentHashMap<>();
+    private final Map<String, HitCounters> cacheHits = new ConcurrentHashMap<>();
+
+    private record HitCounters(Counter hits, Counter misses) {
+        void record(boolean hit) {
+            (hit ? hits : misses).increment();
+        }
+
+        double ratio() {
+            double lookups = hits.count() + misses.count();
+            return lookups == 0 ? Double.NaN : hits.count() / lookups;
+        }
+    }
+
+    /**
+     * @param registry    where the meters are registered
+     * @param prefix      the start of every meter name
+     * @param percentiles latency percentiles computed in process, such as 0.5 and 0.99; may be empty
+     * @param histogram   whether latency histogram buckets are published
+     */
+    public QueryMetrics(MeterRegistry registry, String prefix, double[] percentiles, boolean histogram) {
+        this.registry = registry;
+        this.prefix = prefix;
+        this.percentiles = percentiles.clone();
+        this.histogram = histogram;
+    }
+
+    /**
+     * True if this records anything
+     */
+    public boolean enabled() {
+        return registry != null;
+    }
+
+    /**
+     * The start time of a call, to hand to {@code record} when it returns
+     */
+    public long start() {
+        return registry == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Records the latency of a call that returns a single value
+     */
+    public void record(String method, long start) {
+        if (registry == null) return;
+        long elapsed = System.nanoTime() - start;
+        lookup(calls, method, this::timer).record(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a call that returned {@code count} items
+     */
+    public void record(String method, long start, int count) {
+        if (registry == null) return;
+        long elapsed = System.nanoTime() - start;
+        lookup(calls, method, this::timer).record(elapsed, TimeUnit.NANOSECONDS);
+        lookup(results, method, m -> DistributionSummary.builder(prefix + ".results")
+                .description("Results returned by a query method")
+                .tag("method", m)
+                .register(registry)).record(count);
+    }
+
+    public <T extends Collection<?>> T record(String method, long start, T results) {
+        record(method, start, results.size());
+        return results;
+    }
+
+    public <T extends Map<?, ?>> T record(String method, long start, T results) {
+        record(method, start, results.size());
+        return results;
+    }
+
+    public <T extends CursorPage<?, ?>> T record(String method, long start, T page) {
+        record(method, start, page.items().size());
+        return page;
+    }
+
+    public <T extends Optional<?>> T record(String method, long start, T result) {
+        record(method, start);
+        return result;
+    }
+
+    /**
+     * Records the number of quotes a call read to find its results
+     */
+    public void scanned(String method, long quotes) {
+        if (registry == null) return;
+        lookup(scanned, method, m -> DistributionSummary.builder(prefix + ".scanned")
+                .description("Quotes read to answer a call")
+                .baseUnit("quotes")
+                .tag("method", m)
+                .register(registry)).record(quotes);
+    }
+
+    /**
+     * Records whether a call was answered from an index rather than a scan
+     */
+    public void index(String method, boolean hit) {
+        if (registry == null) return;
+        lookup(indexHits, method, m -> hitCounters(".index", m)).record(hit);
+    }
+
+    /**
+     * Records whether a call was answered from a cache
+     */
+    public void cache(String method, boolean hit) {
+        if (registry == null) return;
+        lookup(cacheHits, method, m -> hitCounters(".cache", m)).record(hit);
+    }
+
+    private Timer timer(String method) {
+        return Timer.builder(prefix + ".calls")
+                .description("Latency of a query method")
+                .tag("method", method)
+                .publishPercentiles(percentiles)
+                .publishPercentileHistogram(histogram)
+                .register(registry);
+    }
+
+    private HitCounters hitCounters(String suffix, String method) {
+        HitCounters counters = new HitCounters(
+                Counter.builder(prefix + suffix).tag("method", method).tag("result", "hit").register(registry),
+                Counter.builder(prefix + suffix).tag("method", method).tag("result", "miss").register(registry));
+        Gauge.builder(prefix + suffix + ".ratio", counters, HitCounters::ratio)
+                .description("Hits per lookup")
+                .tag("method", method)
+                .register(registry);
+        return counters;
+    }
+
+    private static <V> V lookup(Map<String, V> map, String method, Function<String, V> create) {
+        // a plain get on the hot path; registration happens once per method
+        V value = map.get(method);
+        return value != null ? value : map.computeIfAbsent(method, create);
+    }
+}
@@ -1,18 +1,36 @@
 package edu.trincoll.model;
 
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
+/**
+ * A quote, stored compactly: a repository shares the category, author, source,
+ * publisher and tags of its stored quotes through a {@link ValueDictionary},
+ * tags are kept in a small sorted array, and timestamps are nanoseconds since the epoch. The accessors present
+ * the usual String, Set and LocalDateTime view of those fields.
+ */
 public class Quote {
-    private Long id;
+    // stands for a null id, so it cannot be a quote's id
+    private static final long NO_ID = Long.MIN_VALUE;
+    private static final String[] NO_TAGS = new String[0];
+    private static final Comparator<String> TAG_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    private long id = NO_ID;
     private String title;
     private String description;
     private String category;
     private Status status;
-    private Set<String> tags;
-    private LocalDateTime createdAt;
-    private LocalDateTime updatedAt;
+    // sorted and distinct; replaced rather than modified
+    private String[] tags = NO_TAGS;
+    private long createdAt;
+    private long updatedAt;
     private String author;
     private String source;
     private String publisher;
@@ -22,10 +40,9 @@ public class Quote {
     }
 
     public Quote() {
-        this.tags = new HashSet<>();
         this.status = Status.ACTIVE;
-        this.createdAt = LocalDateTime.now();
-        this.updatedAt = LocalDateTime.now();
+        this.createdAt = now();
+        this.updatedAt = createdAt;
     }
 
     public Quote(String title, String description) {
@@ -34,29 +51,114 @@ public class Quote {
         this.description = description;
     }
 
+    private Quote(Quote other) {
+        this.id = other.id;
+        this.title = other.title;
+        this.description = other.description;
+        this.category = other.category;
+        this.status = other.status;
+        // the array is never modified in place, so the copy can share it
+        this.tags = other.tags;
+        this.createdAt = other.createdAt;
+        this.updatedAt = other.updatedAt;
+        this.author = other.author;
+        this.source = other.source;
+        this.publisher = other.publisher;
+    }
+
+    private Quote(long id, Status status, String title, String description, String category, String author,
+                  String source, String publisher, String[] tags, long createdAt, long updatedAt) {
+        this.id = id;
+        this.status = status;
+        this.title = title;
+        this.description = description;
+        this.category = category;
+        this.author = author;
+        this.source = source;
+        this.publisher = publisher;
+        this.tags = tags;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
+    /**
+     * A quote loaded from storage, built without the setters, which would stamp
+     * it with the current time and copy and sort its tags
+     * @param id        any id but {@link Long#MIN_VALUE}, as for {@link #setId}
+     * @param tags      distinct tags, which the quote takes over; sorted here only
+     *                  if they are not in order already
+     * @param createdAt nanoseconds since the epoch, as UTC
+     * @param updatedAt nanoseconds since the epoch, as UTC
+     */
+    public static Quote restore(long id, Status status, String title, String description, String category,
+                                String author, String source, String publisher, String[] tags,
+                                long createdAt, long updatedAt) {
+        for (int i = 1; i < tags.length; i++) {
+            if (TAG_ORDER.compare(tags[i - 1], tags[i]) > 0) {
+                Arrays.sort(tags, TAG_ORDER);
+                break;
+            }
+        }
+        return new Quote(checkId(id), status, title, description, category, author, source, publisher,
+                tags.length == 0 ? NO_TAGS : tags, createdAt, updatedAt);
+    }
+
+    /**
+     * An independent copy with the same field values and timestamps
+     */
+    public Quote copy() {
+        return new Quote(this);
+    }
+
     public void addTag(String tag) {
         if (tag != null && !tag.trim().isEmpty()) {
-            tags.add(tag.toLowerCase().trim());
-            this.updatedAt = LocalDateTime.now();
+            String normalized = tag.toLowerCase().trim();
+            int at = Arrays.binarySearch(tags, normalized, TAG_ORDER);
+            if (at < 0) {
+                int insert = -at - 1;
+                String[] next = new String[tags.length + 1];
+                System.arraycopy(tags, 0, next, 0, insert);
+                next[insert] = normalized;
+                System.arraycopy(tags, insert, next, insert + 1, tags.length - insert);
+                tags = next;
+            }
+            this.updatedAt = now();
         }
     }
 
     public void removeTag(String tag) {
-        tags.remove(tag.toLowerCase().trim());
-        this.updatedAt = LocalDateTime.now();
+        int at = Arrays.binarySearch(tags, tag.toLowerCase().trim(), TAG_ORDER);
+        if (at >= 0) {
+            String[] next = new String[tags.length - 1];
+            System.arraycopy(tags, 0, next, 0, at);
+            System.arraycopy(tags, at + 1, next, at, tags.length - at - 1);
+            tags = next.length == 0 ? NO_TAGS : next;
+        }
+        this.updatedAt = now();
     }
 
     public boolean hasTag(String tag) {
-        return tags.contains(tag.toLowerCase().trim());
+        return Arrays.binarySearch(tags, tag.toLowerCase().trim(), TAG_ORDER) >= 0;
     }
 
     // Getters and Setters
     public Long getId() {
-        return id;
+        return id == NO_ID ? null : id;
     }
 
+    /**
+     * @throws IllegalArgumentException if the id is {@link Long#MIN_VALUE}, which
+     *                                  the compact layout reserves for a null id
+     */
     public void setId(Long id) {
-        this.id = id;
+        this.id = id == null ? NO_ID : checkId(id);
+    }
+
+    private static long checkId(long id) {
+        if (id == NO_ID) {
+            throw new IllegalArgumentException("Id must not be " + NO_ID);
+        }
+        return id;
     }
 
     public String getTitle() {
@@ -65,7 +167,7 @@ public class Quote {
 
     public void setTitle(String title) {
         this.title = title;
-        this.updatedAt = LocalDateTime.now();
+        this.updatedAt = now();
     }
 
     public String getDescription() {
@@ -74,7 +176,7 @@ public class Quote {
 
     public void setDescription(String description) {
         this.description = description;
-        this.updatedAt = LocalDateTime.now();
+        this.updatedAt = now();
     }
 
     public String getCategory() {
@@ -83,7 +185,7 @@ public class Quote {
 
     public void setCategory(String category) {
         this.category = category;
-        this.updatedAt = LocalDateTime.now();
+        this.updatedAt = now();
     }
 
     public Status getStatus() {
@@ -92,7 +194,7 @@ public class Quote {
 
     public void setStatus(Status status) {
         this.status = status;
-        this.updatedAt = LocalDateTime.now();
+        this.updatedAt = now();
     }
 
     public String getAuthor() {
@@ -120,25 +222,128 @@ public class Quote {
     }
 
     public Set<String> getTags() {
-        return new HashSet<>(tags);
+        return new HashSet<>(Arrays.asList(tags));
     }
 
     public void setTags(Set<String> tags) {
-        this.tags = new HashSet<>(tags);
-        this.updatedAt = LocalDateTime.now();
+        String[] next = new String[tags.size()];
+        int i = 0;
+        for (String tag : tags) {
+            next[i++] = tag;
+        }
+        Arrays.sort(next, TAG_ORDER);
+        this.tags = next.length == 0 ? NO_TAGS : next;
+        this.updatedAt = now();
+    }
+
+    /**
+     * Replaces the dictionary-shared fields by the instances {@code share} returns
+     * for them, which must be equal; leaves the timestamps alone
+     */
+    void shareValues(UnaryOperator<String> share) {
+        category = share.apply(category);
+        author = share.apply(author);
+        source = share.apply(source);
+        publisher = share.apply(publisher);
+        if (tags.length > 0) {
+            // copies share the array, so it is replaced rather than modified
+            String[] next = new String[tags.length];
+            for (int i = 0; i < tags.length; i++) {
+                next[i] = share.apply(tags[i]);
+            }
+            tags = next;
+        }
+    }
+
+    /**
+     * Passes every dictionary-shared value to {@code action}
+     */
+    void forEachValue(Consumer<String> action) {
+        action.accept(category);
+        action.accept(author);
+        action.accept(source);
+        action.accept(publisher);
+        for (String tag : tags) {
+            action.accept(tag);
+        }
     }
 
     public LocalDateTime getCreatedAt() {
-        return createdAt;
+        return toDateTime(createdAt);
     }
 
     public LocalDateTime getUpdatedAt() {
+        return toDateTime(updatedAt);
+    }
+
+    /**
+     * The creation time as stored, in the form {@link #toNanos(LocalDateTime)}
+     * gives; not a bean property, so it stays out of JSON
+     */
+    public long createdNanos() {
+        return createdAt;
+    }
+
+    /**
+     * The update time as stored, in the form {@link #toNanos(LocalDateTime)} gives
+     */
+    public long updatedNanos() {
         return updatedAt;
     }
 
+    /**
+     * Restore the timestamps of a quote loaded from storage; setters would
+     * otherwise stamp it with the current time
+     */
+    public void restoreTimestamps(LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.createdAt = toNanos(createdAt);
+        this.updatedAt = toNanos(updatedAt);
+    }
+
+    // Jackson binds createdAt/updatedAt from request bodies through these, as it
+    // did through the LocalDateTime fields before they became longs
+    @SuppressWarnings("unused")
+    private void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = toNanos(createdAt);
+    }
+
+    @SuppressWarnings("unused")
+    private void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = toNanos(updatedAt);
+    }
+
+    // Timestamps are local date-times, encoded as if they were UTC so that no
+    // zone rules are involved. A long of nanoseconds covers the years 1677 to 2262.
+
+    private static long now() {
+        return toNanos(LocalDateTime.now());
+    }
+
+    /**
+     * Nanoseconds since the epoch of a local date-time encoded as UTC, the form
+     * {@link #restore} takes timestamps in
+     */
+    public static long toNanos(long epochSecond, int nano) {
+        if (nano < 0 || nano > 999_999_999) throw new DateTimeException("Invalid nano of second: " + nano);
+        return Math.addExact(Math.multiplyExact(epochSecond, 1_000_000_000L), nano);
+    }
+
+    /**
+     * Nanoseconds since the epoch of a local date-time encoded as UTC, the form
+     * timestamps are stored and indexed in
+     */
+    public static long toNanos(LocalDateTime time) {
+        return toNanos(time.toEpochSecond(ZoneOffset.UTC), time.getNano());
+    }
+
+    private static LocalDateTime toDateTime(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L),
+                (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
     @Override
     public String toString() {
         return String.format("Item[id=%d, title='%s', category='%s', status=%s]",
-                id, title, category, status);
+                getId(), title, category, status);
     }
-}
\ No newline at end of file
+}
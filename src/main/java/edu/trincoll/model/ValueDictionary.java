@@ -0,0 +1,71 @@
+package edu.trincoll.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of the low-cardinality values a repository's stored quotes carry
+ * (categories, authors, sources, publishers and tags). Each distinct value is
+ * kept once and every stored quote holding it points at that one instance,
+ * instead of at its own copy from whatever request or file it was read from.
+ * <p>
+ * Each repository owns one and passes only its stored copies through it, so
+ * values from requests that were rejected or never stored are not retained.
+ * Every value is reference counted and dropped once no stored quote holds it.
+ */
+public final class ValueDictionary {
+
+    private static final class Entry {
+        final String value;
+        int references;
+
+        Entry(String value) {
+            this.value = value;
+        }
+    }
+
+    private final Map<String, Entry> values = new ConcurrentHashMap<>();
+
+    /**
+     * Replaces the quote's values by the shared instances, holding a reference
+     * to each until {@link #release} is called with the same quote
+     */
+    public void acquire(Quote quote) {
+        quote.shareValues(this::acquire);
+    }
+
+    /**
+     * Drops the references {@link #acquire} took for the quote
+     */
+    public void release(Quote quote) {
+        quote.forEachValue(this::release);
+    }
+
+    /**
+     * Forgets every value, when every stored quote is removed at once
+     */
+    public void clear() {
+        values.clear();
+    }
+
+    /**
+     * Number of distinct values held
+     */
+    public int size() {
+        return values.size();
+    }
+
+    private String acquire(String value) {
+        if (value == null) return null;
+        return values.compute(value, (key, entry) -> {
+            if (entry == null) entry = new Entry(key);
+            entry.references++;
+            return entry;
+        }).value;
+    }
+
+    private void release(String value) {
+        if (value == null) return;
+        values.computeIfPresent(value, (key, entry) -> --entry.references == 0 ? null : entry);
+    }
+}
@@ -0,0 +1,20 @@
+package edu.trincoll.persistence;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Provides the journal the repository writes through
+ */
+@Configuration
+@EnableConfigurationProperties(DurabilityProperties.class)
+public class DurabilityConfig {
+
+    @Bean(destroyMethod = "close")
+    public QuoteJournal quoteJournal(DurabilityProperties properties) {
+        if (!properties.enabled()) return QuoteJournal.NONE;
+        return new FileQuoteJournal(properties.directory(), properties.syncMode(),
+                properties.flushInterval(), properties.snapshotEvery());
+    }
+}
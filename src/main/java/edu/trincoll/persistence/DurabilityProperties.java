@@ -0,0 +1,26 @@
+package edu.trincoll.persistence;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Settings for the quote journal, under {@code quotes.durability}.
+ * Durability is off unless {@code quotes.durability.enabled=true}.
+ *
+ * @param enabled       whether writes are journaled and recovered on startup
+ * @param directory     where log segments and snapshots are kept
+ * @param syncMode      COMMIT to fsync before a write returns, INTERVAL to fsync on a timer
+ * @param flushInterval how often the log is fsynced in INTERVAL mode
+ * @param snapshotEvery number of logged writes after which a snapshot is taken
+ */
+@ConfigurationProperties("quotes.durability")
+public record DurabilityProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("data/journal") Path directory,
+        @DefaultValue("INTERVAL") FileQuoteJournal.SyncMode syncMode,
+        @DefaultValue("10ms") Duration flushInterval,
+        @DefaultValue("100000") long snapshotEvery) {
+}
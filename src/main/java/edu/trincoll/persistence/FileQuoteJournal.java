@@ -0,0 +1,507 @@
+package edu.trincoll.persistence;
+
+import edu.trincoll.model.Quote;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * File-based {@link QuoteJournal}: an append-only write-ahead log plus periodic snapshots.
+ * <p>
+ * The log is a sequence of segment files {@code wal-<n>.log}. Each record is
+ * {@code [int length][int crc32][byte type][payload]}, so a torn write at the end
+ * of a segment is detected and ignored on recovery. Appends go to an in-memory
+ * buffer; a flusher thread writes and fsyncs whole batches (group commit). In
+ * {@link SyncMode#COMMIT} mode writers wait for their batch to be forced, in
+ * {@link SyncMode#INTERVAL} mode the flusher runs on a timer and writers never wait.
+ * <p>
+ * A snapshot {@code snapshot-<n>.bin} holds the state as of the start of segment
+ * n (see {@link SnapshotFile} for the format). It is written in the background
+ * while writers carry on; once it is complete, the snapshot before it is kept
+ * along with the segments since, and anything older is deleted. Recovery maps
+ * the newest intact snapshot, loads it in parallel and replays the segments
+ * from n on; a damaged snapshot is skipped for the one before it. A snapshot
+ * whose write fails leaves no file behind, and recovery deletes those of a
+ * snapshot cut short by a crash.
+ */
+public class FileQuoteJournal implements QuoteJournal {
+
+    /**
+     * When a logged record counts as durable
+     */
+    public enum SyncMode {
+        /**
+         * Writers block until their record is fsynced; concurrent writers share one fsync
+         */
+        COMMIT,
+        /**
+         * The log is fsynced on a fixed interval; a crash can lose the last interval of writes
+         */
+        INTERVAL
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(FileQuoteJournal.class);
+
+    private static final byte SAVE = 1;
+    private static final byte DELETE = 2;
+    private static final byte DELETE_ALL = 3;
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final SyncMode syncMode;
+    private final long flushIntervalMillis;
+    private final long snapshotEvery;
+
+    // guards the pending buffer, sequence numbers and failure state
+    private final Object lock = new Object();
+    // guards the segment channel; held while a batch is written or the log is cut over
+    private final Object ioLock = new Object();
+
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(1 << 16);
+    private long appended;
+    private long durable;
+    private IOException failure;
+    private boolean closed;
+
+    private FileChannel segment;
+    private long segmentNumber;
+
+    private final AtomicLong sinceSnapshot = new AtomicLong();
+    private final AtomicBoolean snapshotRunning = new AtomicBoolean();
+    private final ExecutorService snapshotter;
+    private final Thread flusher;
+
+    public FileQuoteJournal(Path directory, SyncMode syncMode, Duration flushInterval, long snapshotEvery) {
+        this.directory = directory;
+        this.syncMode = syncMode;
+        this.flushIntervalMillis = Math.max(1, flushInterval.toMillis());
+        this.snapshotEvery = snapshotEvery;
+        try {
+            Files.createDirectories(directory);
+            // never append to a segment from an earlier run; its tail may be torn
+            segmentNumber = Math.max(lastNumber(SEGMENT_PREFIX, SEGMENT_SUFFIX),
+                    lastNumber(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) + 1;
+            segment = openSegment(segmentNumber);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open journal in " + directory, e);
+        }
+        snapshotter = Executors.newSingleThreadExecutor(r -> daemon(r, "quote-journal-snapshot"));
+        flusher = daemon(this::flushLoop, "quote-journal-flusher");
+        flusher.start();
+    }
+
+    // ------------------------
+    // Logging
+    // ------------------------
+
+    @Override
+    public long logSave(Quote quote, long nextId) {
+        return append(SAVE, out -> {
+            out.writeLong(nextId);
+            QuoteCodec.write(out, quote);
+        });
+    }
+
+    @Override
+    public long logDelete(long id) {
+        return append(DELETE, out -> out.writeLong(id));
+    }
+
+    @Override
+    public long logDeleteAll() {
+        return append(DELETE_ALL, out -> { });
+    }
+
+    private interface Payload {
+        void writeTo(DataOutputStream out) throws IOException;
+    }
+
+    private long append(byte type, Payload payload) {
+        byte[] record = encode(type, payload);
+        synchronized (lock) {
+            if (failure != null) throw new UncheckedIOException("Journal write failed", failure);
+            if (closed) throw new IllegalStateException("Journal is closed");
+            pending.write(record, 0, record.length);
+            sinceSnapshot.incrementAndGet();
+            if (syncMode == SyncMode.COMMIT) lock.notifyAll();
+            return ++appended;
+        }
+    }
+
+    private static byte[] encode(byte type, Payload payload) {
+        try {
+            ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+            DataOutputStream out = new DataOutputStream(body);
+            out.writeByte(type);
+            payload.writeTo(out);
+            byte[] bytes = body.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            ByteBuffer record = ByteBuffer.allocate(8 + bytes.length);
+            record.putInt(bytes.length).putInt((int) crc.getValue()).put(bytes);
+            return record.array();
+        } catch (IOException e) {
+            // writing to a byte array does not fail
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void sync(long sequence) {
+        synchronized (lock) {
+            if (syncMode == SyncMode.COMMIT) {
+                boolean interrupted = false;
+                while (durable < sequence && failure == null) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) Thread.currentThread().interrupt();
+            }
+            if (failure != null) throw new UncheckedIOException("Journal write failed", failure);
+        }
+    }
+
+    private void flushLoop() {
+        try {
+            while (true) {
+                synchronized (lock) {
+                    if (syncMode == SyncMode.COMMIT) {
+                        while (pending.size() == 0 && !closed) lock.wait();
+                    } else if (!closed) {
+                        lock.wait(flushIntervalMillis);
+                    }
+                    if (closed && pending.size() == 0) return;
+                }
+                flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes and forces everything appended so far as one batch
+     */
+    private void flush() {
+        synchronized (ioLock) {
+            byte[] batch;
+            long upTo;
+            synchronized (lock) {
+                if (pending.size() == 0) return;
+                batch = pending.toByteArray();
+                pending.reset();
+                upTo = appended;
+            }
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    segment.write(buffer);
+                }
+                segment.force(false);
+                synchronized (lock) {
+                    durable = upTo;
+                    lock.notifyAll();
+                }
+            } catch (IOException e) {
+                log.error("Journal write to {} failed", directory, e);
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    // ------------------------
+    // Snapshots
+    // ------------------------
+
+    @Override
+    public boolean snapshotDue() {
+        return sinceSnapshot.get() >= snapshotEvery && !snapshotRunning.get();
+    }
+
+    @Override
+    public void snapshot(long nextId, Collection<Quote> quotes) {
+        if (!snapshotRunning.compareAndSet(false, true)) return;
+        long cut;
+        try {
+            cut = cutOver();
+        } catch (IOException e) {
+            snapshotRunning.set(false);
+            throw new UncheckedIOException("Cannot start a new journal segment", e);
+        }
+        sinceSnapshot.set(0);
+        snapshotter.execute(() -> {
+            try {
+                writeSnapshot(cut, nextId, quotes);
+                // keep the previous snapshot and its log in case this one is damaged later
+                Long previous = numbered(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).lowerKey(cut);
+                if (previous != null) deleteBefore(previous);
+            } catch (IOException e) {
+                // the log before the cut is still there, so nothing is lost
+                log.warn("Snapshot {} failed; keeping the full log", cut, e);
+            } finally {
+                snapshotRunning.set(false);
+            }
+        });
+    }
+
+    /**
+     * Flushes the current segment and starts the next one
+     * @return the number of the new segment, which the snapshot is taken at
+     */
+    private long cutOver() throws IOException {
+        synchronized (ioLock) {
+            flush();
+            synchronized (lock) {
+                if (failure != null) throw failure;
+            }
+            segment.close();
+            segmentNumber++;
+            segment = openSegment(segmentNumber);
+            return segmentNumber;
+        }
+    }
+
+    private void writeSnapshot(long number, long nextId, Collection<Quote> quotes) throws IOException {
+        Path target = directory.resolve(name(SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX));
+        Path temp = directory.resolve(target.getFileName() + TEMP_SUFFIX);
+        try {
+            SnapshotFile.write(temp, nextId, quotes);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            // the next snapshot gets a new number, so a partial one would never be overwritten
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    private void deleteBefore(long number) throws IOException {
+        for (var entry : numbered(SEGMENT_PREFIX, SEGMENT_SUFFIX).headMap(number).values()) {
+            Files.deleteIfExists(entry);
+        }
+        for (var entry : numbered(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).headMap(number).values()) {
+            Files.deleteIfExists(entry);
+        }
+    }
+
+    // ------------------------
+    // Recovery
+    // ------------------------
+
+    @Override
+    public long recover(Replay replay) {
+        try {
+            deleteUnfinishedSnapshots();
+            long nextId = 1;
+            long from = 0;
+            for (var snapshot : numbered(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX).descendingMap().entrySet()) {
+                Long restored = readSnapshot(snapshot.getValue(), replay);
+                if (restored != null) {
+                    nextId = restored;
+                    from = snapshot.getKey();
+                    break;
+                }
+                log.warn("Ignoring damaged snapshot {}", snapshot.getValue());
+            }
+
+            long replayed = 0;
+            var segments = numbered(SEGMENT_PREFIX, SEGMENT_SUFFIX).subMap(from, true, segmentNumber, false);
+            for (Path path : segments.values()) {
+                long[] state = replaySegment(path, replay, nextId);
+                nextId = state[0];
+                replayed += state[1];
+            }
+            sinceSnapshot.addAndGet(replayed);
+            return nextId;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot recover journal in " + directory, e);
+        }
+    }
+
+    /**
+     * Deletes what snapshots cut short by a crash left behind: the temporary
+     * file and the section files it is assembled from
+     */
+    private void deleteUnfinishedSnapshots() throws IOException {
+        List<Path> unfinished;
+        try (Stream<Path> paths = Files.list(directory)) {
+            unfinished = paths.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(SNAPSHOT_PREFIX) && name.contains(SNAPSHOT_SUFFIX + TEMP_SUFFIX);
+            }).toList();
+        }
+        for (Path path : unfinished) {
+            log.warn("Deleting unfinished snapshot {}", path);
+            Files.deleteIfExists(path);
+        }
+    }
+
+    /**
+     * Applies a snapshot if it is intact
+     * @return the snapshot's next ID, or null if the file is damaged (nothing is applied then)
+     */
+    private Long readSnapshot(Path path, Replay replay) throws IOException {
+        SnapshotFile.Contents contents = SnapshotFile.read(path);
+        if (contents == null) return null;
+        replay.restore(contents.quotes());
+        return contents.nextId();
+    }
+
+    /**
+     * Applies the intact records of a segment, stopping at the first torn or corrupt one
+     * @return the next ID after the segment and the number of records applied
+     */
+    private long[] replaySegment(Path path, Replay replay, long nextId) throws IOException {
+        long applied = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            while (true) {
+                byte[] body = readRecord(in);
+                if (body == null) break;
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+                switch (record.readByte()) {
+                    case SAVE -> {
+                        nextId = record.readLong();
+                        replay.save(QuoteCodec.read(record));
+                    }
+                    case DELETE -> replay.delete(record.readLong());
+                    case DELETE_ALL -> {
+                        replay.deleteAll();
+                        nextId = 1;
+                    }
+                    default -> throw new IOException("Unknown record type in " + path);
+                }
+                applied++;
+            }
+        }
+        return new long[] {nextId, applied};
+    }
+
+    /**
+     * The body of the next record, or null at the end of the segment or at a damaged record
+     */
+    private static byte[] readRecord(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        try {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0) return null;
+            byte[] body = in.readNBytes(length);
+            if (body.length < length) return null;
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            return (int) crc.getValue() == checksum ? body : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    // ------------------------
+    // Files
+    // ------------------------
+
+    private FileChannel openSegment(long number) throws IOException {
+        return FileChannel.open(directory.resolve(name(SEGMENT_PREFIX, number, SEGMENT_SUFFIX)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static String name(String prefix, long number, String suffix) {
+        return String.format("%s%020d%s", prefix, number, suffix);
+    }
+
+    private long lastNumber(String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> files = numbered(prefix, suffix);
+        return files.isEmpty() ? 0 : files.lastKey();
+    }
+
+    /**
+     * Files in the journal directory with the given prefix and suffix, by number
+     */
+    private TreeMap<Long, Path> numbered(String prefix, String suffix) throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.forEach(path -> {
+                String name = path.getFileName().toString();
+                if (!name.startsWith(prefix) || !name.endsWith(suffix)) return;
+                try {
+                    files.put(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())), path);
+                } catch (NumberFormatException e) {
+                    // not one of ours
+                }
+            });
+        }
+        return files;
+    }
+
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Flushes everything logged so far, waits for a running snapshot and closes the log
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            if (closed) return;
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            flusher.join();
+            snapshotter.shutdown();
+            snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (ioLock) {
+            try {
+                segment.close();
+            } catch (IOException e) {
+                log.warn("Closing journal segment failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package edu.trincoll.persistence;
+
+import edu.trincoll.model.Quote;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Compact binary encoding of a {@link Quote}, shared by log records and snapshots.
+ * <p>
+ * Layout: id (long), status ordinal (byte, -1 for null), title, description,
+ * category, author, source, publisher (each a length-prefixed UTF-8 string, -1
+ * for null), tag count (int) followed by the tags, then created and updated
+ * timestamps as UTC epoch second (long) plus nano of second (int).
+ */
+final class QuoteCodec {
+
+    private static final Quote.Status[] STATUSES = Quote.Status.values();
+
+    private QuoteCodec() {
+    }
+
+    static void write(DataOutput out, Quote quote) throws IOException {
+        out.writeLong(quote.getId());
+        out.writeByte(quote.getStatus() == null ? -1 : quote.getStatus().ordinal());
+        writeString(out, quote.getTitle());
+        writeString(out, quote.getDescription());
+        writeString(out, quote.getCategory());
+        writeString(out, quote.getAuthor());
+        writeString(out, quote.getSource());
+        writeString(out, quote.getPublisher());
+        // sorted, so a reader can hand the tags to the quote as they are
+        String[] tags = quote.getTags().toArray(String[]::new);
+        Arrays.sort(tags, Comparator.nullsFirst(Comparator.naturalOrder()));
+        out.writeInt(tags.length);
+        for (String tag : tags) {
+            writeString(out, tag);
+        }
+        writeTime(out, quote.getCreatedAt());
+        writeTime(out, quote.getUpdatedAt());
+    }
+
+    static Quote read(DataInput in) throws IOException {
+        long id = in.readLong();
+        byte status = in.readByte();
+        String title = readString(in);
+        String description = readString(in);
+        String category = readString(in);
+        String author = readString(in);
+        String source = readString(in);
+        String publisher = readString(in);
+        String[] tags = new String[in.readInt()];
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = readString(in);
+        }
+        long createdAt = readTime(in);
+        long updatedAt = readTime(in);
+        return Quote.restore(id, status < 0 ? null : STATUSES[status], title, description, category,
+                author, source, publisher, tags, createdAt, updatedAt);
+    }
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeTime(DataOutput out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    /**
+     * @return nanoseconds since the epoch, as {@link Quote#restore} takes them
+     */
+    private static long readTime(DataInput in) throws IOException {
+        long seconds = in.readLong();
+        int nanos = in.readInt();
+        return Quote.toNanos(seconds, nanos);
+    }
+}
@@ -0,0 +1,126 @@
+package edu.trincoll.persistence;
+
+import edu.trincoll.model.Quote;
+
+import java.util.Collection;
+
+/**
+ * Durability hook for the in-memory repository. The repository logs every
+ * mutation while holding its write lock and applies it only once the record is
+ * appended, so records are logged in the order they are applied and a mutation
+ * the log refused is never seen. It calls {@link #sync} after releasing the lock.
+ * <p>
+ * {@link #NONE} keeps the repository purely in memory.
+ */
+public interface QuoteJournal extends AutoCloseable {
+
+    /**
+     * Receives the recovered state, oldest change first
+     */
+    interface Replay {
+        /**
+         * Load a snapshot into the empty store. The quotes have distinct IDs, so
+         * they may be applied in parallel.
+         */
+        void restore(Collection<Quote> quotes);
+
+        void save(Quote quote);
+
+        void delete(long id);
+
+        void deleteAll();
+    }
+
+    /**
+     * Log a saved quote
+     * @param quote the quote as stored, with its ID assigned
+     * @param nextId the repository's next ID after this save
+     * @return the sequence number of the record, for {@link #sync}
+     */
+    long logSave(Quote quote, long nextId);
+
+    /**
+     * Log a deleted quote
+     * @return the sequence number of the record
+     */
+    long logDelete(long id);
+
+    /**
+     * Log the removal of every quote (which also resets the ID generator)
+     * @return the sequence number of the record
+     */
+    long logDeleteAll();
+
+    /**
+     * Block until the record is durable, if the configured sync mode requires it
+     * @param sequence a sequence number returned by one of the log methods
+     */
+    void sync(long sequence);
+
+    /**
+     * True once enough has been logged since the last snapshot that a new one should be taken
+     */
+    boolean snapshotDue();
+
+    /**
+     * Start a snapshot. Called under the repository's write lock; the log is cut
+     * over immediately and the quotes are written in the background, after which
+     * the log before the cut is deleted.
+     * <p>
+     * The quotes are a live view and keep changing while they are written, so the
+     * snapshot is fuzzy; replaying the log from the cut on brings it back to a
+     * consistent state, since every logged change can be applied more than once.
+     * @param nextId the repository's next ID at the cut
+     * @param quotes a weakly consistent view of the stored quotes
+     */
+    void snapshot(long nextId, Collection<Quote> quotes);
+
+    /**
+     * Replay the latest snapshot and the log written after it
+     * @param replay receives the recovered changes
+     * @return the next ID to hand out, or 1 if nothing was recovered
+     */
+    long recover(Replay replay);
+
+    @Override
+    void close();
+
+    QuoteJournal NONE = new QuoteJournal() {
+        @Override
+        public long logSave(Quote quote, long nextId) {
+            return 0;
+        }
+
+        @Override
+        public long logDelete(long id) {
+            return 0;
+        }
+
+        @Override
+        public long logDeleteAll() {
+            return 0;
+        }
+
+        @Override
+        public void sync(long sequence) {
+        }
+
+        @Override
+        public boolean snapshotDue() {
+            return false;
+        }
+
+        @Override
+        public void snapshot(long nextId, Collection<Quote> quotes) {
+        }
+
+        @Override
+        public long recover(Replay replay) {
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+}
@@ -0,0 +1,379 @@
+package edu.trincoll.persistence;
+
+import edu.trincoll.model.Quote;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Version 2 snapshot format: fixed-width sections that are loaded by mapping
+ * the file and decoding records in parallel straight from the mapped pages.
+ * <pre>
+ * header       64 bytes   magic, version, next ID, section sizes, body CRC, header CRC
+ * records      72 bytes   per quote, see below
+ * tag refs      4 bytes   per tag, string refs; each quote owns a contiguous run
+ * string table  8 bytes   per string, offset of the string in the data section
+ * string data             [int length][UTF-8 bytes] per string
+ * </pre>
+ * A record is: id (long), status ordinal (int, -1 for null), title, description,
+ * category, author, source and publisher (string refs, -1 for null), tag count
+ * (int), first tag ref (long), created and updated epoch seconds (long each) and
+ * nanos (int each). Category, author, source, publisher and tag values are
+ * stored once and shared; titles and descriptions are stored per quote.
+ * <p>
+ * The body CRC covers every byte after the header and is checked before
+ * anything is decoded.
+ * <p>
+ * Everything is big-endian. Files larger than 2 GB are mapped in chunks; the
+ * writer pads string data so that no string straddles a chunk boundary.
+ */
+final class SnapshotFile {
+
+    static final int MAGIC = 0x51534E50; // "QSNP"
+    static final int VERSION = 2;
+
+    static final int HEADER_BYTES = 64;
+    static final int RECORD_BYTES = 72;
+    static final int STRING_CHUNK_BYTES = 1 << 30;
+
+    private static final int NULL_REF = -1;
+    private static final Quote.Status[] STATUSES = Quote.Status.values();
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * The contents of a snapshot
+     */
+    record Contents(long nextId, List<Quote> quotes) {
+    }
+
+    // ------------------------
+    // Writing
+    // ------------------------
+
+    static void write(Path file, long nextId, Iterable<Quote> quotes) throws IOException {
+        write(file, nextId, quotes, STRING_CHUNK_BYTES);
+    }
+
+    /**
+     * Writes a snapshot. The quotes may be a live, weakly consistent view; each
+     * section goes to its own temporary file and they are joined at the end.
+     */
+    static void write(Path file, long nextId, Iterable<Quote> quotes, int stringChunkBytes) throws IOException {
+        try (Section records = new Section(file, ".records");
+             Section tagRefs = new Section(file, ".tags");
+             Section table = new Section(file, ".table");
+             Section data = new Section(file, ".strings")) {
+            Strings strings = new Strings(table, data, stringChunkBytes);
+            long count = 0;
+            for (Quote quote : quotes) {
+                writeRecord(quote, records.out, tagRefs, strings);
+                count++;
+            }
+
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                CRC32 body = new CRC32();
+                out.position(HEADER_BYTES);
+                records.transferTo(out, body);
+                tagRefs.transferTo(out, body);
+                table.transferTo(out, body);
+                data.transferTo(out, body);
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).putLong(nextId)
+                        .putLong(count).putLong(tagRefs.size() / Integer.BYTES)
+                        .putLong(strings.count).putLong(data.size()).putInt(stringChunkBytes)
+                        .putInt((int) body.getValue());
+                CRC32 crc = new CRC32();
+                crc.update(header.array(), 0, 56);
+                header.putInt(56, (int) crc.getValue());
+                header.rewind();
+                while (header.hasRemaining()) out.write(header, header.position());
+                out.force(true);
+            }
+        }
+    }
+
+    private static void writeRecord(Quote quote, DataOutputStream out, Section tagRefs, Strings strings)
+            throws IOException {
+        String[] tags = quote.getTags().toArray(String[]::new);
+        Arrays.sort(tags);
+
+        long firstTag = tagRefs.size() / Integer.BYTES;
+        for (String tag : tags) {
+            tagRefs.out.writeInt(strings.shared(tag));
+        }
+        out.writeLong(quote.getId());
+        out.writeInt(quote.getStatus() == null ? -1 : quote.getStatus().ordinal());
+        out.writeInt(strings.unique(quote.getTitle()));
+        out.writeInt(strings.unique(quote.getDescription()));
+        out.writeInt(strings.shared(quote.getCategory()));
+        out.writeInt(strings.shared(quote.getAuthor()));
+        out.writeInt(strings.shared(quote.getSource()));
+        out.writeInt(strings.shared(quote.getPublisher()));
+        out.writeInt(tags.length);
+        out.writeLong(firstTag);
+        LocalDateTime created = quote.getCreatedAt();
+        LocalDateTime updated = quote.getUpdatedAt();
+        out.writeLong(created.toEpochSecond(ZoneOffset.UTC));
+        out.writeLong(updated.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(created.getNano());
+        out.writeInt(updated.getNano());
+    }
+
+    /**
+     * String table under construction. Values that repeat across quotes are stored once.
+     */
+    private static final class Strings {
+        private final Section table;
+        private final Section data;
+        private final int chunkBytes;
+        private final Map<String, Integer> shared = new HashMap<>();
+        private int count;
+
+        Strings(Section table, Section data, int chunkBytes) {
+            this.table = table;
+            this.data = data;
+            this.chunkBytes = chunkBytes;
+        }
+
+        int shared(String s) throws IOException {
+            if (s == null) return NULL_REF;
+            Integer ref = shared.get(s);
+            if (ref == null) {
+                ref = unique(s);
+                shared.put(s, ref);
+            }
+            return ref;
+        }
+
+        int unique(String s) throws IOException {
+            if (s == null) return NULL_REF;
+            if (count == Integer.MAX_VALUE) throw new IOException("Too many strings for one snapshot");
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            int length = Integer.BYTES + bytes.length;
+            if (length > chunkBytes) throw new IOException("String too long for a snapshot chunk");
+
+            long offset = data.size();
+            long room = chunkBytes - offset % chunkBytes;
+            if (length > room) {
+                // keep every string inside one mapped chunk
+                data.out.write(new byte[(int) room]);
+                offset += room;
+            }
+            table.out.writeLong(offset);
+            data.out.writeInt(bytes.length);
+            data.out.write(bytes);
+            return count++;
+        }
+    }
+
+    /**
+     * One section of the file, buffered in a temporary file until the sizes are known
+     */
+    private static final class Section implements AutoCloseable {
+        private final FileChannel channel;
+        private final Counting counter;
+        private final DataOutputStream out;
+
+        Section(Path file, String suffix) throws IOException {
+            channel = FileChannel.open(file.resolveSibling(file.getFileName() + suffix),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DELETE_ON_CLOSE);
+            counter = new Counting(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out = new DataOutputStream(counter);
+        }
+
+        /**
+         * Bytes written so far (DataOutputStream's own counter stops at 2 GB)
+         */
+        long size() {
+            return counter.count;
+        }
+
+        /**
+         * Appends the section at the target's position, adding its bytes to the CRC
+         */
+        void transferTo(FileChannel target, CRC32 crc) throws IOException {
+            out.flush();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+            channel.position(0);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer.duplicate());
+                while (buffer.hasRemaining()) target.write(buffer);
+                buffer.clear();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private static final class Counting extends FilterOutputStream {
+        private long count;
+
+        Counting(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    // ------------------------
+    // Reading
+    // ------------------------
+
+    /**
+     * Reads a version 2 snapshot, or returns null if it is damaged: the header or
+     * body fails its CRC, the header does not match the file, or the records
+     * point outside their sections
+     */
+    static Contents read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) return null;
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) return null;
+            byte[] headerBytes = new byte[56];
+            header.get(0, headerBytes);
+            CRC32 crc = new CRC32();
+            crc.update(headerBytes);
+            if (header.getInt(56) != (int) crc.getValue()) return null;
+
+            long nextId = header.getLong(8);
+            int bodyCrc = header.getInt(52);
+            long quoteCount = header.getLong(16);
+            long tagCount = header.getLong(24);
+            long stringCount = header.getLong(32);
+            long dataBytes = header.getLong(40);
+            int chunkBytes = header.getInt(48);
+            if (quoteCount > Integer.MAX_VALUE || stringCount > Integer.MAX_VALUE) return null;
+
+            long recordsAt = HEADER_BYTES;
+            long tagsAt = recordsAt + quoteCount * RECORD_BYTES;
+            long tableAt = tagsAt + tagCount * Integer.BYTES;
+            long dataAt = tableAt + stringCount * Long.BYTES;
+            if (channel.size() != dataAt + dataBytes) return null;
+            if (bodyCrc != crc(channel, HEADER_BYTES, channel.size() - HEADER_BYTES)) return null;
+
+            Region records = new Region(channel, recordsAt, quoteCount * RECORD_BYTES,
+                    (long) RECORD_BYTES * (STRING_CHUNK_BYTES / RECORD_BYTES));
+            Region tags = new Region(channel, tagsAt, tagCount * Integer.BYTES, STRING_CHUNK_BYTES);
+            Region table = new Region(channel, tableAt, stringCount * Long.BYTES, STRING_CHUNK_BYTES);
+            Region data = new Region(channel, dataAt, dataBytes, chunkBytes);
+
+            try {
+                // decode every string once so quotes share the instances
+                String[] strings = new String[(int) stringCount];
+                IntStream.range(0, strings.length).parallel().forEach(i -> {
+                    long offset = table.getLong((long) i * Long.BYTES);
+                    byte[] bytes = new byte[data.getInt(offset)];
+                    data.get(offset + Integer.BYTES, bytes);
+                    strings[i] = new String(bytes, StandardCharsets.UTF_8);
+                });
+
+                Quote[] quotes = new Quote[(int) quoteCount];
+                IntStream.range(0, quotes.length).parallel().forEach(i ->
+                        quotes[i] = readRecord(records, (long) i * RECORD_BYTES, tags, strings));
+                return new Contents(nextId, Arrays.asList(quotes));
+            } catch (IndexOutOfBoundsException | BufferUnderflowException | NegativeArraySizeException
+                     | DateTimeException | ArithmeticException e) {
+                // intact bytes that still do not decode, such as a writer bug
+                return null;
+            }
+        }
+    }
+
+    private static int crc(FileChannel channel, long position, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long done = 0; done < size; done += STRING_CHUNK_BYTES) {
+            crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position + done,
+                    Math.min(STRING_CHUNK_BYTES, size - done)));
+        }
+        return (int) crc.getValue();
+    }
+
+    private static Quote readRecord(Region records, long at, Region tagRefs, String[] strings) {
+        int status = records.getInt(at + 8);
+        // the writer stores each quote's tags sorted, so they are taken over as they are
+        String[] tags = new String[records.getInt(at + 36)];
+        long firstTag = records.getLong(at + 40);
+        for (int t = 0; t < tags.length; t++) {
+            tags[t] = strings[tagRefs.getInt((firstTag + t) * Integer.BYTES)];
+        }
+        return Quote.restore(records.getLong(at), status < 0 ? null : STATUSES[status],
+                string(strings, records.getInt(at + 12)), string(strings, records.getInt(at + 16)),
+                string(strings, records.getInt(at + 20)), string(strings, records.getInt(at + 24)),
+                string(strings, records.getInt(at + 28)), string(strings, records.getInt(at + 32)), tags,
+                Quote.toNanos(records.getLong(at + 48), records.getInt(at + 64)),
+                Quote.toNanos(records.getLong(at + 56), records.getInt(at + 68)));
+    }
+
+    private static String string(String[] strings, int ref) {
+        return ref == NULL_REF ? null : strings[ref];
+    }
+
+    /**
+     * A section of the file mapped as one or more read-only buffers. Only
+     * absolute reads are used, so the buffers can be shared between threads.
+     */
+    private static final class Region {
+        private final ByteBuffer[] chunks;
+        private final long chunkBytes;
+
+        Region(FileChannel channel, long position, long size, long chunkBytes) throws IOException {
+            this.chunkBytes = chunkBytes;
+            chunks = new ByteBuffer[(int) ((size + chunkBytes - 1) / chunkBytes)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = i * chunkBytes;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position + start,
+                        Math.min(chunkBytes, size - start));
+            }
+        }
+
+        int getInt(long offset) {
+            return chunks[(int) (offset / chunkBytes)].getInt((int) (offset % chunkBytes));
+        }
+
+        long getLong(long offset) {
+            return chunks[(int) (offset / chunkBytes)].getLong((int) (offset % chunkBytes));
+        }
+
+        void get(long offset, byte[] into) {
+            chunks[(int) (offset / chunkBytes)].get((int) (offset % chunkBytes), into);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package edu.trincoll.repository;
+
+/**
+ * Told how a repository answered a finder call that reports it: from an index
+ * or by scanning, and how many stored quotes it examined. Called on the
+ * calling thread once the finder has its result.
+ */
+@FunctionalInterface
+public interface AccessListener {
+
+    AccessListener NONE = (method, index, examined) -> {
+    };
+
+    /**
+     * @param method   the finder, named as in the metrics
+     * @param index    true if the candidates were read from an index rather than a scan
+     * @param examined stored quotes or index entries read to answer
+     */
+    void accessed(String method, boolean index, long examined);
+}
@@ -0,0 +1,180 @@
+package edu.trincoll.repository;
+
+import edu.trincoll.model.Quote;
+import edu.trincoll.search.FullTextIndex;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+
+/**
+ * Snapshot of the columnar repository over a copied array of immutable stored
+ * quotes in ascending id order, with their full-text terms. Queries scan the
+ * array, which suits the columnar layout, except text queries: those take the
+ * repository's current postings for the quotes unchanged since the snapshot
+ * and check the copied terms of the ones changed since. Closing it lets the
+ * repository stop logging changes for it.
+ */
+final class ArraySnapshot implements QuoteSnapshot {
+
+    private final ColumnarQuoteRepository repository;
+    private final long version;
+    private final Quote[] quotes;
+    private final FullTextIndex.Terms[] terms;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    ArraySnapshot(ColumnarQuoteRepository repository, long version, Quote[] quotes, FullTextIndex.Terms[] terms) {
+        this.repository = repository;
+        this.version = version;
+        this.quotes = quotes;
+        this.terms = terms;
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Index of the first quote with an id greater than {@code after}
+     */
+    private int start(Long after) {
+        if (after == null) return 0;
+        int low = 0;
+        int high = quotes.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (quotes[mid].getId() <= after) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private List<Quote> scan(Predicate<Quote> match) {
+        List<Quote> result = new ArrayList<>();
+        for (Quote q : quotes) {
+            if (match.test(q)) result.add(q.copy());
+        }
+        return result;
+    }
+
+    private CursorPage<Quote, Long> page(Predicate<Quote> match, Long after, int limit) {
+        List<Quote> items = new ArrayList<>(Math.min(limit, 1024));
+        for (int i = start(after); i < quotes.length; i++) {
+            if (!match.test(quotes[i])) continue;
+            if (items.size() == limit) return new CursorPage<>(items, items.get(limit - 1).getId());
+            items.add(quotes[i].copy());
+        }
+        return new CursorPage<>(items, null);
+    }
+
+    /**
+     * Index of the quote with the id, or -1 if the snapshot has none
+     */
+    private int indexOf(long id) {
+        int at = start(id - 1);
+        return at < quotes.length && quotes[at].getId() == id ? at : -1;
+    }
+
+    @Override
+    public Optional<Quote> findById(Long id) {
+        if (id == null) return Optional.empty();
+        int at = indexOf(id);
+        return at < 0 ? Optional.empty() : Optional.of(quotes[at].copy());
+    }
+
+    @Override
+    public List<Quote> findAll() {
+        return scan(q -> true);
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findAll(Long after, int limit) {
+        return page(q -> true, after, limit);
+    }
+
+    @Override
+    public List<Quote> findByStatus(Quote.Status status) {
+        if (status == null) return Collections.emptyList();
+        return scan(q -> q.getStatus() == status);
+    }
+
+    @Override
+    public List<Quote> findByCategory(String category) {
+        String key = ValueIndex.key(category);
+        return scan(q -> ValueIndex.key(q.getCategory()).equals(key));
+    }
+
+    @Override
+    public SortedSet<String> findDistinctCategories() {
+        SortedSet<String> keys = new TreeSet<>();
+        for (Quote q : quotes) {
+            keys.add(ValueIndex.key(q.getCategory()));
+        }
+        return keys;
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findByText(String query, Long after, int limit) {
+        if (query == null || query.isBlank()) return new CursorPage<>(Collections.emptyList(), null);
+        ColumnarQuoteRepository.TextMatches matches = repository.textMatches(query, version);
+        if (matches == null) {
+            // cleared since: no postings apply, so check every copied quote's terms
+            List<Quote> items = new ArrayList<>(Math.min(limit, 1024));
+            for (int i = start(after); i < quotes.length; i++) {
+                if (!terms[i].matches(query)) continue;
+                if (items.size() == limit) return new CursorPage<>(items, items.get(limit - 1).getId());
+                items.add(quotes[i].copy());
+            }
+            return new CursorPage<>(items, null);
+        }
+
+        Roaring64Bitmap ids = matches.unchanged();
+        LongIterator changed = matches.changed().getLongIterator();
+        while (changed.hasNext()) {
+            long id = changed.next();
+            int at = indexOf(id);
+            if (at >= 0 && terms[at].matches(query)) ids.addLong(id);
+        }
+        LongIterator it = after == null ? ids.getLongIterator() : ids.getLongIteratorFrom(after + 1);
+        List<Quote> items = new ArrayList<>(Math.min(limit, 1024));
+        while (it.hasNext()) {
+            int at = indexOf(it.next());
+            if (at < 0) continue;
+            if (items.size() == limit) return new CursorPage<>(items, items.get(limit - 1).getId());
+            items.add(quotes[at].copy());
+        }
+        return new CursorPage<>(items, null);
+    }
+
+    @Override
+    public Map<Quote.Status, Long> countByStatus() {
+        Map<Quote.Status, Long> result = new EnumMap<>(Quote.Status.class);
+        for (Quote.Status status : Quote.Status.values()) {
+            result.put(status, 0L);
+        }
+        for (Quote q : quotes) {
+            if (q.getStatus() != null) result.merge(q.getStatus(), 1L, Long::sum);
+        }
+        return result;
+    }
+
+    @Override
+    public long count() {
+        return quotes.length;
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) repository.release(version);
+    }
+}
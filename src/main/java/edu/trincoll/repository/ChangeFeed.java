@@ -0,0 +1,127 @@
+package edu.trincoll.repository;
+
+import edu.trincoll.model.Quote;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The most recent changes made through a repository, in a fixed-size ring.
+ * <p>
+ * Writers append under the repository's write lock and never wait for readers:
+ * once the ring is full the oldest change is overwritten. Each reader keeps its
+ * own position, the sequence number of the last change it has seen, and reads
+ * on from there without locking. A reader that has fallen so far behind that
+ * the changes after its position are gone is told to resynchronize, i.e. to
+ * reload the full state and continue from {@link #latest()}.
+ */
+public final class ChangeFeed {
+
+    public static final int DEFAULT_CAPACITY = 65_536;
+
+    /**
+     * Changes after a position, or the news that some of them are gone
+     */
+    public record Batch(List<QuoteChange> changes, boolean resyncRequired) {
+        static final Batch RESYNC = new Batch(Collections.emptyList(), true);
+    }
+
+    private final AtomicReferenceArray<QuoteChange> ring;
+    private final int capacity;
+    // sequence of the newest change readers may see; written under the repository's write lock
+    private volatile long latest;
+    // readers blocked in await, so writers only take the monitor when someone is waiting
+    private volatile int waiting;
+    private final Object monitor = new Object();
+
+    public ChangeFeed() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ChangeFeed(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.ring = new AtomicReferenceArray<>(capacity);
+    }
+
+    void saved(Quote quote) {
+        append(QuoteChange.Type.SAVED, quote.getId(), quote);
+    }
+
+    void deleted(long id) {
+        append(QuoteChange.Type.DELETED, id, null);
+    }
+
+    void cleared() {
+        append(QuoteChange.Type.CLEARED, null, null);
+    }
+
+    private void append(QuoteChange.Type type, Long id, Quote quote) {
+        long sequence = latest + 1;
+        ring.set(slot(sequence), new QuoteChange(sequence, type, id, quote));
+        latest = sequence;
+        if (waiting > 0) {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    /**
+     * Sequence number of the newest change, or 0 if there has been none
+     */
+    public long latest() {
+        return latest;
+    }
+
+    /**
+     * The changes after a position, oldest first
+     * @param after sequence number of the last change already seen
+     * @param max   most changes to return
+     */
+    public Batch read(long after, int max) {
+        long last = latest;
+        // a position ahead of the feed comes from before a restart
+        if (after > last || after < last - capacity) return Batch.RESYNC;
+        long end = Math.min(last, after + max);
+        List<QuoteChange> changes = new ArrayList<>((int) (end - after));
+        for (long sequence = after + 1; sequence <= end; sequence++) {
+            QuoteChange change = ring.get(slot(sequence));
+            // overwritten while we were reading
+            if (change == null || change.sequence() != sequence) return Batch.RESYNC;
+            changes.add(change);
+        }
+        return new Batch(changes, false);
+    }
+
+    /**
+     * Like {@link #read}, but waits up to the timeout for a change after the
+     * position if there is none yet
+     */
+    public Batch await(long after, int max, long timeoutMillis) throws InterruptedException {
+        if (latest == after) {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            synchronized (monitor) {
+                waiting++;
+                try {
+                    long remaining = timeoutMillis;
+                    while (latest == after && remaining > 0) {
+                        monitor.wait(remaining);
+                        remaining = deadline - System.currentTimeMillis();
+                    }
+                } finally {
+                    waiting--;
+                }
+            }
+        }
+        return read(after, max);
+    }
+}
@@ -0,0 +1,1244 @@
+package edu.trincoll.repository;
+
+import edu.trincoll.model.Quote;
+import edu.trincoll.model.ValueDictionary;
+import edu.trincoll.search.FullTextIndex;
+import edu.trincoll.search.TrigramIndex;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Column-oriented implementation of the repository, selected with the
+ * {@code columnar} Spring profile.
+ * <p>
+ * Every quote occupies one slot across a set of parallel arrays: ids in a
+ * {@code long[]}, status in a {@code byte[]}, category, author, source and
+ * publisher as dictionary codes in {@code int[]}s, tags as a sorted
+ * {@code int[]} of codes per slot, and the created and updated timestamps as
+ * nanoseconds in {@code long[]}s. Finders and aggregates are scans over those
+ * primitive columns instead of lookups in secondary indexes, which keeps
+ * analytic queries (status counts, category groups, distinct categories and
+ * tags, popular tags) to tight loops over contiguous memory. Only free-text
+ * queries go through a {@link FullTextIndex}.
+ * <p>
+ * The layout is a hybrid: only the predicates and aggregates are columnar. A
+ * private copy of every saved quote is kept in an object column, and finders
+ * return copies of those, as {@link InMemoryQuoteRepository} does, rather than
+ * rebuilding quotes from the columns. So the store holds more memory than the
+ * map-based one, and materializing a result still reads one object per quote;
+ * what the columns save is the pointer chasing while deciding which quotes
+ * match.
+ * <p>
+ * A {@link #snapshot()} copies the references to the stored quotes under the
+ * read lock and answers its queries by scanning that array, except for text
+ * queries, which read the full-text index and recheck only the quotes changed
+ * since the snapshot, from a log kept while snapshots are open. Deleted slots
+ * are tombstoned and compacted away once they make up half of the columns.
+ * Writes are published to a {@link ChangeFeed}.
+ * Reads share a read lock; writes are serialized under the write lock. This
+ * implementation keeps no journal.
+ */
+@Repository
+@Profile("columnar")
+public class ColumnarQuoteRepository implements QuoteRepository {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MIN_COMPACTION = 1024;
+    private static final byte DELETED = -1;
+    private static final byte NO_STATUS = -2;
+    private static final int[] NO_TAGS = new int[0];
+
+    private final AtomicLong idGenerator = new AtomicLong(1);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // quotes saved or deleted so far; written under the write lock
+    private volatile long version;
+
+    // slot of every live id, in ascending id order
+    private final NavigableMap<Long, Integer> slots = new TreeMap<>();
+    private final Dictionary categories = new Dictionary();
+    private final Dictionary authors = new Dictionary();
+    private final Dictionary sources = new Dictionary();
+    private final Dictionary publishers = new Dictionary();
+    private final Dictionary tagNames = new Dictionary();
+    // shares the repeated values of the stored rows
+    private final ValueDictionary values = new ValueDictionary();
+    private final FullTextIndex textIndex = new FullTextIndex();
+    private final ChangeFeed feed = new ChangeFeed();
+    private volatile AccessListener accessListener = AccessListener.NONE;
+
+    // id changed at each version, kept only as far back as the oldest open snapshot;
+    // written under the write lock
+    private final NavigableMap<Long, Long> changes = new TreeMap<>();
+    // open snapshots per version; registered under the read lock
+    private final ConcurrentSkipListMap<Long, Integer> readers = new ConcurrentSkipListMap<>();
+    // version of the last deleteAll, which is not logged per id
+    private long clearedAt;
+
+    // Columns. A slot describes its quote as of the last save.
+    private int size;
+    private int deleted;
+    // true while slot order is id order, so scans need not sort
+    private boolean ordered = true;
+    private long[] ids;
+    private byte[] statuses;
+    private int[] categoryCodes;
+    private int[] authorCodes;
+    private int[] sourceCodes;
+    private int[] publisherCodes;
+    private int[][] tagCodes;
+    private String[] titles;
+    private FullTextIndex.Terms[] terms;
+    // the stored quotes, which results are copied from; only the columns above are scanned
+    private Quote[] rows;
+    // repository version at which each slot was last saved
+    private long[] versions;
+    private long[] createdTimes;
+    private long[] updatedTimes;
+
+    public ColumnarQuoteRepository() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Maps normalized field values to dense int codes. Every code is reference
+     * counted by the live slots holding it, as {@link ValueDictionary} counts
+     * the shared values, and is freed once none does; a freed code is handed to
+     * the next new value, so codes stay below {@link #capacity()} however many
+     * values come and go. A code read from a column therefore names the same
+     * value only while the lock is held, and a finder looks up its code and
+     * scans for it under one hold of the read lock. Tombstoned slots keep the
+     * codes they had without holding them, and every scan skips those slots.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        // value of every code, null once the code is freed
+        private final List<String> values = new ArrayList<>();
+        private int[] uses = new int[16];
+        private final Deque<Integer> free = new ArrayDeque<>();
+
+        /**
+         * The code of a key, taking one reference to it until {@link #release}
+         */
+        int acquire(String key) {
+            Integer code = codes.get(key);
+            if (code == null) {
+                code = free.poll();
+                if (code == null) {
+                    code = values.size();
+                    values.add(key);
+                    if (code == uses.length) uses = Arrays.copyOf(uses, code * 2);
+                } else {
+                    values.set(code, key);
+                }
+                codes.put(key, code);
+            }
+            uses[code]++;
+            return code;
+        }
+
+        /**
+         * Drops one reference to a code, freeing it when it was the last
+         */
+        void release(int code) {
+            if (--uses[code] > 0) return;
+            codes.remove(values.get(code));
+            values.set(code, null);
+            free.push(code);
+        }
+
+        /**
+         * The code of a key, or -1 if no live quote holds it
+         */
+        int find(String key) {
+            Integer code = codes.get(key);
+            return code == null ? -1 : code;
+        }
+
+        /**
+         * The value of a code, or null if the code is free
+         */
+        String value(int code) {
+            return values.get(code);
+        }
+
+        /**
+         * Number of values some live quote holds
+         */
+        int size() {
+            return codes.size();
+        }
+
+        /**
+         * Upper bound of the codes handed out, for arrays indexed by code
+         */
+        int capacity() {
+            return values.size();
+        }
+
+        void clear() {
+            codes.clear();
+            values.clear();
+            uses = new int[16];
+            free.clear();
+        }
+    }
+
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        statuses = new byte[capacity];
+        categoryCodes = new int[capacity];
+        authorCodes = new int[capacity];
+        sourceCodes = new int[capacity];
+        publisherCodes = new int[capacity];
+        tagCodes = new int[capacity][];
+        titles = new String[capacity];
+        terms = new FullTextIndex.Terms[capacity];
+        rows = new Quote[capacity];
+        versions = new long[capacity];
+        createdTimes = new long[capacity];
+        updatedTimes = new long[capacity];
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+        authorCodes = Arrays.copyOf(authorCodes, capacity);
+        sourceCodes = Arrays.copyOf(sourceCodes, capacity);
+        publisherCodes = Arrays.copyOf(publisherCodes, capacity);
+        tagCodes = Arrays.copyOf(tagCodes, capacity);
+        titles = Arrays.copyOf(titles, capacity);
+        terms = Arrays.copyOf(terms, capacity);
+        rows = Arrays.copyOf(rows, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        createdTimes = Arrays.copyOf(createdTimes, capacity);
+        updatedTimes = Arrays.copyOf(updatedTimes, capacity);
+    }
+
+    // ------------------------
+    // Writes
+    // ------------------------
+
+    @Override
+    public Quote save(Quote entity) {
+        lock.writeLock().lock();
+        try {
+            if (entity.getId() == null) {
+                entity.setId(idGenerator.getAndIncrement());
+            }
+            store(entity);
+            return entity;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void store(Quote q) {
+        store(q, slots.get(q.getId()));
+    }
+
+    /**
+     * @param slot the quote's current slot, already looked up by the caller, or null if it is new
+     */
+    private void store(Quote q, Integer slot) {
+        long id = q.getId();
+        // taken before the old codes are dropped, so a value the quote keeps keeps its code
+        int category = categories.acquire(ValueIndex.key(q.getCategory()));
+        int author = authors.acquire(ValueIndex.key(q.getAuthor()));
+        int source = sources.acquire(ValueIndex.key(q.getSource()));
+        int publisher = publishers.acquire(ValueIndex.key(q.getPublisher()));
+        int[] tags = acquireTags(q.getTags());
+        if (slot == null) {
+            if (size == ids.length) grow();
+            if (size > 0 && ids[size - 1] >= id) ordered = false;
+            slot = size++;
+            ids[slot] = id;
+            slots.put(id, slot);
+        } else {
+            textIndex.remove(id, terms[slot]);
+            releaseCodes(slot);
+        }
+        statuses[slot] = q.getStatus() == null ? NO_STATUS : (byte) q.getStatus().ordinal();
+        categoryCodes[slot] = category;
+        authorCodes[slot] = author;
+        sourceCodes[slot] = source;
+        publisherCodes[slot] = publisher;
+        tagCodes[slot] = tags;
+        titles[slot] = TrigramIndex.fold(q.getTitle());
+        terms[slot] = FullTextIndex.analyze(q);
+        createdTimes[slot] = q.createdNanos();
+        updatedTimes[slot] = q.updatedNanos();
+        Quote stored = q.copy();
+        values.acquire(stored);
+        if (rows[slot] != null) values.release(rows[slot]);
+        rows[slot] = stored;
+        textIndex.add(id, terms[slot]);
+        versions[slot] = ++version;
+        changed(id);
+        feed.saved(rows[slot]);
+    }
+
+    /**
+     * Rewrites a slot whose quote changed only its status, and so its update
+     * time; the value codes, tags, title and full-text terms stay as they are
+     */
+    private void storeStatus(Quote q, int slot) {
+        statuses[slot] = q.getStatus() == null ? NO_STATUS : (byte) q.getStatus().ordinal();
+        updatedTimes[slot] = q.updatedNanos();
+        // same values as the row it replaces, so it takes over that row's dictionary references
+        rows[slot] = q.copy();
+        versions[slot] = ++version;
+        changed(q.getId());
+        feed.saved(rows[slot]);
+    }
+
+    /**
+     * Logs a change for the open snapshots and forgets the changes none of them
+     * needs any more. Called under the write lock once the version has moved.
+     */
+    private void changed(long id) {
+        Map.Entry<Long, Integer> oldest = readers.firstEntry();
+        if (oldest == null) {
+            changes.clear();
+            return;
+        }
+        changes.put(version, id);
+        changes.headMap(oldest.getKey(), true).clear();
+    }
+
+    @Override
+    public Optional<Versioned<Quote>> update(Long id, Long expectedVersion, UnaryOperator<Quote> change) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            if (slot == null) return Optional.empty();
+            if (expectedVersion != null && versions[slot] != expectedVersion) {
+                throw new VersionConflictException(id, expectedVersion, versions[slot]);
+            }
+            Quote changed = change.apply(rows[slot].copy());
+            changed.setId(id);
+            store(changed, slot);
+            return Optional.of(new Versioned<>(changed, versions[slot]));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Distinct codes of the non-blank tags, sorted for binary search, taking
+     * one reference to each
+     */
+    private int[] acquireTags(Set<String> tags) {
+        if (tags == null || tags.isEmpty()) return NO_TAGS;
+        // tags differing only in case share a key, which must be counted once
+        Set<String> keys = new HashSet<>();
+        for (String tag : tags) {
+            String key = ValueIndex.key(tag);
+            if (!key.isEmpty()) keys.add(key);
+        }
+        if (keys.isEmpty()) return NO_TAGS;
+        int[] codes = new int[keys.size()];
+        int n = 0;
+        for (String key : keys) {
+            codes[n++] = tagNames.acquire(key);
+        }
+        Arrays.sort(codes);
+        return codes;
+    }
+
+    /**
+     * Drops the dictionary references a live slot holds
+     */
+    private void releaseCodes(int slot) {
+        categories.release(categoryCodes[slot]);
+        authors.release(authorCodes[slot]);
+        sources.release(sourceCodes[slot]);
+        publishers.release(publisherCodes[slot]);
+        for (int code : tagCodes[slot]) {
+            tagNames.release(code);
+        }
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(id);
+            if (slot == null) return;
+            textIndex.remove(id, terms[slot]);
+            releaseCodes(slot);
+            statuses[slot] = DELETED;
+            tagCodes[slot] = NO_TAGS;
+            titles[slot] = null;
+            terms[slot] = null;
+            values.release(rows[slot]);
+            rows[slot] = null;
+            deleted++;
+            version++;
+            changed(id);
+            feed.deleted(id);
+            if (deleted >= MIN_COMPACTION && deleted * 2 >= size) compact();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the columns without tombstones, in id order
+     */
+    private void compact() {
+        long[] oldIds = ids;
+        byte[] oldStatuses = statuses;
+        int[] oldCategories = categoryCodes;
+        int[] oldAuthors = authorCodes;
+        int[] oldSources = sourceCodes;
+        int[] oldPublishers = publisherCodes;
+        int[][] oldTags = tagCodes;
+        String[] oldTitles = titles;
+        FullTextIndex.Terms[] oldTerms = terms;
+        Quote[] oldRows = rows;
+        long[] oldVersions = versions;
+        long[] oldCreated = createdTimes;
+        long[] oldUpdated = updatedTimes;
+
+        allocate(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, slots.size())) * 2));
+        int next = 0;
+        for (Map.Entry<Long, Integer> entry : slots.entrySet()) {
+            int from = entry.getValue();
+            ids[next] = oldIds[from];
+            statuses[next] = oldStatuses[from];
+            categoryCodes[next] = oldCategories[from];
+            authorCodes[next] = oldAuthors[from];
+            sourceCodes[next] = oldSources[from];
+            publisherCodes[next] = oldPublishers[from];
+            tagCodes[next] = oldTags[from];
+            titles[next] = oldTitles[from];
+            terms[next] = oldTerms[from];
+            rows[next] = oldRows[from];
+            versions[next] = oldVersions[from];
+            createdTimes[next] = oldCreated[from];
+            updatedTimes[next] = oldUpdated[from];
+            entry.setValue(next++);
+        }
+        size = next;
+        deleted = 0;
+        ordered = true;
+    }
+
+    @Override
+    public void deleteAll() {
+        lock.writeLock().lock();
+        try {
+            version += slots.size();
+            clearedAt = version;
+            changes.clear();
+            feed.cleared();
+            slots.clear();
+            categories.clear();
+            authors.clear();
+            sources.clear();
+            publishers.clear();
+            tagNames.clear();
+            values.clear();
+            textIndex.clear();
+            allocate(INITIAL_CAPACITY);
+            size = 0;
+            deleted = 0;
+            ordered = true;
+            idGenerator.set(1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Quote> saveAll(List<Quote> entities) {
+        lock.writeLock().lock();
+        try {
+            // reserve one contiguous id range for the whole batch
+            long unassigned = 0;
+            for (Quote entity : entities) {
+                if (entity.getId() == null) unassigned++;
+            }
+            long nextId = idGenerator.getAndAdd(unassigned);
+
+            List<Quote> saved = new ArrayList<>(entities.size());
+            for (Quote entity : entities) {
+                if (entity.getId() == null) entity.setId(nextId++);
+                store(entity);
+                saved.add(entity);
+            }
+            return saved;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ------------------------
+    // Scans
+    // ------------------------
+
+    /**
+     * Live quotes whose slot matches, in ascending id order; reported to the
+     * access listener as a scan of {@code method}
+     */
+    private List<Quote> scan(String method, IntPredicate match) {
+        lock.readLock().lock();
+        try {
+            List<Quote> result = new ArrayList<>();
+            if (ordered) {
+                for (int slot = 0; slot < size; slot++) {
+                    if (statuses[slot] != DELETED && match.test(slot)) result.add(rows[slot].copy());
+                }
+            } else {
+                for (int slot : slots.values()) {
+                    if (match.test(slot)) result.add(rows[slot].copy());
+                }
+            }
+            scanned(method);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Live quotes whose code in the column equals the given code, in ascending id order
+     */
+    private List<Quote> scanEqual(String method, int[] column, int code) {
+        lock.readLock().lock();
+        try {
+            if (!ordered) return scan(method, slot -> column[slot] == code);
+            List<Quote> result = new ArrayList<>();
+            byte[] status = statuses;
+            for (int slot = 0, n = size; slot < n; slot++) {
+                // deleted slots have a null row but keep their codes
+                if (column[slot] == code && status[slot] != DELETED) result.add(rows[slot].copy());
+            }
+            scanned(method);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * At most {@code limit} matching quotes with an id greater than {@code after}
+     */
+    private CursorPage<Quote, Long> page(String method, IntPredicate match, Long after, int limit) {
+        lock.readLock().lock();
+        try {
+            Collection<Integer> candidates = after == null ? slots.values() : slots.tailMap(after, false).values();
+            List<Quote> items = new ArrayList<>(Math.min(limit, 1024));
+            long examined = 0;
+            for (int slot : candidates) {
+                examined++;
+                if (!match.test(slot)) continue;
+                if (items.size() == limit) {
+                    accessListener.accessed(method, false, examined);
+                    // there is at least one more match, so hand out a cursor
+                    return new CursorPage<>(items, items.get(limit - 1).getId());
+                }
+                items.add(rows[slot].copy());
+            }
+            accessListener.accessed(method, false, examined);
+            return new CursorPage<>(items, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reports a scan of every slot in use, called under the read lock
+     */
+    private void scanned(String method) {
+        accessListener.accessed(method, false, ordered ? size : slots.size());
+    }
+
+    @Override
+    public void setAccessListener(AccessListener listener) {
+        accessListener = listener == null ? AccessListener.NONE : listener;
+    }
+
+    // ------------------------
+    // Finders
+    // ------------------------
+
+    @Override
+    public Optional<Quote> findById(Long id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            return slot == null ? Optional.empty() : Optional.of(rows[slot].copy());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Quote> findAll() {
+        return scan("findAll", slot -> true);
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findAll(Long after, int limit) {
+        return page("findAllPage", slot -> true, after, limit);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        lock.readLock().lock();
+        try {
+            return slots.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Quote> findByStatus(Quote.Status status) {
+        if (status == null) return Collections.emptyList();
+        byte code = (byte) status.ordinal();
+        lock.readLock().lock();
+        try {
+            if (!ordered) return scan("findByStatus", slot -> statuses[slot] == code);
+            List<Quote> result = new ArrayList<>();
+            byte[] column = statuses;
+            for (int slot = 0, n = size; slot < n; slot++) {
+                if (column[slot] == code) result.add(rows[slot].copy());
+            }
+            scanned("findByStatus");
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findByStatus(Quote.Status status, Long after, int limit) {
+        if (status == null) return new CursorPage<>(Collections.emptyList(), null);
+        byte code = (byte) status.ordinal();
+        return page("findByStatusPage", slot -> statuses[slot] == code, after, limit);
+    }
+
+    @Override
+    public CursorPage<Long, Long> updateStatusWhere(Quote.Status from, Quote.Status to, Predicate<Quote> predicate,
+                                                    Long after, int limit) {
+        if (from == null || to == null || from == to) return new CursorPage<>(Collections.emptyList(), null);
+        byte code = (byte) from.ordinal();
+        lock.writeLock().lock();
+        try {
+            List<Long> moved = new ArrayList<>();
+            // restoring an existing id rewrites its slot in place, so the map is not modified under the walk
+            Iterator<Map.Entry<Long, Integer>> candidates =
+                    (after == null ? slots : slots.tailMap(after, false)).entrySet().iterator();
+            int examined = 0;
+            Long last = after;
+            while (candidates.hasNext()) {
+                Map.Entry<Long, Integer> candidate = candidates.next();
+                int slot = candidate.getValue();
+                if (statuses[slot] != code) continue;
+                if (examined++ == limit) {
+                    return new CursorPage<>(moved, last);
+                }
+                last = candidate.getKey();
+                Quote q = rows[slot].copy();
+                if (!predicate.test(q)) continue;
+                q.setStatus(to);
+                storeStatus(q, slot);
+                moved.add(last);
+            }
+            return new CursorPage<>(moved, null);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Walks the {@code from} quotes in id order, one batch per hold of the
+     * write lock, and compares the update-time column before copying a row,
+     * so only quotes that move are copied.
+     */
+    @Override
+    public int updateStatusUpdatedBefore(Quote.Status from, Quote.Status to, LocalDateTime cutoff, int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive");
+        if (from == null || to == null || from == to || cutoff == null) return 0;
+        byte code = (byte) from.ordinal();
+        long before = Quote.toNanos(cutoff);
+        int moved = 0;
+        Long last = null;
+        boolean more = true;
+        while (more) {
+            more = false;
+            lock.writeLock().lock();
+            try {
+                Iterator<Map.Entry<Long, Integer>> candidates =
+                        (last == null ? slots : slots.tailMap(last, false)).entrySet().iterator();
+                int examined = 0;
+                while (candidates.hasNext()) {
+                    Map.Entry<Long, Integer> candidate = candidates.next();
+                    int slot = candidate.getValue();
+                    if (statuses[slot] != code) continue;
+                    if (examined++ == batchSize) {
+                        more = true;
+                        break;
+                    }
+                    last = candidate.getKey();
+                    if (updatedTimes[slot] >= before) continue;
+                    Quote q = rows[slot].copy();
+                    q.setStatus(to);
+                    storeStatus(q, slot);
+                    moved++;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return moved;
+    }
+
+    @Override
+    public Map<Quote.Status, Long> countByStatus() {
+        long[] counts = new long[Quote.Status.values().length];
+        lock.readLock().lock();
+        try {
+            byte[] column = statuses;
+            for (int slot = 0, n = size; slot < n; slot++) {
+                byte status = column[slot];
+                if (status >= 0) counts[status]++;
+            }
+            scanned("countByStatus");
+        } finally {
+            lock.readLock().unlock();
+        }
+        Map<Quote.Status, Long> result = new EnumMap<>(Quote.Status.class);
+        for (Quote.Status status : Quote.Status.values()) {
+            result.put(status, counts[status.ordinal()]);
+        }
+        return result;
+    }
+
+    /**
+     * Removes leading and trailing whitespace if string is not null
+     */
+    private static String norm(String s) {
+        return s == null ? "" : s.trim();
+    }
+
+    /**
+     * Looks up the code of a value and scans for it under one hold of the read
+     * lock, so the code cannot be freed and handed to another value in between
+     * @param none the result when no live quote holds the value
+     */
+    private <T> T withCode(Dictionary dictionary, String value, T none, IntFunction<T> scan) {
+        lock.readLock().lock();
+        try {
+            int code = dictionary.find(ValueIndex.key(value));
+            return code < 0 ? none : scan.apply(code);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Quote> findByCategory(String category) {
+        // a blank category matches uncategorized quotes
+        return withCode(categories, category, Collections.emptyList(),
+                code -> scanEqual("findByCategory", categoryCodes, code));
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findByCategory(String category, Long after, int limit) {
+        return withCode(categories, category, new CursorPage<>(Collections.emptyList(), null),
+                code -> page("findByCategoryPage", slot -> categoryCodes[slot] == code, after, limit));
+    }
+
+    @Override
+    public SortedSet<String> findDistinctCategories() {
+        lock.readLock().lock();
+        try {
+            boolean[] used = new boolean[categories.capacity()];
+            byte[] status = statuses;
+            int[] column = categoryCodes;
+            for (int slot = 0, n = size; slot < n; slot++) {
+                if (status[slot] != DELETED) used[column[slot]] = true;
+            }
+            scanned("findDistinctCategories");
+            SortedSet<String> result = new TreeSet<>();
+            for (int code = 0; code < used.length; code++) {
+                if (used[code]) result.add(categories.value(code));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Buckets the live slots by category code in one pass over the column,
+     * then copies each bucket's quotes; only the copies read the stored rows
+     */
+    @Override
+    public SortedMap<String, List<Quote>> groupByCategory() {
+        lock.readLock().lock();
+        try {
+            int[] counts = new int[categories.capacity()];
+            byte[] status = statuses;
+            int[] column = categoryCodes;
+            for (int slot = 0, n = size; slot < n; slot++) {
+                if (status[slot] != DELETED) counts[column[slot]]++;
+            }
+            scanned("groupByCategory");
+            int[][] members = new int[counts.length][];
+            for (int code = 0; code < counts.length; code++) {
+                if (counts[code] > 0) members[code] = new int[counts[code]];
+            }
+            // filled in id order, so every group comes out in id order
+            int[] filled = new int[counts.length];
+            if (ordered) {
+                for (int slot = 0, n = size; slot < n; slot++) {
+                    if (status[slot] != DELETED) members[column[slot]][filled[column[slot]]++] = slot;
+                }
+            } else {
+                for (int slot : slots.values()) {
+                    members[column[slot]][filled[column[slot]]++] = slot;
+                }
+            }
+
+            SortedMap<String, List<Quote>> result = new TreeMap<>();
+            for (int[] group : members) {
+                if (group == null) continue;
+                // a code stands for the lower-cased category, which can be spelled several ways
+                for (int slot : group) {
+                    Quote q = rows[slot];
+                    result.computeIfAbsent(norm(q.getCategory()), k -> new ArrayList<>(group.length)).add(q.copy());
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Quote> findByTag(String tag) {
+        if (norm(tag).isEmpty()) return Collections.emptyList();
+        return withCode(tagNames, tag, Collections.emptyList(),
+                code -> scan("findByTag", slot -> Arrays.binarySearch(tagCodes[slot], code) >= 0));
+    }
+
+    @Override
+    public List<Quote> findByAllTags(Collection<String> tags) {
+        if (tags == null || tags.isEmpty()) return Collections.emptyList();
+        lock.readLock().lock();
+        try {
+            int[] codes = tagCodes(tags, true);
+            if (codes == null || codes.length == 0) return Collections.emptyList();
+            return scan("findByAllTags", slot -> {
+                int[] held = tagCodes[slot];
+                for (int code : codes) {
+                    if (Arrays.binarySearch(held, code) < 0) return false;
+                }
+                return true;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Quote> findByAnyTag(Collection<String> tags) {
+        if (tags == null || tags.isEmpty()) return Collections.emptyList();
+        lock.readLock().lock();
+        try {
+            int[] codes = tagCodes(tags, false);
+            if (codes.length == 0) return Collections.emptyList();
+            return scan("findByAnyTag", slot -> {
+                int[] held = tagCodes[slot];
+                for (int code : codes) {
+                    if (Arrays.binarySearch(held, code) >= 0) return true;
+                }
+                return false;
+            });
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Codes of the given non-blank tags. Unknown tags are skipped, or make the
+     * result null when {@code required} (no quote can carry all of them then).
+     * Called under the read lock, which must stay held while the codes are used.
+     */
+    private int[] tagCodes(Collection<String> tags, boolean required) {
+        int[] codes = new int[tags.size()];
+        int n = 0;
+        for (String tag : tags) {
+            if (tag == null) continue;
+            String key = ValueIndex.key(tag);
+            if (key.isEmpty()) continue;
+            int code = tagNames.find(key);
+            if (code >= 0) {
+                codes[n++] = code;
+            } else if (required) {
+                return null;
+            }
+        }
+        return Arrays.copyOf(codes, n);
+    }
+
+    @Override
+    public List<String> findMostPopularTags(int limit) {
+        if (limit <= 0) return Collections.emptyList();
+        int[] counts;
+        List<String> names;
+        lock.readLock().lock();
+        try {
+            counts = new int[tagNames.capacity()];
+            int[][] column = tagCodes;
+            for (int slot = 0, n = size; slot < n; slot++) {
+                for (int code : column[slot]) {
+                    counts[code]++;
+                }
+            }
+            scanned("findMostPopularTags");
+            names = new ArrayList<>(tagNames.values);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Integer> used = new ArrayList<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) used.add(code);
+        }
+        used.sort(Comparator.<Integer>comparingInt(code -> counts[code]).reversed()
+                .thenComparing(names::get));
+        List<String> result = new ArrayList<>(Math.min(limit, used.size()));
+        for (int i = 0; i < used.size() && i < limit; i++) {
+            result.add(names.get(used.get(i)));
+        }
+        return result;
+    }
+
+    @Override
+    public SortedSet<String> findDistinctTags() {
+        lock.readLock().lock();
+        try {
+            boolean[] used = new boolean[tagNames.capacity()];
+            // deleted slots hold no tags
+            int[][] column = tagCodes;
+            for (int slot = 0, n = size; slot < n; slot++) {
+                for (int code : column[slot]) {
+                    used[code] = true;
+                }
+            }
+            scanned("findDistinctTags");
+            SortedSet<String> result = new TreeSet<>();
+            for (int code = 0; code < used.length; code++) {
+                if (used[code]) result.add(tagNames.value(code));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Quote> findByText(String query) {
+        if (norm(query).isEmpty()) return Collections.emptyList();
+        Roaring64Bitmap matches = textIndex.search(query);
+        accessListener.accessed("findByText", true, matches.getLongCardinality());
+        List<Quote> result = new ArrayList<>((int) Math.min(matches.getLongCardinality(), Integer.MAX_VALUE));
+        lock.readLock().lock();
+        try {
+            LongIterator it = matches.getLongIterator();
+            while (it.hasNext()) {
+                Integer slot = slots.get(it.next());
+                if (slot != null) result.add(rows[slot].copy());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findByText(String query, Long after, int limit) {
+        if (norm(query).isEmpty()) return new CursorPage<>(Collections.emptyList(), null);
+        Roaring64Bitmap matches = textIndex.search(query);
+        accessListener.accessed("findByTextPage", true, matches.getLongCardinality());
+        LongIterator it = after == null ? matches.getLongIterator() : matches.getLongIteratorFrom(after + 1);
+        List<Quote> items = new ArrayList<>(Math.min(limit, 1024));
+        lock.readLock().lock();
+        try {
+            while (it.hasNext()) {
+                Integer slot = slots.get(it.next());
+                if (slot == null) continue;
+                if (items.size() == limit) {
+                    return new CursorPage<>(items, items.get(limit - 1).getId());
+                }
+                items.add(rows[slot].copy());
+            }
+            return new CursorPage<>(items, null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Quote> findByTitleContaining(String searchTerm) {
+        String needle = TrigramIndex.fold(searchTerm);
+        if (needle.isEmpty()) return Collections.emptyList();
+        return scan("findByTitleContaining", slot -> titles[slot].contains(needle));
+    }
+
+    @Override
+    public List<Quote> findByAuthor(String author) {
+        if (norm(author).isEmpty()) return Collections.emptyList();
+        return withCode(authors, author, Collections.emptyList(),
+                code -> scanEqual("findByAuthor", authorCodes, code));
+    }
+
+    @Override
+    public List<Quote> findBySource(String source) {
+        if (norm(source).isEmpty()) return Collections.emptyList();
+        return withCode(sources, source, Collections.emptyList(),
+                code -> scanEqual("findBySource", sourceCodes, code));
+    }
+
+    @Override
+    public List<Quote> findByPublisher(String publisher) {
+        if (norm(publisher).isEmpty()) return Collections.emptyList();
+        return withCode(publishers, publisher, Collections.emptyList(),
+                code -> scanEqual("findByPublisher", publisherCodes, code));
+    }
+
+    @Override
+    public List<Quote> findCreatedBetween(LocalDateTime from, LocalDateTime to) {
+        long low = from == null ? Long.MIN_VALUE : Quote.toNanos(from);
+        long high = to == null ? Long.MAX_VALUE : Quote.toNanos(to);
+        return byTime("findCreatedBetween", createdTimes, time -> time >= low && time < high, false,
+                Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Quote> findUpdatedSince(LocalDateTime since) {
+        long low = since == null ? Long.MIN_VALUE : Quote.toNanos(since);
+        return byTime("findUpdatedSince", updatedTimes, time -> time >= low, false, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Quote> findLatest(int limit) {
+        if (limit <= 0) return Collections.emptyList();
+        return byTime("findLatest", createdTimes, time -> true, true, limit);
+    }
+
+    /**
+     * At most {@code limit} live quotes whose time in the column matches, ordered
+     * by that time and then id. The best matches so far are kept in a bounded heap.
+     */
+    private List<Quote> byTime(String method, long[] column, LongPredicate match, boolean newestFirst, int limit) {
+        lock.readLock().lock();
+        try {
+            long[] times = column;
+            Comparator<Integer> order = Comparator.<Integer>comparingLong(slot -> times[slot])
+                    .thenComparingLong(slot -> ids[slot]);
+            if (newestFirst) order = order.reversed();
+            // worst kept slot at the head, so it is the one dropped
+            PriorityQueue<Integer> kept = new PriorityQueue<>(order.reversed());
+            for (int slot = 0, n = size; slot < n; slot++) {
+                if (statuses[slot] == DELETED || !match.test(times[slot])) continue;
+                kept.add(slot);
+                if (kept.size() > limit) kept.poll();
+            }
+            scanned(method);
+            List<Integer> slotsInOrder = new ArrayList<>(kept);
+            slotsInOrder.sort(order);
+            List<Quote> result = new ArrayList<>(slotsInOrder.size());
+            for (int slot : slotsInOrder) {
+                result.add(rows[slot].copy());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The full-text index is the only access path besides the columns, so a
+     * query with text reads the text matches when they are fewer than the
+     * stored quotes; any other query walks the ids in order and tests the
+     * status, dictionary-code and tag-code columns of each slot.
+     */
+    @Override
+    public QueryResult query(QuoteQuery query) {
+        Roaring64Bitmap textIds = query.text() == null ? null : textIndex.search(query.text());
+        lock.readLock().lock();
+        try {
+            int[] tags = query.tags().isEmpty() ? null : tagCodes(query.tags(), true);
+            Map<String, Long> estimates = new LinkedHashMap<>();
+            if (textIds != null) estimates.put("text", textIds.getLongCardinality());
+            estimates.put("scan", (long) slots.size());
+            boolean byText = textIds != null && textIds.getLongCardinality() < slots.size();
+            boolean descending = query.sort() == QuoteQuery.Sort.ID_DESC;
+            IntPredicate match = filter(query, tags, textIds);
+
+            QueryCollector collector = new QueryCollector(query);
+            if (byText) {
+                LongIterator it = descending ? textIds.getReverseLongIterator() : textIds.getLongIterator();
+                while (it.hasNext() && collector.wantsMore()) {
+                    Integer slot = slots.get(it.next());
+                    if (slot != null && match.test(slot)) collector.add(rows[slot]);
+                }
+            } else {
+                Iterator<Integer> it = (descending ? slots.descendingMap() : slots).values().iterator();
+                while (it.hasNext() && collector.wantsMore()) {
+                    int slot = it.next();
+                    if (match.test(slot)) collector.add(rows[slot]);
+                }
+            }
+            return collector.result(byText ? "text" : "scan", estimates);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tests a live slot against every filter of a query; called under the read lock
+     * @param tags the codes of the query's tags, null if one of them is unknown
+     */
+    private IntPredicate filter(QuoteQuery query, int[] tags, Roaring64Bitmap textIds) {
+        int category = query.category() == null ? -1 : categories.find(ValueIndex.key(query.category()));
+        int author = query.author() == null ? -1 : authors.find(ValueIndex.key(query.author()));
+        // a value no quote holds matches nothing
+        if ((query.category() != null && category < 0) || (query.author() != null && author < 0)
+                || (!query.tags().isEmpty() && tags == null)) {
+            return slot -> false;
+        }
+        boolean anyStatus = query.status() == null;
+        byte status = anyStatus ? 0 : (byte) query.status().ordinal();
+        return slot -> {
+            if (!anyStatus && statuses[slot] != status) return false;
+            if (category >= 0 && categoryCodes[slot] != category) return false;
+            if (author >= 0 && authorCodes[slot] != author) return false;
+            if (tags != null) {
+                for (int code : tags) {
+                    if (Arrays.binarySearch(tagCodes[slot], code) < 0) return false;
+                }
+            }
+            return textIds == null || textIds.contains(ids[slot]);
+        };
+    }
+
+    @Override
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public OptionalLong version(Long id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            return slot == null ? OptionalLong.empty() : OptionalLong.of(versions[slot]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public ChangeFeed changeFeed() {
+        return feed;
+    }
+
+    @Override
+    public QuoteSnapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            // the stored quotes and their terms are never changed, so copying the references is enough
+            Quote[] quotes = new Quote[slots.size()];
+            FullTextIndex.Terms[] quoteTerms = new FullTextIndex.Terms[quotes.length];
+            int i = 0;
+            for (int slot : slots.values()) {
+                quotes[i] = rows[slot];
+                quoteTerms[i++] = terms[slot];
+            }
+            // writers are locked out, so every change after this version is logged
+            readers.merge(version, 1, Integer::sum);
+            return new ArraySnapshot(this, version, quotes, quoteTerms);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void release(long snapshotVersion) {
+        readers.computeIfPresent(snapshotVersion, (k, open) -> open == 1 ? null : open - 1);
+    }
+
+    /**
+     * Postings of a text query as of a snapshot version
+     * @param unchanged current matches that have not changed since the version
+     * @param changed   ids saved or deleted since the version, whose snapshot
+     *                  copies the caller has to check itself
+     */
+    record TextMatches(Roaring64Bitmap unchanged, Roaring64Bitmap changed) {
+    }
+
+    /**
+     * The text index's matches for a snapshot at {@code since}, or null if the
+     * store was cleared after it and every quote has to be checked
+     */
+    TextMatches textMatches(String query, long since) {
+        lock.readLock().lock();
+        try {
+            if (clearedAt > since) return null;
+            Roaring64Bitmap changed = new Roaring64Bitmap();
+            for (long id : changes.tailMap(since, false).values()) {
+                changed.addLong(id);
+            }
+            Roaring64Bitmap unchanged = textIndex.search(query);
+            unchanged.andNot(changed);
+            return new TextMatches(unchanged, changed);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Number of distinct values the live quotes hold across the category,
+     * author, source, publisher and tag dictionaries
+     */
+    int dictionarySize() {
+        lock.readLock().lock();
+        try {
+            return categories.size() + authors.size() + sources.size() + publishers.size() + tagNames.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
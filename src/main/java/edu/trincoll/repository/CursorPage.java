@@ -0,0 +1,14 @@
+package edu.trincoll.repository;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated result, in ascending id order.
+ *
+ * @param items the entities on this page
+ * @param nextCursor the id to pass as {@code after} for the next page, or null on the last page
+ * @param <T> The entity type
+ * @param <ID> The ID type
+ */
+public record CursorPage<T, ID>(List<T> items, ID nextCursor) {
+}
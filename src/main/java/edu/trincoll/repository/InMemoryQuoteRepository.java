@@ -1,91 +1,774 @@
 package edu.trincoll.repository;
 
 import edu.trincoll.model.Quote;
+import edu.trincoll.model.ValueDictionary;
+import edu.trincoll.persistence.QuoteJournal;
+import edu.trincoll.search.Analyzer;
+import edu.trincoll.search.FullTextIndex;
+import edu.trincoll.search.TrigramIndex;
+import org.roaringbitmap.longlong.LongIterator;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * In-memory implementation of the repository using Java collections.
  * Uses ConcurrentHashMap for thread-safety.
+ * <p>
+ * Category, author, source and publisher lookups are served from secondary
+ * indexes, tag lookups from an inverted index with bitmap posting lists, time
+ * ranges from sorted indexes on createdAt and updatedAt, and quotes are
+ * partitioned by status with a running count per partition.
+ * Free-text queries go to a tokenized {@link FullTextIndex} and title substring
+ * queries to a {@link TrigramIndex}.
+ * Writes are serialized so the indexes always move together with the
+ * storage map; reads stay lock-free.
+ * <p>
+ * Stored quotes are private copies that are never changed: a save installs a
+ * new immutable version and every read hands out a copy, so callers may modify
+ * what they get back without affecting the store or other readers. Each version
+ * is stamped with the repository version, and the versions an open
+ * {@link #snapshot()} can still see are kept in a chain behind the current one,
+ * which lets a snapshot read one consistent state without taking a lock.
+ * <p>
+ * Every write is also reported to a {@link QuoteJournal}, in the order it was
+ * applied, and the state is recovered from the journal on startup. Without a
+ * journal the repository is purely in memory. Writes made after startup are
+ * published to a {@link ChangeFeed} as well.
+ * <p>
+ * This is the default implementation; the {@code columnar} profile swaps in
+ * {@link ColumnarQuoteRepository} instead.
  */
 @Repository
+@Profile("!columnar")
 public class InMemoryQuoteRepository implements QuoteRepository {
     
-    private final Map<Long, Quote> storage = new ConcurrentHashMap<>();
+    private final Map<Long, Version> storage = new ConcurrentHashMap<>();
     private final AtomicLong idGenerator = new AtomicLong(1);
+    // every stored id in ascending order, for keyset pagination
+    private final NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+
+    // number of quote changes applied so far; bumped once the change is in place
+    private final AtomicLong version = new AtomicLong();
+    // the id changed at each version, kept while a snapshot predates the change
+    private final ConcurrentSkipListMap<Long, Long> changes = new ConcurrentSkipListMap<>();
+    // number of open snapshots per version
+    private final ConcurrentSkipListMap<Long, Integer> readers = new ConcurrentSkipListMap<>();
+
+    // Field values and analyzed terms each stored quote was indexed under, so
+    // removing it from the indexes does not have to analyze it again
+    private final Map<Long, IndexEntry> indexed = new ConcurrentHashMap<>();
+    private final ValueIndex categoryIndex = new ValueIndex();
+    private final ValueIndex authorIndex = new ValueIndex();
+    private final ValueIndex sourceIndex = new ValueIndex();
+    private final ValueIndex publisherIndex = new ValueIndex();
+    private final TagIndex tagIndex = new TagIndex();
+    private final FullTextIndex textIndex = new FullTextIndex();
+    private final TrigramIndex titleTrigrams = new TrigramIndex();
+    private final TimeIndex createdIndex = new TimeIndex();
+    private final TimeIndex updatedIndex = new TimeIndex();
+    private final Map<Quote.Status, NavigableSet<Long>> statusPartitions = new EnumMap<>(Quote.Status.class);
+    // replaced as a whole so a status move is seen atomically
+    private final AtomicReference<Counts> counts =
+            new AtomicReference<>(new Counts(0, 0, new long[Quote.Status.values().length]));
+
+    // shares the repeated values of the stored quotes
+    private final ValueDictionary values = new ValueDictionary();
+
+    private final QuoteJournal journal;
+    private final ChangeFeed feed = new ChangeFeed();
+    private volatile AccessListener accessListener = AccessListener.NONE;
+
+    public InMemoryQuoteRepository() {
+        this(QuoteJournal.NONE);
+    }
+
+    @Autowired
+    public InMemoryQuoteRepository(QuoteJournal journal) {
+        this.journal = journal;
+        for (Quote.Status status : Quote.Status.values()) {
+            statusPartitions.put(status, new ConcurrentSkipListSet<>());
+        }
+        long nextId = journal.recover(new QuoteJournal.Replay() {
+            @Override
+            public void restore(Collection<Quote> quotes) {
+                load(quotes);
+            }
+
+            @Override
+            public void save(Quote quote) {
+                applySave(quote);
+            }
+
+            @Override
+            public void delete(long id) {
+                applyDelete(id);
+            }
+
+            @Override
+            public void deleteAll() {
+                applyDeleteAll();
+            }
+        });
+        idGenerator.set(nextId);
+    }
+
+    /**
+     * One stored state of a quote, newest first; a null quote records a deletion.
+     * Only the link to older versions ever changes, when pruning cuts off the
+     * versions no open snapshot can see any more.
+     */
+    private static final class Version {
+        final Quote quote;
+        final long version;
+        volatile Version older;
+
+        Version(Quote quote, long version, Version older) {
+            this.quote = quote;
+            this.version = version;
+            this.older = older;
+        }
+
+        /**
+         * The quote as of a repository version, or null if it did not exist then
+         */
+        Quote at(long v) {
+            Version n = this;
+            while (n != null && n.version > v) n = n.older;
+            return n == null ? null : n.quote;
+        }
+
+        /**
+         * Drops everything older than the newest version at or below the floor
+         */
+        void trim(long floor) {
+            Version n = this;
+            while (n.version > floor && n.older != null) n = n.older;
+            n.older = null;
+        }
+    }
+
+    /**
+     * Live quotes and quotes per status ordinal, as of a repository version
+     */
+    private record Counts(long version, long live, long[] byStatus) {
+    }
+
+    private record IndexEntry(Quote.Status status, String title, String category, String author,
+                              String source, String publisher, Set<String> tags,
+                              FullTextIndex.Terms terms, long createdAt, long updatedAt) {
+        static IndexEntry of(Quote q) {
+            Set<String> tags = q.getTags();
+            return new IndexEntry(q.getStatus(), q.getTitle(), q.getCategory(), q.getAuthor(), q.getSource(),
+                    q.getPublisher(), tags == null ? Collections.emptySet() : tags,
+                    FullTextIndex.analyze(q), q.createdNanos(), q.updatedNanos());
+        }
+
+        IndexEntry withStatus(Quote.Status status, long updatedAt) {
+            return new IndexEntry(status, title, category, author, source, publisher, tags, terms,
+                    createdAt, updatedAt);
+        }
+    }
     
     @Override
     public Quote save(Quote entity) {
-        if (entity.getId() == null) {
-            entity.setId(idGenerator.getAndIncrement());
+        long sequence;
+        synchronized (this) {
+            boolean assigned = entity.getId() == null;
+            long newId = idGenerator.get();
+            sequence = logAndApplySave(entity, newId, assigned ? newId + 1 : newId);
+            // a new id is consumed only once its save is logged
+            if (assigned) idGenerator.set(newId + 1);
+            snapshotIfDue();
         }
-        storage.put(entity.getId(), entity);
+        // wait for durability outside the lock so concurrent writers share one fsync
+        journal.sync(sequence);
         return entity;
     }
+
+    /**
+     * Gives the quote the new id if it has none, appends the save to the journal
+     * and only then applies it; if the append throws, nothing changes and the
+     * quote keeps no id. Called under the write lock.
+     * @param nextId the id generator value to record with the save
+     * @return the sequence number of the record
+     */
+    private long logAndApplySave(Quote entity, long newId, long nextId) {
+        boolean assigned = entity.getId() == null;
+        if (assigned) entity.setId(newId);
+        long sequence;
+        try {
+            sequence = journal.logSave(entity, nextId);
+        } catch (RuntimeException e) {
+            if (assigned) entity.setId(null);
+            throw e;
+        }
+        feed.saved(applySave(entity));
+        return sequence;
+    }
+
+    /**
+     * @return the stored copy
+     */
+    private Quote applySave(Quote entity) {
+        return applySave(entity, storage.get(entity.getId()));
+    }
+
+    /**
+     * @param head the current version of the quote, already looked up by the caller
+     * @return the stored copy
+     */
+    private Quote applySave(Quote entity, Version head) {
+        Long id = entity.getId();
+        long v = version.get() + 1;
+        Quote stored = entity.copy();
+        values.acquire(stored);
+        if (head != null && head.quote != null) values.release(head.quote);
+        // the change is logged and the version installed before the indexes move,
+        // so a snapshot that sees an index change also sees the newer version
+        changes.put(v, id);
+        storage.put(id, new Version(stored, v, head));
+        ids.add(id);
+        IndexEntry previous = indexed.remove(id);
+        Quote.Status from = previous == null ? null : previous.status();
+        moveStatus(id, from, stored.getStatus());
+        count(v, previous == null ? 1 : 0, from, stored.getStatus());
+        unindex(id, previous);
+        index(id, stored);
+        version.set(v);
+        prune();
+        return stored;
+    }
+
+    /**
+     * Applies a save that changed only the quote's status, and so its update
+     * time: the status partitions, counts and update-time index move, while
+     * the text, trigram, tag and value indexes are left alone
+     * @param head the current version of the quote, which {@code changed} is a copy of
+     * @return the stored copy
+     */
+    private Quote applyStatus(Quote changed, Version head) {
+        Long id = changed.getId();
+        long v = version.get() + 1;
+        Quote stored = changed.copy();
+        // same values as the head, so the stored copy takes over its dictionary references
+        changes.put(v, id);
+        storage.put(id, new Version(stored, v, head));
+        IndexEntry previous = indexed.get(id);
+        moveStatus(id, previous.status(), stored.getStatus());
+        count(v, 0, previous.status(), stored.getStatus());
+        updatedIndex.remove(previous.updatedAt(), id);
+        updatedIndex.add(stored.updatedNanos(), id);
+        indexed.put(id, previous.withStatus(stored.getStatus(), stored.updatedNanos()));
+        version.set(v);
+        prune();
+        return stored;
+    }
+
+    @Override
+    public Optional<Versioned<Quote>> update(Long id, Long expectedVersion, UnaryOperator<Quote> change) {
+        Versioned<Quote> saved;
+        long sequence;
+        synchronized (this) {
+            Version head = storage.get(id);
+            if (head == null || head.quote == null) return Optional.empty();
+            if (expectedVersion != null && head.version != expectedVersion) {
+                throw new VersionConflictException(id, expectedVersion, head.version);
+            }
+            Quote changed = change.apply(head.quote.copy());
+            changed.setId(id);
+            sequence = journal.logSave(changed, idGenerator.get());
+            feed.saved(applySave(changed, head));
+            saved = new Versioned<>(changed, version.get());
+            snapshotIfDue();
+        }
+        journal.sync(sequence);
+        return Optional.of(saved);
+    }
+
+    /**
+     * Bulk-loads quotes with distinct ids into the empty store. Storage, the hash
+     * indexes and text analysis are filled in parallel; each bitmap index is then
+     * built in one pass under its own lock, the three of them concurrently.
+     */
+    private void load(Collection<Quote> quotes) {
+        Quote[] sorted = quotes.toArray(Quote[]::new);
+        // ascending ids append to the bitmaps instead of inserting into them
+        Arrays.parallelSort(sorted, Comparator.comparing(Quote::getId));
+        long[] sortedIds = new long[sorted.length];
+        IndexEntry[] entries = new IndexEntry[sorted.length];
+
+        IntStream.range(0, sorted.length).parallel().forEach(i -> {
+            Quote q = sorted[i];
+            values.acquire(q);
+            Long id = q.getId();
+            IndexEntry entry = IndexEntry.of(q);
+            sortedIds[i] = id;
+            entries[i] = entry;
+            storage.put(id, new Version(q, 0, null));
+            ids.add(id);
+            indexed.put(id, entry);
+            categoryIndex.add(entry.category(), id);
+            authorIndex.add(entry.author(), id);
+            sourceIndex.add(entry.source(), id);
+            publisherIndex.add(entry.publisher(), id);
+            createdIndex.add(entry.createdAt(), id);
+            updatedIndex.add(entry.updatedAt(), id);
+            if (entry.status() != null) statusPartitions.get(entry.status()).add(id);
+        });
+
+        long[] byStatus = new long[Quote.Status.values().length];
+        for (IndexEntry entry : entries) {
+            if (entry.status() != null) byStatus[entry.status().ordinal()]++;
+        }
+        counts.set(new Counts(version.get(), sorted.length, byStatus));
+
+        List<IndexEntry> entryList = Arrays.asList(entries);
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(() -> tagIndex.addAll(sortedIds,
+                        entryList.stream().map(IndexEntry::tags).toList())),
+                CompletableFuture.runAsync(() -> textIndex.addAll(sortedIds,
+                        entryList.stream().map(IndexEntry::terms).toList())),
+                CompletableFuture.runAsync(() -> titleTrigrams.addAll(sortedIds,
+                        entryList.stream().map(IndexEntry::title).toList()))
+        ).join();
+    }
+
+    /**
+     * Starts a snapshot once the journal asks for one. Must be called while holding
+     * the write lock so the log is cut between two writes. The journal reads the
+     * live storage view in the background, so writers are not held up by a copy.
+     */
+    private void snapshotIfDue() {
+        if (journal.snapshotDue()) {
+            journal.snapshot(idGenerator.get(), new AbstractCollection<>() {
+                @Override
+                public Iterator<Quote> iterator() {
+                    // the stored versions are immutable, so they can be read while writes go on
+                    return storage.values().stream()
+                            .map(v -> v.quote)
+                            .filter(Objects::nonNull)
+                            .iterator();
+                }
+
+                @Override
+                public int size() {
+                    return (int) count();
+                }
+            });
+        }
+    }
+
+    /**
+     * Drops the versions and change records that no open snapshot can see any
+     * more: everything at or below the oldest open snapshot, or below the
+     * current version when there is none. Called under the write lock after
+     * the new version has been published.
+     */
+    private void prune() {
+        long floor = version.get();
+        Map.Entry<Long, Integer> oldest = readers.firstEntry();
+        if (oldest != null) floor = Math.min(floor, oldest.getKey());
+        Iterator<Long> settled = changes.headMap(floor, true).values().iterator();
+        while (settled.hasNext()) {
+            Long id = settled.next();
+            settled.remove();
+            Version head = storage.get(id);
+            if (head == null) continue;
+            if (head.quote == null && head.version <= floor) {
+                storage.remove(id, head);
+            } else {
+                head.trim(floor);
+            }
+        }
+    }
+
+    /**
+     * Moves a quote between status partitions. The quote joins its new partition
+     * before leaving the old one, so findByStatus never misses it mid-move.
+     */
+    private void moveStatus(Long id, Quote.Status from, Quote.Status to) {
+        if (from == to) return;
+        if (to != null) statusPartitions.get(to).add(id);
+        if (from != null) statusPartitions.get(from).remove(id);
+    }
+
+    private void count(long v, long liveDelta, Quote.Status from, Quote.Status to) {
+        Counts current = counts.get();
+        long[] byStatus = current.byStatus().clone();
+        if (from != null) byStatus[from.ordinal()]--;
+        if (to != null) byStatus[to.ordinal()]++;
+        counts.set(new Counts(v, current.live() + liveDelta, byStatus));
+    }
+
+    private void index(Long id, Quote q) {
+        IndexEntry entry = IndexEntry.of(q);
+        categoryIndex.add(entry.category(), id);
+        authorIndex.add(entry.author(), id);
+        sourceIndex.add(entry.source(), id);
+        publisherIndex.add(entry.publisher(), id);
+        tagIndex.add(entry.tags(), id);
+        textIndex.add(id, entry.terms());
+        titleTrigrams.add(id, entry.title());
+        createdIndex.add(entry.createdAt(), id);
+        updatedIndex.add(entry.updatedAt(), id);
+        indexed.put(id, entry);
+    }
+
+    private void unindex(Long id, IndexEntry entry) {
+        if (entry == null) return;
+        categoryIndex.remove(entry.category(), id);
+        authorIndex.remove(entry.author(), id);
+        sourceIndex.remove(entry.source(), id);
+        publisherIndex.remove(entry.publisher(), id);
+        tagIndex.remove(entry.tags(), id);
+        textIndex.remove(id, entry.terms());
+        titleTrigrams.remove(id, entry.title());
+        createdIndex.remove(entry.createdAt(), id);
+        updatedIndex.remove(entry.updatedAt(), id);
+    }
+
+    /**
+     * A copy of the current version of a quote, or null if there is none
+     */
+    private Quote current(Long id) {
+        Version head = storage.get(id);
+        return head == null || head.quote == null ? null : head.quote.copy();
+    }
+
+    /**
+     * Resolves index postings to copies of the stored quotes, in posting order
+     */
+    private List<Quote> resolve(Collection<Long> ids) {
+        List<Quote> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Quote q = current(id);
+            if (q != null) result.add(q);
+        }
+        return result;
+    }
+
+    private List<Quote> resolve(Roaring64Bitmap ids) {
+        List<Quote> result = new ArrayList<>((int) Math.min(ids.getLongCardinality(), Integer.MAX_VALUE));
+        LongIterator it = ids.getLongIterator();
+        while (it.hasNext()) {
+            Quote q = current(it.next());
+            if (q != null) result.add(q);
+        }
+        return result;
+    }
+
+    /**
+     * Ascending ids of a bitmap greater than {@code after}
+     */
+    private static Iterator<Long> iterator(Roaring64Bitmap postings, Long after) {
+        return boxed(after == null ? postings.getLongIterator() : postings.getLongIteratorFrom(after + 1));
+    }
+
+    private static Iterator<Long> boxed(LongIterator it) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Long next() {
+                return it.next();
+            }
+        };
+    }
+
+    private static Iterator<Long> iterator(NavigableSet<Long> postings, Long after) {
+        return (after == null ? postings : postings.tailSet(after, false)).iterator();
+    }
+
+    /**
+     * Resolves at most {@code limit} ids greater than {@code after} from an ordered posting set
+     */
+    private CursorPage<Quote, Long> page(NavigableSet<Long> postings, Long after, int limit) {
+        return page(iterator(postings, after), limit);
+    }
+
+    private CursorPage<Quote, Long> page(Roaring64Bitmap postings, Long after, int limit) {
+        return page(iterator(postings, after), limit);
+    }
+
+    private CursorPage<Quote, Long> page(Iterator<Long> postings, int limit) {
+        List<Quote> items = new ArrayList<>(Math.min(limit, 1024));
+        while (postings.hasNext()) {
+            Quote q = current(postings.next());
+            if (q == null) continue;
+            if (items.size() == limit) {
+                // there is at least one more match, so hand out a cursor
+                return new CursorPage<>(items, items.get(limit - 1).getId());
+            }
+            items.add(q);
+        }
+        return new CursorPage<>(items, null);
+    }
     
     @Override
     public Optional<Quote> findById(Long id) {
-        return Optional.ofNullable(storage.get(id));
+        return Optional.ofNullable(current(id));
     }
     
     @Override
     public List<Quote> findAll() {
-        // TODO: Return defensive copy
-        return new ArrayList<>(storage.values());
+        List<Quote> result = new ArrayList<>((int) count());
+        for (Version head : storage.values()) {
+            if (head.quote != null) result.add(head.quote.copy());
+        }
+        return result;
+    }
+    
+    @Override
+    public CursorPage<Quote, Long> findAll(Long after, int limit) {
+        return page(ids, after, limit);
     }
     
     @Override
     public void deleteById(Long id) {
-        storage.remove(id);
+        long sequence;
+        synchronized (this) {
+            if (!existsById(id)) return;
+            sequence = journal.logDelete(id);
+            applyDelete(id);
+            feed.deleted(id);
+            snapshotIfDue();
+        }
+        journal.sync(sequence);
+    }
+
+    private boolean applyDelete(Long id) {
+        Version head = storage.get(id);
+        if (head == null || head.quote == null) return false;
+        values.release(head.quote);
+        long v = version.get() + 1;
+        changes.put(v, id);
+        storage.put(id, new Version(null, v, head));
+        ids.remove(id);
+        IndexEntry previous = indexed.remove(id);
+        if (previous != null) moveStatus(id, previous.status(), null);
+        count(v, -1, previous == null ? null : previous.status(), null);
+        unindex(id, previous);
+        version.set(v);
+        prune();
+        return true;
     }
     
     @Override
     public boolean existsById(Long id) {
-        return storage.containsKey(id);
+        Version head = storage.get(id);
+        return head != null && head.quote != null;
     }
     
     @Override
     public long count() {
-        return storage.size();
+        return counts.get().live();
     }
     
     @Override
     public void deleteAll() {
-        storage.clear();
+        long sequence;
+        synchronized (this) {
+            sequence = journal.logDeleteAll();
+            applyDeleteAll();
+            feed.cleared();
+        }
+        journal.sync(sequence);
+    }
+
+    private void applyDeleteAll() {
+        // every quote gets a deletion version of its own, which open snapshots
+        // step over and pruning removes once they are closed
+        long v = version.get();
+        for (Map.Entry<Long, Version> entry : storage.entrySet()) {
+            Version head = entry.getValue();
+            if (head.quote == null) continue;
+            changes.put(++v, entry.getKey());
+            storage.put(entry.getKey(), new Version(null, v, head));
+        }
+        ids.clear();
+        values.clear();
+        indexed.clear();
+        categoryIndex.clear();
+        authorIndex.clear();
+        sourceIndex.clear();
+        publisherIndex.clear();
+        tagIndex.clear();
+        textIndex.clear();
+        titleTrigrams.clear();
+        createdIndex.clear();
+        updatedIndex.clear();
+        statusPartitions.values().forEach(Set::clear);
+        counts.set(new Counts(v, 0, new long[Quote.Status.values().length]));
+        version.set(v);
         idGenerator.set(1);
+        prune();
     }
     
     @Override
     public List<Quote> saveAll(List<Quote> entities) {
-        return entities.stream()
-                .map(this::save)
-                .collect(Collectors.toList());
+        List<Quote> saved = new ArrayList<>(entities.size());
+        long sequence = 0;
+        synchronized (this) {
+            // reserve one contiguous id range for the whole batch
+            long unassigned = 0;
+            for (Quote entity : entities) {
+                if (entity.getId() == null) unassigned++;
+            }
+            long nextId = idGenerator.getAndAdd(unassigned);
+            long end = nextId + unassigned;
+
+            for (Quote entity : entities) {
+                boolean assigned = entity.getId() == null;
+                try {
+                    sequence = logAndApplySave(entity, nextId, end);
+                } catch (RuntimeException e) {
+                    // quotes before a failed append stay saved, as they were logged; the
+                    // rest of the range is given back, though a restart before the next
+                    // write resumes after it, from the end the logged records carry
+                    idGenerator.set(nextId);
+                    throw e;
+                }
+                if (assigned) nextId++;
+                saved.add(entity);
+            }
+            snapshotIfDue();
+        }
+        // the last record covers the whole batch
+        journal.sync(sequence);
+        return saved;
     }
     
     @Override
     public List<Quote> findByStatus(Quote.Status status) {
-        // TODO: Implement using streams
-        return storage.values().stream()
-                .filter(item -> item.getStatus() == status)
-                .collect(Collectors.toList());
+        if (status == null) return Collections.emptyList();
+        return resolve(statusPartitions.get(status));
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findByStatus(Quote.Status status, Long after, int limit) {
+        if (status == null) return new CursorPage<>(Collections.emptyList(), null);
+        return page(statusPartitions.get(status), after, limit);
     }
 
     /**
-     * Removes leading and trailing whitespace if string is not null
+     * Walks the {@code from} partition under the write lock. Each moved quote
+     * gets a version of its own and is journaled as a save; the batch is
+     * synced once. Only the status and update-time indexes move.
      */
-    private static String norm(String s) {
-        return s == null ? "" : s.trim();
+    @Override
+    public CursorPage<Long, Long> updateStatusWhere(Quote.Status from, Quote.Status to, Predicate<Quote> predicate,
+                                                    Long after, int limit) {
+        if (from == null || to == null || from == to) return new CursorPage<>(Collections.emptyList(), null);
+        List<Long> moved = new ArrayList<>();
+        Long next = null;
+        long sequence = 0;
+        synchronized (this) {
+            // the iterator is weakly consistent, so quotes can leave the partition under it
+            Iterator<Long> candidates = iterator(statusPartitions.get(from), after);
+            int examined = 0;
+            Long last = after;
+            while (candidates.hasNext()) {
+                if (examined++ == limit) {
+                    next = last;
+                    break;
+                }
+                Long id = candidates.next();
+                last = id;
+                Version head = storage.get(id);
+                if (head == null || head.quote == null || head.quote.getStatus() != from) continue;
+                Quote q = head.quote.copy();
+                if (!predicate.test(q)) continue;
+                q.setStatus(to);
+                sequence = journal.logSave(q, idGenerator.get());
+                feed.saved(applyStatus(q, head));
+                moved.add(id);
+            }
+            snapshotIfDue();
+        }
+        if (!moved.isEmpty()) journal.sync(sequence);
+        return new CursorPage<>(moved, next);
+    }
+
+    /**
+     * Walks the update-time index from its oldest entry up to the cutoff, one
+     * batch per hold of the write lock, resuming after the last entry examined.
+     * Only quotes that move are copied; they get a new update time, so they
+     * leave the range.
+     */
+    @Override
+    public int updateStatusUpdatedBefore(Quote.Status from, Quote.Status to, LocalDateTime cutoff, int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive");
+        if (from == null || to == null || from == to || cutoff == null) return 0;
+        long before = Quote.toNanos(cutoff);
+        int moved = 0;
+        TimeIndex.Entry last = null;
+        boolean more = true;
+        while (more) {
+            more = false;
+            int batchMoved = 0;
+            long sequence = 0;
+            synchronized (this) {
+                int examined = 0;
+                for (TimeIndex.Entry entry : updatedIndex.before(before, last)) {
+                    if (examined++ == batchSize) {
+                        more = true;
+                        break;
+                    }
+                    last = entry;
+                    Version head = storage.get(entry.id());
+                    if (head == null || head.quote == null || head.quote.getStatus() != from) continue;
+                    Quote q = head.quote.copy();
+                    q.setStatus(to);
+                    sequence = journal.logSave(q, idGenerator.get());
+                    feed.saved(applyStatus(q, head));
+                    batchMoved++;
+                }
+                snapshotIfDue();
+            }
+            if (batchMoved > 0) journal.sync(sequence);
+            moved += batchMoved;
+        }
+        return moved;
+    }
+
+    @Override
+    public Map<Quote.Status, Long> countByStatus() {
+        return byStatus(counts.get().byStatus());
+    }
+
+    private static Map<Quote.Status, Long> byStatus(long[] counts) {
+        Map<Quote.Status, Long> result = new EnumMap<>(Quote.Status.class);
+        for (Quote.Status status : Quote.Status.values()) {
+            result.put(status, counts[status.ordinal()]);
+        }
+        return result;
     }
 
     /**
-     * Returns true if string a is equal to string b ignoring case
+     * Removes leading and trailing whitespace if string is not null
      */
-    private static boolean equalsIgnoreCaseSafe(String a, String b) {
-        return norm(a).equalsIgnoreCase(norm(b));
+    private static String norm(String s) {
+        return s == null ? "" : s.trim();
     }
 
     /**
@@ -99,68 +782,497 @@ public class InMemoryQuoteRepository implements QuoteRepository {
     
     @Override
     public List<Quote> findByCategory(String category) {
-        return storage.values().stream()
-                .filter(Objects::nonNull)
-                .filter(q -> equalsIgnoreCaseSafe(q.getCategory(), category))
-                .collect(Collectors.toList());
+        // a blank category matches uncategorized quotes, as the old scan did
+        return resolve(categoryIndex.get(category));
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findByCategory(String category, Long after, int limit) {
+        return page(categoryIndex.get(category), after, limit);
+    }
+
+    @Override
+    public SortedSet<String> findDistinctCategories() {
+        return categoryIndex.keys();
+    }
+
+    /**
+     * Walks the category index key by key through a snapshot, so the groups are
+     * read from one state without a scan of the whole store
+     */
+    @Override
+    public SortedMap<String, List<Quote>> groupByCategory() {
+        SortedMap<String, List<Quote>> result = new TreeMap<>();
+        try (QuoteSnapshot snapshot = snapshot()) {
+            for (String key : snapshot.findDistinctCategories()) {
+                // a key stands for the lower-cased category, which can be spelled several ways
+                for (Quote q : snapshot.findByCategory(key)) {
+                    result.computeIfAbsent(norm(q.getCategory()), k -> new ArrayList<>()).add(q);
+                }
+            }
+        }
+        return result;
     }
     
     @Override
     public List<Quote> findByTag(String tag) {
-        final String target = norm(tag);
-        if (target.isEmpty()) return Collections.emptyList();
-
-        return storage.values().stream()
-                .filter(Objects::nonNull)
-                .filter(q -> {
-                    Collection<String> tags = q.getTags();
-                    if (tags == null || tags.isEmpty()) return false;
-                    // match case-insensitively on exact tag OR substring (common UX)
-                    // If you want exact-only, replace anyMatch with equalsIgnoreCase.
-                    return tags.stream().filter(Objects::nonNull)
-                            .anyMatch(t -> equalsIgnoreCaseSafe(t, target));
-                })
-                .collect(Collectors.toList());
+        if (norm(tag).isEmpty()) return Collections.emptyList();
+        return resolve(tagIndex.all(List.of(tag)));
+    }
+
+    @Override
+    public List<Quote> findByAllTags(Collection<String> tags) {
+        if (tags == null || tags.isEmpty()) return Collections.emptyList();
+        return resolve(tagIndex.all(nonNull(tags)));
+    }
+
+    @Override
+    public List<Quote> findByAnyTag(Collection<String> tags) {
+        if (tags == null || tags.isEmpty()) return Collections.emptyList();
+        return resolve(tagIndex.any(nonNull(tags)));
+    }
+
+    @Override
+    public List<String> findMostPopularTags(int limit) {
+        if (limit <= 0) return Collections.emptyList();
+        return tagIndex.top(limit);
+    }
+
+    @Override
+    public SortedSet<String> findDistinctTags() {
+        return tagIndex.keys();
+    }
+
+    private static List<String> nonNull(Collection<String> values) {
+        List<String> result = new ArrayList<>(values.size());
+        for (String v : values) {
+            if (v != null) result.add(v);
+        }
+        return result;
     }
     
+    @Override
+    public List<Quote> findByText(String query) {
+        if (norm(query).isEmpty()) return Collections.emptyList();
+        Roaring64Bitmap matches = textIndex.search(query);
+        accessListener.accessed("findByText", true, matches.getLongCardinality());
+        return resolve(matches);
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findByText(String query, Long after, int limit) {
+        if (norm(query).isEmpty()) return new CursorPage<>(Collections.emptyList(), null);
+        Roaring64Bitmap matches = textIndex.search(query);
+        accessListener.accessed("findByTextPage", true, matches.getLongCardinality());
+        return page(matches, after, limit);
+    }
+
+    /**
+     * Reports the title and text finders, the only ones whose cost is not the
+     * size of an exact posting list: titles are read through trigram candidates
+     * or, for needles too short to have trigrams, by a scan
+     */
+    @Override
+    public void setAccessListener(AccessListener listener) {
+        accessListener = listener == null ? AccessListener.NONE : listener;
+    }
+
     @Override
     public List<Quote> findByTitleContaining(String searchTerm) {
         if (norm(searchTerm).isEmpty()) return Collections.emptyList();
 
-        return storage.values().stream()
-                .filter(Objects::nonNull)
-                .filter(q -> containsIgnoreCase(q.getTitle(), searchTerm))
-                .collect(Collectors.toList());
+        Roaring64Bitmap candidates = titleTrigrams.candidates(searchTerm);
+        if (candidates != null) {
+            accessListener.accessed("findByTitleContaining", true, candidates.getLongCardinality());
+            // trigram hits may be false positives; confirm each with a real contains
+            List<Quote> result = new ArrayList<>();
+            for (Quote q : resolve(candidates)) {
+                if (containsIgnoreCase(q.getTitle(), searchTerm)) result.add(q);
+            }
+            return result;
+        }
+
+        // needles of one or two characters have no trigrams, so fall back to a scan
+        List<Quote> result = new ArrayList<>();
+        long examined = 0;
+        for (Version head : storage.values()) {
+            Quote q = head.quote;
+            if (q == null) continue;
+            examined++;
+            if (containsIgnoreCase(q.getTitle(), searchTerm)) result.add(q.copy());
+        }
+        accessListener.accessed("findByTitleContaining", false, examined);
+        return result;
     }
 
     @Override
     public List<Quote> findByAuthor(String author){
         if (norm(author).isEmpty()) return Collections.emptyList();
 
-        return storage.values().stream()
-                .filter(Objects::nonNull)
-                // exact match; switch to containsIgnoreCase for partial author searches
-                .filter(q -> equalsIgnoreCaseSafe(q.getAuthor(), author))
-                .collect(Collectors.toList());
+        // exact match; partial author searches would need a different index
+        return resolve(authorIndex.get(author));
     }
 
     @Override
     public List<Quote> findBySource(String source){
         if (norm(source).isEmpty()) return Collections.emptyList();
 
-        return storage.values().stream()
-                .filter(Objects::nonNull)
-                .filter(q -> equalsIgnoreCaseSafe(q.getSource(), source))
-                .collect(Collectors.toList());
+        return resolve(sourceIndex.get(source));
     }
 
     @Override
     public List<Quote> findByPublisher(String publisher){
         if (norm(publisher).isEmpty()) return Collections.emptyList();
 
-        return storage.values().stream()
-                .filter(Objects::nonNull)
-                .filter(q -> equalsIgnoreCaseSafe(q.getPublisher(), publisher))
-                .collect(Collectors.toList());
+        return resolve(publisherIndex.get(publisher));
+    }
+
+    @Override
+    public List<Quote> findCreatedBetween(LocalDateTime from, LocalDateTime to) {
+        return resolve(createdIndex.range(from, to), Quote::createdNanos, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Quote> findUpdatedSince(LocalDateTime since) {
+        return resolve(updatedIndex.range(since, null), Quote::updatedNanos, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Quote> findLatest(int limit) {
+        if (limit <= 0) return Collections.emptyList();
+        return resolve(createdIndex.newestFirst(), Quote::createdNanos, limit);
+    }
+
+    /**
+     * Resolves time index entries, in order, to copies of at most {@code limit}
+     * stored quotes. An entry is taken only while the quote still has the
+     * entry's time, so a quote moved by a concurrent update is not listed
+     * under its old time as well.
+     */
+    private List<Quote> resolve(Iterable<TimeIndex.Entry> entries, ToLongFunction<Quote> time, int limit) {
+        List<Quote> result = new ArrayList<>();
+        for (TimeIndex.Entry entry : entries) {
+            if (result.size() == limit) break;
+            Version head = storage.get(entry.id());
+            Quote q = head == null ? null : head.quote;
+            if (q != null && time.applyAsLong(q) == entry.time()) result.add(q.copy());
+        }
+        return result;
+    }
+
+    /**
+     * Plans by the size of each usable posting list: the status count and the
+     * category and author postings exactly, the tags by their smallest posting
+     * list and the text by its smallest token, so neither is intersected unless
+     * it is the path taken. A query without a filter, or whose filters are no
+     * more selective than the whole store, walks every id.
+     */
+    @Override
+    public QueryResult query(QuoteQuery query) {
+        Map<String, Long> estimates = new LinkedHashMap<>();
+        Quote.Status status = query.status();
+        if (status != null) estimates.put("status", counts.get().byStatus()[status.ordinal()]);
+        if (query.category() != null) estimates.put("category", (long) categoryIndex.count(query.category()));
+        if (query.author() != null) estimates.put("author", (long) authorIndex.count(query.author()));
+        if (!query.tags().isEmpty()) estimates.put("tags", tagIndex.estimate(query.tags()));
+        if (query.text() != null) estimates.put("text", textIndex.estimate(query.text()));
+        // last, so an index wins a tie with the scan
+        estimates.put("scan", count());
+
+        String access = null;
+        for (Map.Entry<String, Long> estimate : estimates.entrySet()) {
+            if (access == null || estimate.getValue() < estimates.get(access)) access = estimate.getKey();
+        }
+        boolean descending = query.sort() == QuoteQuery.Sort.ID_DESC;
+        Iterator<Long> candidates = switch (access) {
+            case "status" -> ordered(statusPartitions.get(status), descending);
+            case "category" -> ordered(categoryIndex.get(query.category()), descending);
+            case "author" -> ordered(authorIndex.get(query.author()), descending);
+            case "tags" -> ordered(tagIndex.all(query.tags()), descending);
+            case "text" -> ordered(textIndex.search(query.text()), descending);
+            default -> ordered(ids, descending);
+        };
+
+        // every filter is checked again, including the one that chose the candidates,
+        // so a quote changed since its postings were read is judged as it is now
+        String category = query.category() == null ? null : ValueIndex.key(query.category());
+        String author = query.author() == null ? null : ValueIndex.key(query.author());
+        Set<String> tags = query.tags().stream().map(ValueIndex::key).collect(Collectors.toSet());
+        Set<String> tokens = query.text() == null ? null : new LinkedHashSet<>(Analyzer.tokenize(query.text()));
+        QueryCollector collector = new QueryCollector(query);
+        while (candidates.hasNext() && collector.wantsMore()) {
+            Version head = storage.get(candidates.next());
+            Quote q = head == null ? null : head.quote;
+            if (q == null) continue;
+            if (status != null && q.getStatus() != status) continue;
+            if (category != null && !ValueIndex.key(q.getCategory()).equals(category)) continue;
+            if (author != null && !ValueIndex.key(q.getAuthor()).equals(author)) continue;
+            if (!tags.isEmpty() && !carriesAll(q, tags)) continue;
+            // analyzing the quote is the dearest check, so it comes last
+            if (tokens != null && !FullTextIndex.analyze(q).matches(tokens)) continue;
+            collector.add(q);
+        }
+        return collector.result(access, estimates);
+    }
+
+    /**
+     * True if the quote carries every one of the normalized tags
+     */
+    private static boolean carriesAll(Quote q, Set<String> tags) {
+        Set<String> carried = new HashSet<>();
+        for (String tag : q.getTags()) {
+            carried.add(ValueIndex.key(tag));
+        }
+        return carried.containsAll(tags);
+    }
+
+    private static Iterator<Long> ordered(NavigableSet<Long> postings, boolean descending) {
+        return descending ? postings.descendingIterator() : postings.iterator();
+    }
+
+    private static Iterator<Long> ordered(Roaring64Bitmap postings, boolean descending) {
+        return boxed(descending ? postings.getReverseLongIterator() : postings.getLongIterator());
+    }
+
+    @Override
+    public long version() {
+        return version.get();
+    }
+
+    @Override
+    public OptionalLong version(Long id) {
+        Version head = storage.get(id);
+        return head == null || head.quote == null ? OptionalLong.empty() : OptionalLong.of(head.version);
+    }
+
+    @Override
+    public ChangeFeed changeFeed() {
+        return feed;
+    }
+
+    @Override
+    public QuoteSnapshot snapshot() {
+        while (true) {
+            long v = version.get();
+            readers.merge(v, 1, Integer::sum);
+            // A writer prunes after publishing its version. If none was published
+            // since v was read, every later writer will see this registration.
+            if (version.get() == v) return new VersionSnapshot(v);
+            release(v);
+        }
+    }
+
+    private void release(long v) {
+        readers.computeIfPresent(v, (k, open) -> open == 1 ? null : open - 1);
+    }
+
+    /**
+     * Reads the store as of one version without locking.
+     * <p>
+     * A finder first walks the current index postings and keeps the quotes whose
+     * current version is no newer than the snapshot: those have not changed
+     * since, so the current index is right about them. Every other quote that
+     * may belong in the result was changed after the snapshot was taken and is
+     * in the change log; those are looked up as of the snapshot and tested
+     * against the finder's condition. The log is read after the postings, so a
+     * quote changed while the postings are walked is caught by the second pass.
+     */
+    private final class VersionSnapshot implements QuoteSnapshot {
+        private final long version;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        VersionSnapshot(long version) {
+            this.version = version;
+        }
+
+        @Override
+        public long version() {
+            return version;
+        }
+
+        /**
+         * The stored quote if it has not changed since this snapshot, else null
+         */
+        private Quote unchanged(Long id) {
+            Version head = storage.get(id);
+            return head == null || head.version > version ? null : head.quote;
+        }
+
+        /**
+         * A copy of the quote as of this snapshot, or null if it did not exist then
+         */
+        private Quote at(Long id) {
+            Version head = storage.get(id);
+            Quote q = head == null ? null : head.at(version);
+            return q == null ? null : q.copy();
+        }
+
+        /**
+         * Ids changed since this snapshot, in ascending order
+         */
+        private NavigableSet<Long> changed() {
+            return new TreeSet<>(changes.tailMap(version, false).values());
+        }
+
+        private List<Quote> select(Iterator<Long> postings, Predicate<Quote> match) {
+            List<Quote> unchanged = new ArrayList<>();
+            while (postings.hasNext()) {
+                Quote q = unchanged(postings.next());
+                if (q != null) unchanged.add(q.copy());
+            }
+            List<Quote> changed = new ArrayList<>();
+            for (Long id : changed()) {
+                Quote q = at(id);
+                if (q != null && match.test(q)) changed.add(q);
+            }
+            return merge(unchanged, changed);
+        }
+
+        private CursorPage<Quote, Long> page(Iterator<Long> postings, Long after, int limit,
+                                             Predicate<Quote> match) {
+            List<Quote> unchanged = new ArrayList<>(Math.min(limit + 1, 1024));
+            while (postings.hasNext() && unchanged.size() <= limit) {
+                Quote q = unchanged(postings.next());
+                if (q != null) unchanged.add(q.copy());
+            }
+            // changed quotes beyond the last unchanged match cannot make this page
+            Long bound = unchanged.size() > limit ? unchanged.get(limit).getId() : null;
+            List<Quote> changed = new ArrayList<>();
+            NavigableSet<Long> changedIds = changed();
+            for (Long id : after == null ? changedIds : changedIds.tailSet(after, false)) {
+                if (bound != null && id > bound) break;
+                Quote q = at(id);
+                if (q != null && match.test(q)) changed.add(q);
+            }
+
+            List<Quote> items = merge(unchanged, changed);
+            if (items.size() <= limit) return new CursorPage<>(items, null);
+            items = new ArrayList<>(items.subList(0, limit));
+            return new CursorPage<>(items, items.get(limit - 1).getId());
+        }
+
+        /**
+         * Merges two lists in ascending id order; a quote in both is taken once
+         */
+        private static List<Quote> merge(List<Quote> unchanged, List<Quote> changed) {
+            if (changed.isEmpty()) return unchanged;
+            List<Quote> result = new ArrayList<>(unchanged.size() + changed.size());
+            int i = 0;
+            int j = 0;
+            while (i < unchanged.size() || j < changed.size()) {
+                if (j == changed.size()) {
+                    result.add(unchanged.get(i++));
+                } else if (i == unchanged.size()) {
+                    result.add(changed.get(j++));
+                } else {
+                    long a = unchanged.get(i).getId();
+                    long b = changed.get(j).getId();
+                    if (a < b) {
+                        result.add(unchanged.get(i++));
+                    } else {
+                        if (a == b) i++;
+                        result.add(changed.get(j++));
+                    }
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public Optional<Quote> findById(Long id) {
+            if (id == null) return Optional.empty();
+            return Optional.ofNullable(at(id));
+        }
+
+        @Override
+        public List<Quote> findAll() {
+            return select(ids.iterator(), q -> true);
+        }
+
+        @Override
+        public CursorPage<Quote, Long> findAll(Long after, int limit) {
+            return page(iterator(ids, after), after, limit, q -> true);
+        }
+
+        @Override
+        public List<Quote> findByStatus(Quote.Status status) {
+            if (status == null) return Collections.emptyList();
+            return select(statusPartitions.get(status).iterator(), q -> q.getStatus() == status);
+        }
+
+        @Override
+        public List<Quote> findByCategory(String category) {
+            String key = ValueIndex.key(category);
+            return select(categoryIndex.get(category).iterator(),
+                    q -> ValueIndex.key(q.getCategory()).equals(key));
+        }
+
+        @Override
+        public SortedSet<String> findDistinctCategories() {
+            SortedSet<String> keys = new TreeSet<>();
+            for (String key : categoryIndex.keys()) {
+                // the key existed if one of its quotes has not changed since
+                for (Long id : categoryIndex.get(key)) {
+                    if (unchanged(id) != null) {
+                        keys.add(key);
+                        break;
+                    }
+                }
+            }
+            for (Long id : changed()) {
+                Quote q = at(id);
+                if (q != null) keys.add(ValueIndex.key(q.getCategory()));
+            }
+            return keys;
+        }
+
+        @Override
+        public CursorPage<Quote, Long> findByText(String query, Long after, int limit) {
+            if (norm(query).isEmpty()) return new CursorPage<>(Collections.emptyList(), null);
+            return page(iterator(textIndex.search(query), after), after, limit,
+                    q -> FullTextIndex.analyze(q).matches(query));
+        }
+
+        @Override
+        public Map<Quote.Status, Long> countByStatus() {
+            return byStatus(tally());
+        }
+
+        @Override
+        public long count() {
+            return tally()[Quote.Status.values().length];
+        }
+
+        /**
+         * Counts per status ordinal followed by the live count, as of this
+         * snapshot: the current counts with the changes made since undone
+         */
+        private long[] tally() {
+            Counts current = counts.get();
+            long[] result = Arrays.copyOf(current.byStatus(), Quote.Status.values().length + 1);
+            int live = result.length - 1;
+            result[live] = current.live();
+            Set<Long> changedIds = new HashSet<>(changes.subMap(version, false, current.version(), true).values());
+            for (Long id : changedIds) {
+                Version head = storage.get(id);
+                if (head == null) continue;
+                Quote now = head.at(current.version());
+                Quote then = head.at(version);
+                if (now != null) {
+                    result[live]--;
+                    if (now.getStatus() != null) result[now.getStatus().ordinal()]--;
+                }
+                if (then != null) {
+                    result[live]++;
+                    if (then.getStatus() != null) result[then.getStatus().ordinal()]++;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) release(version);
+        }
     }
-}
\ No newline at end of file
+}
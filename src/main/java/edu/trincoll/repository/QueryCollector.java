@@ -0,0 +1,71 @@
+package edu.trincoll.repository;
+
+import edu.trincoll.model.Quote;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Collects the results of a {@link QuoteQuery} while a repository walks its
+ * candidates in id order. For an id sort the first {@code limit} matches are
+ * the result and the walk stops there; for any other sort the best
+ * {@code limit} matches so far are kept in a bounded heap.
+ * <p>
+ * Matches are the repository's stored quotes; they are copied only once they
+ * make the result.
+ */
+final class QueryCollector {
+
+    private final QuoteQuery query;
+    private final List<Quote> items = new ArrayList<>();
+    // worst kept match at the head, so it is the one dropped
+    private final PriorityQueue<Quote> best;
+    private long examined;
+    private long matched;
+    private boolean stoppedEarly;
+
+    QueryCollector(QuoteQuery query) {
+        this.query = query;
+        this.best = query.sort().followsIds()
+                ? null
+                : new PriorityQueue<>(Math.min(query.limit(), 1024) + 1, query.sort().order().reversed());
+    }
+
+    /**
+     * True if another candidate should be read; call it before reading each one.
+     * Once the limit is reached in id order, no further candidate can change the result.
+     */
+    boolean wantsMore() {
+        if (best == null && items.size() >= query.limit()) {
+            stoppedEarly = true;
+            return false;
+        }
+        examined++;
+        return true;
+    }
+
+    /**
+     * Adds a candidate that passed every filter
+     */
+    void add(Quote quote) {
+        matched++;
+        if (best == null) {
+            items.add(quote);
+            return;
+        }
+        best.add(quote);
+        if (best.size() > query.limit()) best.poll();
+    }
+
+    QueryResult result(String access, Map<String, Long> estimates) {
+        List<Quote> kept = best == null ? items : new ArrayList<>(best);
+        if (best != null) kept.sort(query.sort().order());
+        List<Quote> copies = new ArrayList<>(kept.size());
+        for (Quote q : kept) {
+            copies.add(q.copy());
+        }
+        return new QueryResult(copies, new QueryPlan(access, estimates, examined, matched, stoppedEarly));
+    }
+}
@@ -0,0 +1,20 @@
+package edu.trincoll.repository;
+
+import java.util.Map;
+
+/**
+ * How a {@link QuoteQuery} was answered.
+ *
+ * @param access       the access path the candidates were read from: {@code status},
+ *                     {@code category}, {@code author}, {@code tags}, {@code text}, or
+ *                     {@code scan} for every stored quote
+ * @param estimates    the number of candidates each usable access path would have
+ *                     yielded; the smallest was chosen
+ * @param examined     candidates read before the query finished
+ * @param matched      candidates that passed every filter
+ * @param stoppedEarly true if the query stopped at the limit without reading
+ *                     every candidate
+ */
+public record QueryPlan(String access, Map<String, Long> estimates, long examined, long matched,
+                        boolean stoppedEarly) {
+}
@@ -0,0 +1,15 @@
+package edu.trincoll.repository;
+
+import edu.trincoll.model.Quote;
+
+import java.util.List;
+
+/**
+ * The quotes matching a {@link QuoteQuery}, in the requested order, and the plan
+ * that found them.
+ *
+ * @param items the matching quotes, at most the query's limit
+ * @param plan  how the query was answered
+ */
+public record QueryResult(List<Quote> items, QueryPlan plan) {
+}
@@ -0,0 +1,26 @@
+package edu.trincoll.repository;
+
+import edu.trincoll.model.Quote;
+
+/**
+ * One change made through a repository, numbered in the order it was applied
+ *
+ * @param sequence position in the {@link ChangeFeed}, starting from 1
+ * @param type     what happened
+ * @param id       the quote saved or deleted; null when every quote was deleted
+ * @param quote    the quote as saved; null for deletions
+ */
+public record QuoteChange(long sequence, Type type, Long id, Quote quote) {
+
+    public enum Type {
+        SAVED, DELETED, CLEARED
+    }
+
+    /**
+     * A copy of the saved quote, since the feed shares its own with every reader
+     */
+    @Override
+    public Quote quote() {
+        return quote == null ? null : quote.copy();
+    }
+}
@@ -0,0 +1,83 @@
+package edu.trincoll.repository;
+
+import edu.trincoll.model.Quote;
+
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * A combination of filters for {@link QuoteRepository#query(QuoteQuery)}. A quote
+ * matches when it passes every filter that is set; null or blank filters are
+ * not applied. Category and author compare like {@link QuoteRepository#findByCategory}
+ * and {@link QuoteRepository#findByAuthor}, tags like {@link QuoteRepository#findByAllTags}
+ * and text like {@link QuoteRepository#findByText}.
+ *
+ * @param status   only quotes with this status
+ * @param category only quotes in this category
+ * @param tags     only quotes carrying every one of these tags
+ * @param author   only quotes by this author
+ * @param text     only quotes matching this full-text query
+ * @param sort     the order of the results
+ * @param limit    the largest number of results
+ */
+public record QuoteQuery(Quote.Status status, String category, Set<String> tags, String author, String text,
+                         Sort sort, int limit) {
+
+    public enum Sort {
+        /**
+         * Ascending id
+         */
+        ID(Comparator.comparing(Quote::getId)),
+        /**
+         * Descending id
+         */
+        ID_DESC(Comparator.comparing(Quote::getId).reversed()),
+        /**
+         * Title, ignoring case, then id
+         */
+        TITLE(Comparator.comparing((Quote q) -> q.getTitle() == null ? "" : q.getTitle().toLowerCase(Locale.ROOT))
+                .thenComparing(Quote::getId)),
+        /**
+         * Most recently updated first, then id
+         */
+        UPDATED(Comparator.comparing(Quote::getUpdatedAt).reversed().thenComparing(Quote::getId));
+
+        private final Comparator<Quote> order;
+
+        Sort(Comparator<Quote> order) {
+            this.order = order;
+        }
+
+        public Comparator<Quote> order() {
+            return order;
+        }
+
+        /**
+         * True if walking candidates in id order yields results in this order,
+         * so a query can stop at the limit
+         */
+        boolean followsIds() {
+            return this == ID || this == ID_DESC;
+        }
+    }
+
+    public QuoteQuery {
+        category = blankToNull(category);
+        author = blankToNull(author);
+        text = blankToNull(text);
+        tags = tags == null ? Set.of() : tags.stream()
+                .filter(tag -> tag != null && !tag.isBlank())
+                .collect(Collectors.toUnmodifiableSet());
+        if (sort == null) sort = Sort.ID;
+    }
+
+    private static String blankToNull(String s) {
+        return s == null || s.isBlank() ? null : s;
+    }
+
+    public QuoteQuery withLimit(int limit) {
+        return new QuoteQuery(status, category, tags, author, text, sort, limit);
+    }
+}
@@ -2,7 +2,16 @@ package edu.trincoll.repository;
 
 import edu.trincoll.model.Quote;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 public interface QuoteRepository extends Repository<Quote, Long> {
     
@@ -10,22 +19,146 @@ public interface QuoteRepository extends Repository<Quote, Long> {
      * Find all quotes with a specific status
      */
     List<Quote> findByStatus(Quote.Status status);
+
+    /**
+     * Find one page of quotes with a specific status, in ascending id order
+     */
+    CursorPage<Quote, Long> findByStatus(Quote.Status status, Long after, int limit);
+
+    /**
+     * Replace a quote with a changed version of itself as one atomic step: the
+     * quote is looked up once, checked against the expected version, changed
+     * and saved, with no other write in between.
+     * @param expectedVersion the version the caller last read, or null to update unconditionally
+     * @param change          receives a copy of the current quote and returns the quote to store
+     *                        under the same id; an exception thrown by it aborts the update
+     * @return the saved quote and its new version, or empty if there is no quote with the id
+     * @throws VersionConflictException if the quote is no longer at the expected version
+     */
+    Optional<Versioned<Quote>> update(Long id, Long expectedVersion, UnaryOperator<Quote> change);
+
+    /**
+     * Move quotes with one status that pass a predicate to another status, as
+     * a single write: no other save or delete is applied in between. Only the
+     * quotes holding status {@code from} are examined, in ascending id order,
+     * and at most {@code limit} of them, so a large move can be made in bounded
+     * batches that each hold up other writes only briefly.
+     * @param predicate tested on a copy of each quote with status {@code from}
+     * @param after     only examine quotes with an id greater than this one (null to start at the first)
+     * @param limit     maximum number of quotes to examine
+     * @return the ids of the moved quotes, with the cursor to pass as {@code after}
+     *         for the next batch, or null once every candidate has been examined
+     */
+    CursorPage<Long, Long> updateStatusWhere(Quote.Status from, Quote.Status to, Predicate<Quote> predicate,
+                                             Long after, int limit);
+
+    /**
+     * Move every quote with one status that passes a predicate to another
+     * status, as a single write
+     * @return the number of quotes moved
+     */
+    default int updateStatusWhere(Quote.Status from, Quote.Status to, Predicate<Quote> predicate) {
+        return updateStatusWhere(from, to, predicate, null, Integer.MAX_VALUE).items().size();
+    }
+
+    /**
+     * Move quotes with one status that were last updated before a cutoff to
+     * another status, in writes that each examine at most {@code batchSize}
+     * candidates, so other writes wait for one batch at most. Candidates are
+     * found by update time, and moving a quote updates it, so it is moved once.
+     * @return the number of quotes moved
+     */
+    int updateStatusUpdatedBefore(Quote.Status from, Quote.Status to, LocalDateTime cutoff, int batchSize);
+
+    /**
+     * Count quotes per status; every status is present, with 0 if unused
+     */
+    Map<Quote.Status, Long> countByStatus();
     
     /**
      * Find all quotes in a category
      */
     List<Quote> findByCategory(String category);
+
+    /**
+     * Find one page of quotes in a category, in ascending id order
+     */
+    CursorPage<Quote, Long> findByCategory(String category, Long after, int limit);
+
+    /**
+     * Distinct categories in use, trimmed and lower-cased, in sorted order.
+     * Quotes without a category are listed under the empty string.
+     */
+    SortedSet<String> findDistinctCategories();
+
+    /**
+     * Every quote grouped by category, read from one consistent state. A group's
+     * key is the category trimmed but with its case kept; quotes without a
+     * category are grouped under the empty string. Each group is in ascending id order.
+     */
+    SortedMap<String, List<Quote>> groupByCategory();
     
     /**
      * Find all quotes containing a specific tag
      */
     List<Quote> findByTag(String tag);
+
+    /**
+     * Find all quotes containing every one of the tags (AND)
+     */
+    List<Quote> findByAllTags(Collection<String> tags);
+
+    /**
+     * Find all quotes containing at least one of the tags (OR)
+     */
+    List<Quote> findByAnyTag(Collection<String> tags);
+
+    /**
+     * The most used tags, ordered by number of quotes descending and then by tag
+     */
+    List<String> findMostPopularTags(int limit);
+
+    /**
+     * Distinct tags in use, trimmed and lower-cased, in sorted order
+     */
+    SortedSet<String> findDistinctTags();
     
     /**
-     * Find quotes with title containing search term (case-insensitive)
+     * Find quotes with title containing search term (case-insensitive).
+     * The in-memory implementation narrows terms of three or more characters
+     * through a trigram index; shorter terms fall back to checking every title.
      */
     List<Quote> findByTitleContaining(String searchTerm);
 
+    /**
+     * Find quotes created from {@code from} (inclusive) to {@code to} (exclusive),
+     * oldest first; a null bound leaves that side open
+     */
+    List<Quote> findCreatedBetween(LocalDateTime from, LocalDateTime to);
+
+    /**
+     * Find quotes last updated at or after {@code since}, least recently updated
+     * first, so a sync job can resume from the last timestamp it has seen
+     */
+    List<Quote> findUpdatedSince(LocalDateTime since);
+
+    /**
+     * The most recently created quotes, newest first
+     */
+    List<Quote> findLatest(int limit);
+
+    /**
+     * Find quotes where every word of the query appears as a whole word in the
+     * title, description, category, author, source, publisher or tags
+     * (case- and accent-insensitive)
+     */
+    List<Quote> findByText(String query);
+
+    /**
+     * Find one page of full-text matches, in ascending id order
+     */
+    CursorPage<Quote, Long> findByText(String query, Long after, int limit);
+
     /**
      * Find quotes by a certain author
      */
@@ -41,4 +174,43 @@ public interface QuoteRepository extends Repository<Quote, Long> {
      */
     List<Quote> findByPublisher(String publisher);
 
+    /**
+     * Find the quotes passing every filter of a query, in its sort order and up
+     * to its limit. The candidates are read from the most selective access path
+     * the implementation has for the query's filters, and the other filters are
+     * checked on those candidates only; the returned plan tells which path was
+     * taken and how many candidates each path would have yielded.
+     */
+    QueryResult query(QuoteQuery query);
+
+    /**
+     * Number of quote changes applied so far. It grows with every quote saved or
+     * deleted, so an unchanged version means an unchanged store.
+     */
+    long version();
+
+    /**
+     * The repository version at which a quote was last saved, or empty if it
+     * does not exist. It changes whenever the quote does.
+     */
+    OptionalLong version(Long id);
+
+    /**
+     * Recent saves and deletes, in the order they were applied
+     */
+    ChangeFeed changeFeed();
+
+    /**
+     * Open a consistent read view of the current state. The caller must close it.
+     */
+    QuoteSnapshot snapshot();
+
+    /**
+     * Report to {@code listener} how finders that know it were answered: from
+     * an index or by a scan, and how many quotes they examined. Replaces any
+     * earlier listener; an implementation without such finders ignores it.
+     */
+    default void setAccessListener(AccessListener listener) {
+    }
+
 }
\ No newline at end of file
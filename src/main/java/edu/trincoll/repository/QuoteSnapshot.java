@@ -0,0 +1,57 @@
+package edu.trincoll.repository;
+
+import edu.trincoll.model.Quote;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedSet;
+
+/**
+ * A read-only view of the repository as of one version. Every read through the
+ * snapshot sees the quotes exactly as they were when it was opened, whatever is
+ * written meanwhile, so a service call made of several reads works on one
+ * consistent state. Close the snapshot so the repository can drop the versions
+ * it was keeping for it.
+ */
+public interface QuoteSnapshot extends AutoCloseable {
+
+    /**
+     * The repository version this snapshot reads; it grows by one with every
+     * quote saved or deleted
+     */
+    long version();
+
+    Optional<Quote> findById(Long id);
+
+    List<Quote> findAll();
+
+    /**
+     * One page of quotes in ascending id order
+     */
+    CursorPage<Quote, Long> findAll(Long after, int limit);
+
+    List<Quote> findByStatus(Quote.Status status);
+
+    List<Quote> findByCategory(String category);
+
+    /**
+     * Distinct categories, normalized as by {@link QuoteRepository#findDistinctCategories()}
+     */
+    SortedSet<String> findDistinctCategories();
+
+    /**
+     * One page of full-text matches, in ascending id order
+     */
+    CursorPage<Quote, Long> findByText(String query, Long after, int limit);
+
+    /**
+     * Count quotes per status; every status is present, with 0 if unused
+     */
+    Map<Quote.Status, Long> countByStatus();
+
+    long count();
+
+    @Override
+    void close();
+}
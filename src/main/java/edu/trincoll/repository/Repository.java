@@ -31,6 +31,14 @@ public interface Repository<T, ID> {
      * @return list of all entities
      */
     List<T> findAll();
+
+    /**
+     * Find one page of entities in ascending id order
+     * @param after only return entities with an ID greater than this one (null for the first page)
+     * @param limit maximum number of entities to return
+     * @return the page, with the cursor for the next page if there is one
+     */
+    CursorPage<T, ID> findAll(ID after, int limit);
     
     /**
      * Delete an entity by ID
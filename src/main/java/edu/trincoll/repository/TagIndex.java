@@ -0,0 +1,206 @@
+package edu.trincoll.repository;
+
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index from a normalized tag to the ids of the quotes carrying it.
+ * Posting lists are compressed bitmaps, so AND/OR queries over many tags are
+ * bitmap intersections and unions rather than per-quote set operations.
+ * <p>
+ * Bitmaps are not thread-safe; readers share a read lock and every query
+ * returns its own bitmap, so callers can iterate it without holding the lock.
+ * <p>
+ * Alongside the postings, tags are kept ranked by how many quotes carry them
+ * (count descending, then tag name), so the top k tags are read in
+ * O(k + log n) instead of counting and sorting every tag.
+ */
+class TagIndex {
+
+    private final Map<String, Roaring64Bitmap> postings = new HashMap<>();
+    private final NavigableSet<TagCount> ranking = new TreeSet<>(
+            Comparator.comparingLong(TagCount::count).reversed().thenComparing(TagCount::tag));
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private record TagCount(String tag, long count) {
+    }
+
+    void add(Collection<String> tags, long id) {
+        lock.writeLock().lock();
+        try {
+            for (String tag : tags) {
+                String key = ValueIndex.key(tag);
+                if (key.isEmpty()) continue;
+                Roaring64Bitmap ids = postings.computeIfAbsent(key, k -> new Roaring64Bitmap());
+                long before = ids.getLongCardinality();
+                ids.addLong(id);
+                rerank(key, before, ids.getLongCardinality());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Bulk-adds many quotes under one lock, e.g. when loading a snapshot
+     * @param tags the tags of each quote, parallel to {@code ids}
+     */
+    void addAll(long[] ids, List<? extends Collection<String>> tags) {
+        lock.writeLock().lock();
+        try {
+            Map<String, Long> before = new HashMap<>();
+            for (int i = 0; i < ids.length; i++) {
+                for (String tag : tags.get(i)) {
+                    String key = ValueIndex.key(tag);
+                    if (key.isEmpty()) continue;
+                    Roaring64Bitmap bitmap = postings.computeIfAbsent(key, k -> new Roaring64Bitmap());
+                    before.putIfAbsent(key, bitmap.getLongCardinality());
+                    bitmap.addLong(ids[i]);
+                }
+            }
+            // rerank each touched tag once rather than once per quote
+            before.forEach((key, count) -> rerank(key, count, postings.get(key).getLongCardinality()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(Collection<String> tags, long id) {
+        lock.writeLock().lock();
+        try {
+            for (String tag : tags) {
+                String key = ValueIndex.key(tag);
+                Roaring64Bitmap ids = postings.get(key);
+                if (ids == null) continue;
+                long before = ids.getLongCardinality();
+                ids.removeLong(id);
+                rerank(key, before, ids.getLongCardinality());
+                if (ids.isEmpty()) postings.remove(key);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the quotes carrying every one of the tags (blank tags are ignored)
+     */
+    Roaring64Bitmap all(Collection<String> tags) {
+        lock.readLock().lock();
+        try {
+            List<Roaring64Bitmap> lists = new ArrayList<>(tags.size());
+            for (String tag : tags) {
+                String key = ValueIndex.key(tag);
+                if (key.isEmpty()) continue;
+                Roaring64Bitmap ids = postings.get(key);
+                if (ids == null) return new Roaring64Bitmap();
+                lists.add(ids);
+            }
+            if (lists.isEmpty()) return new Roaring64Bitmap();
+
+            // intersect smallest first so the running result shrinks as fast as possible
+            lists.sort(Comparator.comparingLong(Roaring64Bitmap::getLongCardinality));
+            Roaring64Bitmap result = lists.get(0).clone();
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+                result.and(lists.get(i));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * An upper bound on the size of {@link #all}: the smallest posting list of
+     * the tags, read without intersecting them (blank tags are ignored)
+     */
+    long estimate(Collection<String> tags) {
+        lock.readLock().lock();
+        try {
+            long smallest = Long.MAX_VALUE;
+            for (String tag : tags) {
+                String key = ValueIndex.key(tag);
+                if (key.isEmpty()) continue;
+                Roaring64Bitmap ids = postings.get(key);
+                if (ids == null) return 0;
+                smallest = Math.min(smallest, ids.getLongCardinality());
+            }
+            return smallest == Long.MAX_VALUE ? 0 : smallest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the quotes carrying at least one of the tags (blank tags are ignored)
+     */
+    Roaring64Bitmap any(Collection<String> tags) {
+        lock.readLock().lock();
+        try {
+            Roaring64Bitmap result = new Roaring64Bitmap();
+            for (String tag : tags) {
+                Roaring64Bitmap ids = postings.get(ValueIndex.key(tag));
+                if (ids != null) result.or(ids);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The most used tags, count descending and then by name
+     */
+    List<String> top(int limit) {
+        lock.readLock().lock();
+        try {
+            List<String> result = new ArrayList<>(Math.min(limit, ranking.size()));
+            for (TagCount entry : ranking) {
+                if (result.size() == limit) break;
+                result.add(entry.tag());
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Every tag that currently has postings, in sorted order
+     */
+    SortedSet<String> keys() {
+        lock.readLock().lock();
+        try {
+            return new TreeSet<>(postings.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void rerank(String tag, long before, long after) {
+        if (before == after) return;
+        if (before > 0) ranking.remove(new TagCount(tag, before));
+        if (after > 0) ranking.add(new TagCount(tag, after));
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            ranking.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
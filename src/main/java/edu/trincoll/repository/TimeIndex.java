@@ -0,0 +1,73 @@
+package edu.trincoll.repository;
+
+import edu.trincoll.model.Quote;
+
+import java.time.LocalDateTime;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Sorted index of one timestamp field: a concurrent skip list of
+ * (timestamp, id) entries, so a time range or the newest entries are read by
+ * walking just the part of the list that holds them. Timestamps are kept as
+ * nanoseconds, as {@link Quote#toNanos(LocalDateTime)} encodes them.
+ */
+class TimeIndex {
+
+    /**
+     * One indexed quote; entries with the same time are ordered by id
+     */
+    record Entry(long time, long id) implements Comparable<Entry> {
+        @Override
+        public int compareTo(Entry other) {
+            int byTime = Long.compare(time, other.time);
+            return byTime != 0 ? byTime : Long.compare(id, other.id);
+        }
+    }
+
+    private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+    void add(long time, long id) {
+        entries.add(new Entry(time, id));
+    }
+
+    void remove(long time, long id) {
+        entries.remove(new Entry(time, id));
+    }
+
+    /**
+     * Entries from {@code from} (inclusive) to {@code to} (exclusive), oldest
+     * first; a null bound leaves that side open
+     */
+    NavigableSet<Entry> range(LocalDateTime from, LocalDateTime to) {
+        Entry low = from == null ? null : new Entry(Quote.toNanos(from), Long.MIN_VALUE);
+        Entry high = to == null ? null : new Entry(Quote.toNanos(to), Long.MIN_VALUE);
+        if (low == null && high == null) return entries;
+        if (low == null) return entries.headSet(high, false);
+        if (high == null) return entries.tailSet(low, true);
+        if (low.compareTo(high) >= 0) return new ConcurrentSkipListSet<>();
+        return entries.subSet(low, true, high, false);
+    }
+
+    /**
+     * Entries before {@code time} and after {@code after}, oldest first; a null
+     * {@code after} starts at the oldest entry
+     */
+    NavigableSet<Entry> before(long time, Entry after) {
+        Entry high = new Entry(time, Long.MIN_VALUE);
+        if (after == null) return entries.headSet(high, false);
+        if (after.compareTo(high) >= 0) return new ConcurrentSkipListSet<>();
+        return entries.subSet(after, false, high, false);
+    }
+
+    /**
+     * Every entry, newest first
+     */
+    NavigableSet<Entry> newestFirst() {
+        return entries.descendingSet();
+    }
+
+    void clear() {
+        entries.clear();
+    }
+}
@@ -0,0 +1,73 @@
+package edu.trincoll.repository;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Secondary hash index from a normalized field value to the ids of the quotes holding it.
+ * Keys are trimmed and lower-cased, so a lookup matches exactly what a
+ * case-insensitive, trim-tolerant comparison would. Each key also keeps its
+ * number of ids, since the size of a concurrent set takes a walk over it.
+ */
+class ValueIndex {
+
+    private static final class Postings {
+        final NavigableSet<Long> ids = new ConcurrentSkipListSet<>();
+        final AtomicInteger size = new AtomicInteger();
+    }
+
+    private final Map<String, Postings> postings = new ConcurrentHashMap<>();
+
+    /**
+     * Normalizes a field value into its index key (null counts as empty)
+     */
+    static String key(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    void add(String value, Long id) {
+        Postings ids = postings.computeIfAbsent(key(value), k -> new Postings());
+        if (ids.ids.add(id)) ids.size.incrementAndGet();
+    }
+
+    void remove(String value, Long id) {
+        postings.computeIfPresent(key(value), (k, ids) -> {
+            if (ids.ids.remove(id)) ids.size.decrementAndGet();
+            return ids.ids.isEmpty() ? null : ids;
+        });
+    }
+
+    /**
+     * Ids of the quotes whose field normalizes to the same key, in ascending order
+     */
+    NavigableSet<Long> get(String value) {
+        Postings ids = postings.get(key(value));
+        return ids == null ? Collections.emptyNavigableSet() : ids.ids;
+    }
+
+    /**
+     * Number of ids under the value's key, without walking them
+     */
+    int count(String value) {
+        Postings ids = postings.get(key(value));
+        return ids == null ? 0 : ids.size.get();
+    }
+
+    /**
+     * Every key that currently has postings, in sorted order
+     */
+    SortedSet<String> keys() {
+        return new TreeSet<>(postings.keySet());
+    }
+
+    void clear() {
+        postings.clear();
+    }
+}
@@ -0,0 +1,22 @@
+package edu.trincoll.repository;
+
+/**
+ * Thrown by a conditional update when the quote has been saved since the
+ * version the caller expected; the caller should re-read it and retry.
+ */
+public class VersionConflictException extends RuntimeException {
+
+    private final long currentVersion;
+
+    public VersionConflictException(Long id, long expectedVersion, long currentVersion) {
+        super("Quote " + id + " is at version " + currentVersion + ", not " + expectedVersion);
+        this.currentVersion = currentVersion;
+    }
+
+    /**
+     * The version the quote is actually at
+     */
+    public long currentVersion() {
+        return currentVersion;
+    }
+}
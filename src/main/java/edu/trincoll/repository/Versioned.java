@@ -0,0 +1,11 @@
+package edu.trincoll.repository;
+
+/**
+ * A stored value together with the repository version at which it was saved.
+ *
+ * @param value   the value as saved
+ * @param version the version to send back as the expected version of the next update
+ * @param <T>     the value type
+ */
+public record Versioned<T>(T value, long version) {
+}
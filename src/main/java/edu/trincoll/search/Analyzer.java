@@ -0,0 +1,74 @@
+package edu.trincoll.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Turns free text into index terms: splits on anything that is not a letter
+ * or digit, lower-cases, and strips diacritics so "Café" and "cafe" match.
+ * The same analyzer is applied to indexed fields and to queries.
+ */
+public final class Analyzer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private Analyzer() {
+    }
+
+    /**
+     * Normalizes a single term (lower case, no diacritics)
+     */
+    public static String normalize(String term) {
+        String lower = term.toLowerCase(Locale.ROOT);
+        if (isAscii(lower)) return lower;
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("");
+    }
+
+    /**
+     * Splits text into normalized tokens, in order, keeping duplicates
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) return tokens;
+
+        int start = -1;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            boolean wordChar = Character.isLetterOrDigit(cp) || Character.getType(cp) == Character.NON_SPACING_MARK;
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(normalize(text.substring(start, i)));
+                start = -1;
+            }
+            i += Character.charCount(cp);
+        }
+        if (start >= 0) tokens.add(normalize(text.substring(start)));
+        return tokens;
+    }
+
+    /**
+     * Distinct normalized tokens of all the given values
+     */
+    public static Set<String> terms(Collection<String> values) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String value : values) {
+            terms.addAll(tokenize(value));
+        }
+        return terms;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0x7F) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,215 @@
+package edu.trincoll.search;
+
+import edu.trincoll.model.Quote;
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted full-text index over quotes with one postings map per {@link SearchField}.
+ * <p>
+ * Documents are added and removed incrementally by the repository as quotes are
+ * saved and deleted. A query matches a quote when every query token occurs in at
+ * least one of the searched fields: per token the field postings are unioned,
+ * and the per-token results are intersected, smallest first.
+ */
+public class FullTextIndex {
+
+    private final Map<SearchField, Map<String, Roaring64Bitmap>> postings = new EnumMap<>(SearchField.class);
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public FullTextIndex() {
+        for (SearchField field : SearchField.values()) {
+            postings.put(field, new HashMap<>());
+        }
+    }
+
+    /**
+     * The analyzed terms of one quote, per field. The repository keeps these so the
+     * postings can be removed later even if the quote instance has been changed.
+     */
+    public static final class Terms {
+        private final Map<SearchField, String[]> byField;
+
+        private Terms(Map<SearchField, String[]> byField) {
+            this.byField = byField;
+        }
+
+        /**
+         * True if {@link #search(String)} would match these terms: every token of
+         * the query occurs in at least one field
+         */
+        public boolean matches(String query) {
+            return matches(new LinkedHashSet<>(Analyzer.tokenize(query)));
+        }
+
+        /**
+         * True if every one of the already analyzed query tokens occurs in at
+         * least one field
+         */
+        public boolean matches(Set<String> tokens) {
+            if (tokens.isEmpty()) return false;
+            for (String token : tokens) {
+                if (!contains(token)) return false;
+            }
+            return true;
+        }
+
+        private boolean contains(String token) {
+            for (String[] values : byField.values()) {
+                for (String value : values) {
+                    if (value.equals(token)) return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Analyzes every indexed field of a quote
+     */
+    public static Terms analyze(Quote quote) {
+        Map<SearchField, String[]> byField = new EnumMap<>(SearchField.class);
+        for (SearchField field : SearchField.values()) {
+            Set<String> terms = Analyzer.terms(field.valuesOf(quote));
+            if (!terms.isEmpty()) byField.put(field, terms.toArray(String[]::new));
+        }
+        return new Terms(byField);
+    }
+
+    public void add(long id, Terms terms) {
+        lock.writeLock().lock();
+        try {
+            terms.byField.forEach((field, values) -> {
+                Map<String, Roaring64Bitmap> fieldPostings = postings.get(field);
+                for (String term : values) {
+                    fieldPostings.computeIfAbsent(term, t -> new Roaring64Bitmap()).addLong(id);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Bulk-adds many documents under one lock, e.g. when loading a snapshot
+     * @param terms the analyzed terms of each quote, parallel to {@code ids}
+     */
+    public void addAll(long[] ids, List<Terms> terms) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                long id = ids[i];
+                terms.get(i).byField.forEach((field, values) -> {
+                    Map<String, Roaring64Bitmap> fieldPostings = postings.get(field);
+                    for (String term : values) {
+                        fieldPostings.computeIfAbsent(term, t -> new Roaring64Bitmap()).addLong(id);
+                    }
+                });
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id, Terms terms) {
+        lock.writeLock().lock();
+        try {
+            terms.byField.forEach((field, values) -> {
+                Map<String, Roaring64Bitmap> fieldPostings = postings.get(field);
+                for (String term : values) {
+                    Roaring64Bitmap ids = fieldPostings.get(term);
+                    if (ids == null) continue;
+                    ids.removeLong(id);
+                    if (ids.isEmpty()) fieldPostings.remove(term);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids of the quotes matching every token of the query in any field
+     */
+    public Roaring64Bitmap search(String query) {
+        return search(query, EnumSet.allOf(SearchField.class));
+    }
+
+    /**
+     * Ids of the quotes matching every token of the query within the given fields.
+     * A query without any tokens matches nothing.
+     */
+    public Roaring64Bitmap search(String query, Set<SearchField> fields) {
+        Set<String> tokens = new LinkedHashSet<>(Analyzer.tokenize(query));
+        if (tokens.isEmpty() || fields.isEmpty()) return new Roaring64Bitmap();
+
+        lock.readLock().lock();
+        try {
+            List<Roaring64Bitmap> perToken = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                Roaring64Bitmap matches = new Roaring64Bitmap();
+                for (SearchField field : fields) {
+                    Roaring64Bitmap ids = postings.get(field).get(token);
+                    if (ids != null) matches.or(ids);
+                }
+                if (matches.isEmpty()) return matches;
+                perToken.add(matches);
+            }
+
+            perToken.sort(Comparator.comparingLong(Roaring64Bitmap::getLongCardinality));
+            Roaring64Bitmap result = perToken.get(0);
+            for (int i = 1; i < perToken.size() && !result.isEmpty(); i++) {
+                result.and(perToken.get(i));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * An upper bound on the number of quotes {@link #search(String)} would
+     * match, read from posting sizes without building the result: per token
+     * the field postings are summed, and the smallest token total is taken
+     */
+    public long estimate(String query) {
+        Set<String> tokens = new LinkedHashSet<>(Analyzer.tokenize(query));
+        if (tokens.isEmpty()) return 0;
+
+        lock.readLock().lock();
+        try {
+            long smallest = Long.MAX_VALUE;
+            for (String token : tokens) {
+                long total = 0;
+                for (Map<String, Roaring64Bitmap> fieldPostings : postings.values()) {
+                    Roaring64Bitmap ids = fieldPostings.get(token);
+                    if (ids != null) total += ids.getLongCardinality();
+                }
+                smallest = Math.min(smallest, total);
+            }
+            return smallest;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.values().forEach(Map::clear);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package edu.trincoll.search;
+
+import edu.trincoll.model.Quote;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * The quote fields covered by the full-text index, each with its own postings
+ */
+public enum SearchField {
+    TITLE(q -> List.of(nullToEmpty(q.getTitle()))),
+    DESCRIPTION(q -> List.of(nullToEmpty(q.getDescription()))),
+    CATEGORY(q -> List.of(nullToEmpty(q.getCategory()))),
+    AUTHOR(q -> List.of(nullToEmpty(q.getAuthor()))),
+    SOURCE(q -> List.of(nullToEmpty(q.getSource()))),
+    PUBLISHER(q -> List.of(nullToEmpty(q.getPublisher()))),
+    TAGS(Quote::getTags);
+
+    private final Function<Quote, Collection<String>> extractor;
+
+    SearchField(Function<Quote, Collection<String>> extractor) {
+        this.extractor = extractor;
+    }
+
+    /**
+     * Raw values of this field on a quote
+     */
+    public Collection<String> valuesOf(Quote quote) {
+        Collection<String> values = extractor.apply(quote);
+        return values == null ? List.of() : values;
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
@@ -0,0 +1,15 @@
+package edu.trincoll.search;
+
+/**
+ * How a free-text query is matched against quotes
+ */
+public enum SearchMode {
+    /**
+     * Every query token must appear as a whole word in some field; answered from the index
+     */
+    TOKEN,
+    /**
+     * Original behavior: the whole query is a case-insensitive substring of some field; scans every quote
+     */
+    SUBSTRING
+}
@@ -0,0 +1,140 @@
+package edu.trincoll.search;
+
+import org.roaringbitmap.longlong.Roaring64Bitmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Character-trigram index for case-insensitive substring search.
+ * <p>
+ * Text is trimmed and lower-cased exactly as a {@code contains} check would do,
+ * and every run of three characters is posted under the quote id. Any string
+ * containing the needle also contains every trigram of the needle, so
+ * intersecting those postings yields a candidate set that is a superset of the
+ * true matches; callers confirm each candidate with a real {@code contains}.
+ * <p>
+ * Needles shorter than {@link #GRAM} characters have no trigrams to look up;
+ * {@link #candidates} returns {@code null} for them and the caller must fall
+ * back to scanning.
+ */
+public class TrigramIndex {
+
+    public static final int GRAM = 3;
+
+    private final Map<Long, Roaring64Bitmap> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The form both indexed text and needles are compared in
+     */
+    public static String fold(String s) {
+        return s == null ? "" : s.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public void add(long id, String text) {
+        Set<Long> grams = grams(fold(text));
+        if (grams.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            for (Long gram : grams) {
+                postings.computeIfAbsent(gram, g -> new Roaring64Bitmap()).addLong(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Bulk-adds many texts under one lock, e.g. when loading a snapshot
+     * @param texts the text of each quote, parallel to {@code ids}
+     */
+    public void addAll(long[] ids, List<String> texts) {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                for (Long gram : grams(fold(texts.get(i)))) {
+                    postings.computeIfAbsent(gram, g -> new Roaring64Bitmap()).addLong(ids[i]);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id, String text) {
+        Set<Long> grams = grams(fold(text));
+        if (grams.isEmpty()) return;
+        lock.writeLock().lock();
+        try {
+            for (Long gram : grams) {
+                Roaring64Bitmap ids = postings.get(gram);
+                if (ids == null) continue;
+                ids.removeLong(id);
+                if (ids.isEmpty()) postings.remove(gram);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ids whose text may contain the needle, or {@code null} if the folded needle
+     * is shorter than a trigram and the index cannot narrow the search
+     */
+    public Roaring64Bitmap candidates(String needle) {
+        Set<Long> grams = grams(fold(needle));
+        if (grams.isEmpty()) return null;
+
+        lock.readLock().lock();
+        try {
+            List<Roaring64Bitmap> lists = new ArrayList<>(grams.size());
+            for (Long gram : grams) {
+                Roaring64Bitmap ids = postings.get(gram);
+                if (ids == null) return new Roaring64Bitmap();
+                lists.add(ids);
+            }
+            lists.sort(Comparator.comparingLong(Roaring64Bitmap::getLongCardinality));
+            Roaring64Bitmap result = lists.get(0).clone();
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+                result.and(lists.get(i));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Distinct trigrams of already folded text, each packed into a long. The chars sit
+     * 20 bits apart rather than 16 so that Long.hashCode, which folds the high half onto
+     * the low half, does not make the first and last char collide.
+     */
+    private static Set<Long> grams(String folded) {
+        if (folded.length() < GRAM) return Set.of();
+        Set<Long> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM <= folded.length(); i++) {
+            grams.add(((long) folded.charAt(i) << 40)
+                    | ((long) folded.charAt(i + 1) << 20)
+                    | folded.charAt(i + 2));
+        }
+        return grams;
+    }
+}
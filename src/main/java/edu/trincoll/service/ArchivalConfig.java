@@ -0,0 +1,21 @@
+package edu.trincoll.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Starts the background archival when {@code quotes.archival.enabled=true}
+ */
+@Configuration
+@EnableConfigurationProperties(ArchivalProperties.class)
+public class ArchivalConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "quotes.archival", name = "enabled", havingValue = "true")
+    public ArchivalScheduler archivalScheduler(QuoteService service, ArchivalProperties properties) {
+        if (properties.batchSize() <= 0) throw new IllegalArgumentException("Batch size must be positive");
+        return new ArchivalScheduler(service, properties);
+    }
+}
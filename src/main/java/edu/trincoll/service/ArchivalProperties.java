@@ -0,0 +1,27 @@
+package edu.trincoll.service;
+
+import edu.trincoll.model.Quote;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Settings for the background archival of stale quotes, under {@code quotes.archival}.
+ * Nothing is archived unless {@code quotes.archival.enabled=true}.
+ *
+ * @param enabled   whether stale quotes are archived periodically
+ * @param maxAge    how long a quote may go without an update before it is archived
+ * @param interval  the pause between two archival runs
+ * @param batchSize largest number of quotes examined in one repository write
+ * @param statuses  the statuses whose stale quotes are archived
+ */
+@ConfigurationProperties("quotes.archival")
+public record ArchivalProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("365d") Duration maxAge,
+        @DefaultValue("1h") Duration interval,
+        @DefaultValue("500") int batchSize,
+        @DefaultValue({"ACTIVE", "INACTIVE"}) Set<Quote.Status> statuses) {
+}
@@ -0,0 +1,55 @@
+package edu.trincoll.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archives stale quotes on a daemon thread, once per interval. A run moves the
+ * quotes in bounded batches through {@link QuoteService#archiveOlderThan}, so
+ * request threads writing meanwhile wait for one batch at most.
+ */
+public final class ArchivalScheduler implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchivalScheduler.class);
+
+    private final QuoteService service;
+    private final ArchivalProperties properties;
+    private final ScheduledExecutorService executor;
+
+    public ArchivalScheduler(QuoteService service, ArchivalProperties properties) {
+        this.service = service;
+        this.properties = properties;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "quote-archival");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1, properties.interval().toMillis());
+        executor.scheduleWithFixedDelay(this::run, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Archives every quote that is stale now
+     * @return number of quotes archived
+     */
+    public int run() {
+        try {
+            int archived = service.archiveOlderThan(properties.maxAge(), properties.statuses(), properties.batchSize());
+            if (archived > 0) log.info("Archived {} quotes not updated for {}", archived, properties.maxAge());
+            return archived;
+        } catch (RuntimeException e) {
+            // a failed run must not cancel the schedule
+            log.warn("Archival run failed", e);
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -1,9 +1,15 @@
 package edu.trincoll.service;
 
+import edu.trincoll.repository.CursorPage;
 import edu.trincoll.repository.Repository;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 /**
  * Abstract base service providing common CRUD operations.
@@ -13,6 +19,19 @@ import java.util.Optional;
  * @param <ID> The ID type
  */
 public abstract class BaseService<T, ID> {
+
+    /**
+     * Largest page size a caller may request; larger limits are clamped to it
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+    
+    /**
+     * Largest number of entities accepted by {@link #saveBatch}
+     */
+    public static final int MAX_BATCH_SIZE = 10_000;
+    
+    // below this many entities, forking validation costs more than it saves
+    private static final int PARALLEL_VALIDATION_THRESHOLD = 1_000;
     
     /**
      * Get the repository instance for data access
@@ -27,6 +46,13 @@ public abstract class BaseService<T, ID> {
      */
     public abstract void validateEntity(T entity);
     
+    /**
+     * Get the ID of an entity
+     * @param entity the entity
+     * @return its ID, or null if it has not been saved
+     */
+    protected abstract ID getId(T entity);
+    
     /**
      * Save an entity with validation
      * @param entity the entity to save
@@ -57,6 +83,51 @@ public abstract class BaseService<T, ID> {
         return getRepository().findAll();
     }
     
+    /**
+     * Find one page of entities in ascending id order
+     * @param after the cursor returned with the previous page, or null for the first page
+     * @param limit maximum page size, clamped to {@link #MAX_PAGE_SIZE}
+     * @return the page and the cursor for the next one
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    public CursorPage<T, ID> findAll(ID after, int limit) {
+        return getRepository().findAll(after, pageSize(limit));
+    }
+    
+    /**
+     * Stream all entities in ascending id order, loading one page at a time so
+     * memory use does not grow with the size of the store
+     * @return a lazy stream of every entity
+     */
+    public Stream<T> streamAll() {
+        return streamPages((ID after) -> getRepository().findAll(after, MAX_PAGE_SIZE));
+    }
+    
+    /**
+     * Chain cursor pages into one lazy stream; the next page is fetched only
+     * once the previous one has been consumed
+     * @param fetch loads the page after a cursor (null for the first page)
+     * @return a stream over the items of every page
+     */
+    protected static <E, K> Stream<E> streamPages(Function<K, CursorPage<E, K>> fetch) {
+        return Stream.iterate(fetch.apply(null), Objects::nonNull,
+                        page -> page.nextCursor() == null ? null : fetch.apply(page.nextCursor()))
+                .flatMap(page -> page.items().stream());
+    }
+    
+    /**
+     * Validate a requested page size and clamp it to {@link #MAX_PAGE_SIZE}
+     * @param limit the requested page size
+     * @return the page size to use
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    protected static int pageSize(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
+    }
+    
     /**
      * Delete an entity by ID
      * @param id the ID of entity to delete
@@ -99,7 +170,67 @@ public abstract class BaseService<T, ID> {
      * @return list of saved entities
      */
     public List<T> saveAll(List<T> entities) {
-        entities.forEach(this::validateEntity);
+        String[] errors = validateAll(entities);
+        for (String error : errors) {
+            if (error != null) throw new IllegalArgumentException(error);
+        }
         return getRepository().saveAll(entities);
     }
+    
+    /**
+     * Save the valid entities of a batch and report the invalid ones, instead of
+     * rejecting the whole batch. Validation runs in parallel for large batches and
+     * the valid entities are saved together, so IDs are reserved in one step.
+     * A batch only creates entities, so one that already has an ID is invalid.
+     * @param entities the entities to save
+     * @return per-entity results in submission order
+     * @throws IllegalArgumentException if the batch exceeds {@link #MAX_BATCH_SIZE}
+     */
+    public BatchResult<ID> saveBatch(List<T> entities) {
+        if (entities.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch cannot exceed " + MAX_BATCH_SIZE + " entities");
+        }
+        String[] errors = validateAll(entities);
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] == null && getId(entities.get(i)) != null) {
+                errors[i] = "ID must not be set when creating";
+            }
+        }
+        
+        List<T> valid = new ArrayList<>(entities.size());
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] == null) valid.add(entities.get(i));
+        }
+        List<T> saved = getRepository().saveAll(valid);
+        
+        List<BatchResult.Item<ID>> items = new ArrayList<>(errors.length);
+        int next = 0;
+        for (int i = 0; i < errors.length; i++) {
+            items.add(errors[i] == null
+                    ? new BatchResult.Item<>(i, getId(saved.get(next++)), null)
+                    : new BatchResult.Item<>(i, null, errors[i]));
+        }
+        return new BatchResult<>(saved.size(), errors.length - saved.size(), items);
+    }
+    
+    /**
+     * Validate every entity, in parallel once the list is large enough
+     * @param entities the entities to validate
+     * @return the validation message for each entity, or null where it is valid
+     */
+    private String[] validateAll(List<T> entities) {
+        String[] errors = new String[entities.size()];
+        IntStream indexes = IntStream.range(0, errors.length);
+        if (errors.length >= PARALLEL_VALIDATION_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> {
+            try {
+                validateEntity(entities.get(i));
+            } catch (IllegalArgumentException e) {
+                errors[i] = e.getMessage();
+            }
+        });
+        return errors;
+    }
 }
\ No newline at end of file
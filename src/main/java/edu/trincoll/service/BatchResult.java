@@ -0,0 +1,24 @@
+package edu.trincoll.service;
+
+import java.util.List;
+
+/**
+ * Outcome of a batch save, reported item by item.
+ *
+ * @param saved number of entities saved
+ * @param failed number of entities rejected by validation
+ * @param items one result per submitted entity, in submission order
+ * @param <ID> The ID type
+ */
+public record BatchResult<ID>(int saved, int failed, List<Item<ID>> items) {
+
+    /**
+     * Result for one submitted entity
+     *
+     * @param index position of the entity in the submitted batch
+     * @param id the assigned ID if the entity was saved, otherwise null
+     * @param error the validation message if the entity was rejected, otherwise null
+     */
+    public record Item<ID>(int index, ID id, String error) {
+    }
+}
@@ -0,0 +1,14 @@
+package edu.trincoll.service;
+
+import edu.trincoll.model.Quote;
+
+import java.util.List;
+
+/**
+ * The quotes of one category, as produced group by group when streaming
+ *
+ * @param category the category name, or "Uncategorized" for quotes without one
+ * @param quotes the quotes in the category
+ */
+public record CategoryGroup(String category, List<Quote> quotes) {
+}
@@ -0,0 +1,22 @@
+package edu.trincoll.service;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Provides the executor the service runs its scans on
+ */
+@Configuration
+@EnableConfigurationProperties(ParallelProperties.class)
+public class ParallelConfig {
+
+    @Bean(destroyMethod = "close")
+    public ParallelQueries parallelQueries(ParallelProperties properties) {
+        if (!properties.enabled()) return ParallelQueries.SEQUENTIAL;
+        int parallelism = properties.parallelism() > 0
+                ? properties.parallelism()
+                : Runtime.getRuntime().availableProcessors();
+        return ParallelQueries.of(parallelism, properties.threshold());
+    }
+}
@@ -0,0 +1,20 @@
+package edu.trincoll.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for parallel service scans, under {@code quotes.parallel}; substring
+ * search is the only scan they apply to (see {@link ParallelQueries}).
+ * Scans run sequentially unless {@code quotes.parallel.enabled=true}.
+ *
+ * @param enabled     whether large scans run in parallel
+ * @param parallelism worker threads of the dedicated pool; 0 for one per available processor
+ * @param threshold   smallest number of quotes a scan must cover to run in parallel
+ */
+@ConfigurationProperties("quotes.parallel")
+public record ParallelProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("0") int parallelism,
+        @DefaultValue("20000") int threshold) {
+}
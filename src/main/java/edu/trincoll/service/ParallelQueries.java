@@ -0,0 +1,83 @@
+package edu.trincoll.service;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Runs the whole-store scans of {@link QuoteService}. A scan over at least
+ * {@code threshold} quotes becomes a parallel stream on a dedicated, bounded
+ * {@link ForkJoinPool}, so one heavy query can use every core without taking
+ * over the common pool; smaller scans stay sequential, where forking would cost
+ * more than it saves.
+ * <p>
+ * Substring search is the only such scan left. Grouping by category, the
+ * distinct and most popular tags and the tag finders are answered by the
+ * repository, from its indexes or, in the {@code columnar} profile, from
+ * sequential passes over its code columns, and have no parallel mode.
+ * <p>
+ * The stream pipelines keep their encounter order, so a parallel scan returns
+ * the same result, in the same order, as a sequential one.
+ */
+public final class ParallelQueries implements AutoCloseable {
+
+    /**
+     * Runs every scan sequentially on the calling thread
+     */
+    public static final ParallelQueries SEQUENTIAL = new ParallelQueries(null, Integer.MAX_VALUE);
+
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    private ParallelQueries(ForkJoinPool pool, int threshold) {
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param parallelism number of worker threads, which is also the most the pool will ever start
+     * @param threshold   smallest number of items scanned in parallel
+     */
+    public static ParallelQueries of(int parallelism, int threshold) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive");
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism, ParallelQueries::newWorker, null, false,
+                0, parallelism, 1, p -> true, 60, TimeUnit.SECONDS);
+        return new ParallelQueries(pool, Math.max(1, threshold));
+    }
+
+    private static ForkJoinWorkerThread newWorker(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("quote-query-" + thread.getPoolIndex());
+        return thread;
+    }
+
+    /**
+     * Number of worker threads, or 1 when every scan is sequential
+     */
+    public int parallelism() {
+        return pool == null ? 1 : pool.getParallelism();
+    }
+
+    /**
+     * Apply a stream pipeline to the items. Parallel streams started from inside a
+     * pool's task run on that pool, so the pipeline is submitted to the dedicated
+     * pool rather than run on the caller's thread.
+     * @param items the items to scan
+     * @param query builds and terminates the pipeline
+     * @return the pipeline's result
+     */
+    public <T, R> R scan(List<T> items, Function<Stream<T>, R> query) {
+        if (pool == null || items.size() < threshold) return query.apply(items.stream());
+        return pool.submit(() -> query.apply(items.parallelStream())).join();
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) pool.shutdown();
+    }
+}
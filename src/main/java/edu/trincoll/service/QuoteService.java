@@ -1,31 +1,71 @@
 package edu.trincoll.service;
 
+import edu.trincoll.metrics.QueryMetrics;
 import edu.trincoll.model.Quote;
+import edu.trincoll.repository.ChangeFeed;
+import edu.trincoll.repository.CursorPage;
+import edu.trincoll.repository.QueryResult;
+import edu.trincoll.repository.QuoteQuery;
 import edu.trincoll.repository.QuoteRepository;
+import edu.trincoll.repository.QuoteSnapshot;
 import edu.trincoll.repository.Repository;
+import edu.trincoll.repository.VersionConflictException;
+import edu.trincoll.repository.Versioned;
+import edu.trincoll.search.Analyzer;
+import edu.trincoll.search.SearchMode;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * ---AI Collaboration Summary-------------
  * -
- * - Helper methods norm(), lower(), isBlank(), safeCategory() and safeTags() generated by ChatGPT.
+ * - Helper methods norm(), lower(), isBlank() and safeCategory() generated by ChatGPT.
  * - ChatGPT used to help explain streams, filter, flatmaps, and other functional programming features.
  * -
  * ----------------------------------------
  * Service layer implementing business logic.
  * Extends BaseService for common CRUD operations.
+ * Scans over the whole store run through {@link ParallelQueries}, which
+ * parallelizes the large ones. Aggregate results are kept in a
+ * {@link ResultCache} until the next write; they are read-only. Concurrent
+ * identical searches and aggregate computations share one run through
+ * {@link SingleFlight}, and their results are read-only as well. Quotes in
+ * shared results are mutable, so every caller gets its own copies.
  */
 @Service
 public class QuoteService extends BaseService<Quote, Long> {
     
+    // distinct aggregate queries (method and arguments) whose results are kept
+    private static final int CACHE_SIZE = 256;
+
     private final QuoteRepository repository;
+    private final ParallelQueries parallel;
+    private final QueryMetrics metrics;
+    private final ResultCache cache = new ResultCache(CACHE_SIZE);
+    private final SingleFlight flights = new SingleFlight();
     
     public QuoteService(QuoteRepository repository) {
+        this(repository, ParallelQueries.SEQUENTIAL, QueryMetrics.NONE);
+    }
+
+    public QuoteService(QuoteRepository repository, ParallelQueries parallel) {
+        this(repository, parallel, QueryMetrics.NONE);
+    }
+
+    @Autowired
+    public QuoteService(QuoteRepository repository, ParallelQueries parallel, QueryMetrics metrics) {
         this.repository = repository;
+        this.parallel = parallel;
+        this.metrics = metrics;
     }
     
     @Override
@@ -33,81 +73,187 @@ public class QuoteService extends BaseService<Quote, Long> {
         return repository;
     }
     
+    @Override
+    protected Long getId(Quote entity) {
+        return entity.getId();
+    }
+    
     @Override
     public void validateEntity(Quote entity) {
         if (entity == null) {
             throw new IllegalArgumentException("Quote cannot be null");
         }
+        validateTitle(entity.getTitle());
+        validateDescription(entity.getDescription());
+        validateCategory(entity.getCategory());
+        validateAuthor(entity.getAuthor());
+        validateSource(entity.getSource());
+        validatePublisher(entity.getPublisher());
+        validateTags(entity.getTags());
+        validateStatus(entity.getStatus());
+    }
 
-        // ----------------
-        // Title validation
-        // ----------------
-        if (entity.getTitle() == null || entity.getTitle().trim().isEmpty()) {
+    // ------------------------
+    // Field validation, shared by full saves and partial updates
+    // ------------------------
+
+    private static void validateTitle(String title) {
+        if (title == null || title.trim().isEmpty()) {
             throw new IllegalArgumentException("Title is required");
         }
-        if (entity.getTitle().length() > 100) {
+        if (title.length() > 100) {
             throw new IllegalArgumentException("Title cannot exceed 100 characters");
         }
+    }
 
-        // ----------------
-        // Description validation
-        // ----------------
-        if (entity.getDescription() != null && entity.getDescription().length() > 1000) {
+    private static void validateDescription(String description) {
+        if (description != null && description.length() > 1000) {
             throw new IllegalArgumentException("Description cannot exceed 1000 characters");
         }
+    }
 
-        // ----------------
-        // Category validation
-        // ----------------
-        if (entity.getCategory() != null && entity.getCategory().length() > 50) {
+    private static void validateCategory(String category) {
+        if (category != null && category.length() > 50) {
             throw new IllegalArgumentException("Category cannot exceed 50 characters");
         }
+    }
 
-        // ----------------
-        // Author validation
-        // ----------------
-        if (entity.getAuthor() != null && entity.getAuthor().length() > 100) {
+    private static void validateAuthor(String author) {
+        if (author != null && author.length() > 100) {
             throw new IllegalArgumentException("Author name cannot exceed 100 characters");
         }
+    }
 
-        // ----------------
-        // Source validation
-        // ----------------
-        if (entity.getSource() != null && entity.getSource().length() > 200) {
+    private static void validateSource(String source) {
+        if (source != null && source.length() > 200) {
             throw new IllegalArgumentException("Source cannot exceed 200 characters");
         }
+    }
 
-        // ----------------
-        // Publisher validation
-        // ----------------
-        if (entity.getPublisher() != null && entity.getPublisher().length() > 100) {
+    private static void validatePublisher(String publisher) {
+        if (publisher != null && publisher.length() > 100) {
             throw new IllegalArgumentException("Publisher cannot exceed 100 characters");
         }
+    }
 
-        // ----------------
-        // Tag validation
-        // ----------------
-        if (entity.getTags() != null) {
-            if (entity.getTags().size() > 20) {
-                throw new IllegalArgumentException("A quote cannot have more than 20 tags");
+    private static void validateTags(Set<String> tags) {
+        if (tags == null) return;
+        if (tags.size() > 20) {
+            throw new IllegalArgumentException("A quote cannot have more than 20 tags");
+        }
+        for (String tag : tags) {
+            if (tag == null || tag.trim().isEmpty()) {
+                throw new IllegalArgumentException("Tags cannot be blank");
             }
-            for (String tag : entity.getTags()) {
-                if (tag == null || tag.trim().isEmpty()) {
-                    throw new IllegalArgumentException("Tags cannot be blank");
-                }
-                if (tag.length() > 30) {
-                    throw new IllegalArgumentException("Tag cannot exceed 30 characters: " + tag);
-                }
+            if (tag.length() > 30) {
+                throw new IllegalArgumentException("Tag cannot exceed 30 characters: " + tag);
             }
         }
-        // ----------------
-        // Status validation
-        // ----------------
-        if (entity.getStatus() == null) {
+    }
+
+    private static void validateStatus(Quote.Status status) {
+        if (status == null) {
             throw new IllegalArgumentException("Status must not be null");
         }
     }
 
+    /**
+     * Replace an item in one atomic repository step, without a separate existence check.
+     * The item is validated only once the id is found, so a missing id is reported as
+     * such whatever the replacement holds.
+     * @param expectedVersion the version the client last read, or null to overwrite unconditionally
+     * @return the saved item and its new version, or empty if there is no item with the id
+     * @throws IllegalArgumentException if the item is invalid
+     * @throws VersionConflictException if the item has been saved since the expected version
+     */
+    public Optional<Versioned<Quote>> update(Long id, Long expectedVersion, Quote quote) {
+        return repository.update(id, expectedVersion, current -> {
+            validateEntity(quote);
+            return quote;
+        });
+    }
+
+    /**
+     * Change some fields of an item, in the manner of a JSON merge patch:
+     * fields missing from {@code changes} keep their value and a null clears
+     * one. Only the changed fields are validated, before the item is read; the
+     * changes are then applied to the current item in one atomic repository step.
+     * @param expectedVersion the version the client last read, or null to apply unconditionally
+     * @return the saved item and its new version, or empty if there is no item with the id
+     * @throws IllegalArgumentException if a field is unknown, read-only or invalid
+     * @throws VersionConflictException if the item has been saved since the expected version
+     */
+    public Optional<Versioned<Quote>> patch(Long id, Long expectedVersion, Map<String, ?> changes) {
+        List<Consumer<Quote>> edits = new ArrayList<>(changes.size());
+        changes.forEach((field, value) -> edits.add(edit(field, value)));
+        return repository.update(id, expectedVersion, current -> {
+            edits.forEach(edit -> edit.accept(current));
+            return current;
+        });
+    }
+
+    /**
+     * Validates the new value of one field and returns the change that sets it
+     */
+    private static Consumer<Quote> edit(String field, Object value) {
+        switch (field) {
+            case "title" -> {
+                String title = string(field, value);
+                validateTitle(title);
+                return q -> q.setTitle(title);
+            }
+            case "description" -> {
+                String description = string(field, value);
+                validateDescription(description);
+                return q -> q.setDescription(description);
+            }
+            case "category" -> {
+                String category = string(field, value);
+                validateCategory(category);
+                return q -> q.setCategory(category);
+            }
+            case "author" -> {
+                String author = string(field, value);
+                validateAuthor(author);
+                return q -> q.setAuthor(author);
+            }
+            case "source" -> {
+                String source = string(field, value);
+                validateSource(source);
+                return q -> q.setSource(source);
+            }
+            case "publisher" -> {
+                String publisher = string(field, value);
+                validatePublisher(publisher);
+                return q -> q.setPublisher(publisher);
+            }
+            case "status" -> {
+                String name = string(field, value);
+                Quote.Status status = name == null ? null : Quote.Status.valueOf(name);
+                validateStatus(status);
+                return q -> q.setStatus(status);
+            }
+            case "tags" -> {
+                Set<String> tags = new HashSet<>();
+                if (value instanceof Collection<?> values) {
+                    for (Object tag : values) {
+                        tags.add(string(field, tag));
+                    }
+                } else if (value != null) {
+                    throw new IllegalArgumentException("tags must be a list");
+                }
+                validateTags(tags);
+                return q -> q.setTags(tags);
+            }
+            default -> throw new IllegalArgumentException("Unknown or read-only field: " + field);
+        }
+    }
+
+    private static String string(String field, Object value) {
+        if (value == null || value instanceof String) return (String) value;
+        throw new IllegalArgumentException(field + " must be a string");
+    }
+
     // ------------------------
     // Helpers
     // ------------------------
@@ -140,62 +286,216 @@ public class QuoteService extends BaseService<Quote, Long> {
         return isBlank(c) ? "Uncategorized" : c.trim();
     }
 
+
     /**
-     * Returns a quotes tags or an empty set if it has none
+     * The cached result of an aggregate query, computed once for all concurrent
+     * callers on a miss
      */
-    private static Set<String> safeTags(Quote q) {
-        Set<String> t = q.getTags();
-        return (t == null) ? Collections.emptySet() : t;
+    private <T> T aggregate(String method, List<?> args, Supplier<T> compute) {
+        long version = repository.version();
+        boolean[] computed = new boolean[1];
+        T result = cache.get(version, method, args, () -> {
+            computed[0] = true;
+            return flights.run(version, method, args, compute);
+        });
+        metrics.cache(method, !computed[0]);
+        return result;
     }
 
+    /**
+     * Copies of quotes from a cached or coalesced result, for one caller
+     */
+    private static List<Quote> copies(List<Quote> quotes) {
+        return quotes.stream().map(Quote::copy).toList();
+    }
+
+    // ------------------------
+    // Queries, each recorded in the query metrics under its method name
+    // ------------------------
+
+    @Override
+    public Optional<Quote> findById(Long id) {
+        long start = metrics.start();
+        return metrics.record("findById", start, super.findById(id));
+    }
+
+    @Override
+    public List<Quote> findAll() {
+        long start = metrics.start();
+        return metrics.record("findAll", start, super.findAll());
+    }
+
+    @Override
+    public CursorPage<Quote, Long> findAll(Long after, int limit) {
+        long start = metrics.start();
+        return metrics.record("findAllPage", start, super.findAll(after, limit));
+    }
 
     /**
      * Find items by status
      */
     public List<Quote> findByStatus(Quote.Status status) {
-        return repository.findByStatus(status);
+        long start = metrics.start();
+        return metrics.record("findByStatus", start, repository.findByStatus(status));
+    }
+
+    /**
+     * Find one page of items by status
+     */
+    public CursorPage<Quote, Long> findByStatus(Quote.Status status, Long after, int limit) {
+        long start = metrics.start();
+        return metrics.record("findByStatusPage", start, repository.findByStatus(status, after, pageSize(limit)));
+    }
+    
+    /**
+     * Find the items passing every filter of a query, read through the most
+     * selective access path the repository has for it
+     * @throws IllegalArgumentException if the limit is not positive
+     */
+    public QueryResult query(QuoteQuery query) {
+        long start = metrics.start();
+        QueryResult result = repository.query(query.withLimit(pageSize(query.limit())));
+        metrics.record("query", start, result.items().size());
+        metrics.scanned("query", result.plan().examined());
+        return result;
     }
     
     /**
      * Find items by category
      */
     public List<Quote> findByCategory(String category) {
-        return repository.findByCategory(category);
+        long start = metrics.start();
+        return metrics.record("findByCategory", start, repository.findByCategory(category));
+    }
+
+    /**
+     * Find one page of items by category
+     */
+    public CursorPage<Quote, Long> findByCategory(String category, Long after, int limit) {
+        long start = metrics.start();
+        return metrics.record("findByCategoryPage", start,
+                repository.findByCategory(category, after, pageSize(limit)));
     }
     
     /**
-     * Group items by category using Collectors
+     * Find items created in a time range, oldest first
+     * @param from inclusive lower bound, or null for no lower bound
+     * @param to   exclusive upper bound, or null for no upper bound
+     */
+    public List<Quote> findCreatedBetween(LocalDateTime from, LocalDateTime to) {
+        long start = metrics.start();
+        return metrics.record("findCreatedBetween", start, repository.findCreatedBetween(from, to));
+    }
+
+    /**
+     * Find items updated at or after a time, least recently updated first
+     * @throws IllegalArgumentException if since is null
+     */
+    public List<Quote> findUpdatedSince(LocalDateTime since) {
+        if (since == null) throw new IllegalArgumentException("A start time is required");
+        long start = metrics.start();
+        return metrics.record("findUpdatedSince", start, repository.findUpdatedSince(since));
+    }
+
+    /**
+     * The most recently created items, newest first
+     * @param limit number of items, clamped to {@link #MAX_PAGE_SIZE}
+     * @throws IllegalArgumentException if limit is not positive
+     */
+    public List<Quote> findLatest(int limit) {
+        long start = metrics.start();
+        return metrics.record("findLatest", start, repository.findLatest(pageSize(limit)));
+    }
+    
+    /**
+     * Group items by category; the repository reads the groups from one state
      */
     public Map<String, List<Quote>> groupByCategory() {
-        return repository.findAll().stream()
-                .collect(Collectors.groupingBy(QuoteService::safeCategory));
+        long start = metrics.start();
+        Map<String, List<Quote>> groups = aggregate("groupByCategory", List.of(), () -> {
+            Map<String, List<Quote>> result = new LinkedHashMap<>();
+            long scanned = 0;
+            for (Map.Entry<String, List<Quote>> group : repository.groupByCategory().entrySet()) {
+                scanned += group.getValue().size();
+                // blank categories and a literal "Uncategorized" end up in the same group
+                String category = group.getKey().isEmpty() ? "Uncategorized" : group.getKey();
+                result.merge(category, Collections.unmodifiableList(group.getValue()), QuoteService::mergeById);
+            }
+            metrics.scanned("groupByCategory", scanned);
+            return Collections.unmodifiableMap(result);
+        });
+        Map<String, List<Quote>> copies = new LinkedHashMap<>();
+        groups.forEach((category, quotes) -> copies.put(category, copies(quotes)));
+        return metrics.record("groupByCategory", start, Collections.unmodifiableMap(copies));
+    }
+
+    /**
+     * Two lists in ascending id order merged into one
+     */
+    private static List<Quote> mergeById(List<Quote> a, List<Quote> b) {
+        List<Quote> merged = new ArrayList<>(a.size() + b.size());
+        int i = 0;
+        int j = 0;
+        while (i < a.size() || j < b.size()) {
+            if (j == b.size() || (i < a.size() && a.get(i).getId() < b.get(j).getId())) {
+                merged.add(a.get(i++));
+            } else {
+                merged.add(b.get(j++));
+            }
+        }
+        return Collections.unmodifiableList(merged);
+    }
+    
+    /**
+     * Stream the category groups one at a time, in category order, so only one
+     * category's quotes are held in memory. Every group is read from the same
+     * snapshot, which is released when the stream is closed.
+     */
+    public Stream<CategoryGroup> streamGroupedByCategory() {
+        QuoteSnapshot snapshot = repository.snapshot();
+        SortedSet<String> keys = snapshot.findDistinctCategories();
+        // blank categories and a literal "Uncategorized" end up in the same group
+        boolean namedUncategorized = keys.contains("uncategorized");
+        return keys.stream()
+                .filter(key -> !(key.isEmpty() && namedUncategorized))
+                .flatMap(key -> {
+                    List<Quote> quotes = new ArrayList<>(snapshot.findByCategory(key));
+                    if (key.equals("uncategorized")) quotes.addAll(snapshot.findByCategory(""));
+                    // keys ignore case, groups do not
+                    return quotes.stream()
+                            .collect(Collectors.groupingBy(QuoteService::safeCategory, TreeMap::new, Collectors.toList()))
+                            .entrySet().stream()
+                            .map(e -> new CategoryGroup(e.getKey(), e.getValue()));
+                })
+                .onClose(snapshot::close);
     }
     
     /**
-     * Get all unique tags from all items
+     * Get all unique tags from all items, trimmed and lower-cased
      */
     public Set<String> getAllUniqueTags() {
-        return repository.findAll().stream()
-                .map(QuoteService::safeTags)
-                .flatMap(Set::stream)
-                .collect(Collectors.toCollection(TreeSet::new)); // sorted & unique
+        long start = metrics.start();
+        return metrics.record("getAllUniqueTags", start, aggregate("getAllUniqueTags", List.of(),
+                () -> Collections.unmodifiableSortedSet(repository.findDistinctTags())));
+    }
+
+    /**
+     * Stream all items from one snapshot, which is released when the stream is closed
+     */
+    @Override
+    public Stream<Quote> streamAll() {
+        QuoteSnapshot snapshot = repository.snapshot();
+        return streamPages((Long after) -> snapshot.findAll(after, MAX_PAGE_SIZE))
+                .onClose(snapshot::close);
     }
     
     /**
      * Get count of items per status
      */
     public Map<Quote.Status, Long> countByStatus() {
-        EnumMap<Quote.Status, Long> result = new EnumMap<>(Quote.Status.class);
-        // Start with 0 for each status
-        for (Quote.Status s : Quote.Status.values()) {
-            result.put(s, 0L);
-        }
-        // Count present
-        Map<Quote.Status, Long> counts = repository.findAll().stream()
-                .collect(Collectors.groupingBy(Quote::getStatus, () -> new EnumMap<>(Quote.Status.class), Collectors.counting()));
-        // Merge
-        counts.forEach((k, v) -> result.put(k, v));
-        return result;
+        long start = metrics.start();
+        return metrics.record("countByStatus", start, aggregate("countByStatus", List.of(),
+                () -> Collections.unmodifiableMap(repository.countByStatus())));
     }
     
     /**
@@ -203,15 +503,8 @@ public class QuoteService extends BaseService<Quote, Long> {
      */
     public List<Quote> findByAllTags(Set<String> tags) {
         if (tags == null || tags.isEmpty()) return Collections.emptyList();
-        Set<String> wanted = tags.stream().filter(Objects::nonNull)
-                .map(QuoteService::lower)
-                .filter(s -> !s.isEmpty())
-                .collect(Collectors.toSet());
-        if (wanted.isEmpty()) return Collections.emptyList();
-
-        return repository.findAll().stream()
-                .filter(q -> safeTags(q).containsAll(wanted))
-                .collect(Collectors.toList());
+        long start = metrics.start();
+        return metrics.record("findByAllTags", start, repository.findByAllTags(tags));
     }
     
     /**
@@ -219,22 +512,8 @@ public class QuoteService extends BaseService<Quote, Long> {
      */
     public List<Quote> findByAnyTag(Set<String> tags) {
         if (tags == null || tags.isEmpty()) return Collections.emptyList();
-        Set<String> wanted = tags.stream().filter(Objects::nonNull)
-                .map(QuoteService::lower)
-                .filter(s -> !s.isEmpty())
-                .collect(Collectors.toSet());
-        if (wanted.isEmpty()) return Collections.emptyList();
-
-        return repository.findAll().stream()
-                .filter(q -> {
-                    Set<String> qt = safeTags(q);
-                    // intersect non-empty?
-                    for (String w : wanted) {
-                        if (qt.contains(w)) return true;
-                    }
-                    return false;
-                })
-                .collect(Collectors.toList());
+        long start = metrics.start();
+        return metrics.record("findByAnyTag", start, repository.findByAnyTag(tags));
     }
     
     /**
@@ -242,66 +521,185 @@ public class QuoteService extends BaseService<Quote, Long> {
      */
     public List<String> getMostPopularTags(int limit) {
         if (limit <= 0) return Collections.emptyList();
+        long start = metrics.start();
+        return metrics.record("getMostPopularTags", start, aggregate("getMostPopularTags", List.of(limit),
+                () -> Collections.unmodifiableList(repository.findMostPopularTags(limit))));
+    }
 
-        Map<String, Long> freq = repository.findAll().stream()
-                .map(QuoteService::safeTags)
-                .flatMap(Set::stream)
-                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    /**
+     * Recent saves and deletes, for clients following changes
+     */
+    public ChangeFeed changeFeed() {
+        return repository.changeFeed();
+    }
 
-        return freq.entrySet().stream()
-                .sorted(Comparator.<Map.Entry<String, Long>>comparingLong(Map.Entry::getValue).reversed()
-                        .thenComparing(Map.Entry::getKey))
-                .limit(limit)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+    /**
+     * Hit and miss counts of the aggregate result cache
+     */
+    public ResultCache.Stats cacheStats() {
+        return cache.stats();
+    }
+    
+    /**
+     * Calls that shared another caller's search or aggregate computation
+     */
+    public SingleFlight.Stats coalescingStats() {
+        return flights.stats();
     }
     
     /**
-     * Search items by query (searches title and description)
+     * Search items by query using the full-text index
      */
     public List<Quote> search(String query) {
+        return search(query, SearchMode.TOKEN);
+    }
+
+    /**
+     * Search items by query. TOKEN mode matches whole words through the index;
+     * SUBSTRING mode keeps the original scan for clients relying on partial-word matches.
+     * Concurrent searches that normalize to the same query share one result.
+     */
+    public List<Quote> search(String query, SearchMode mode) {
+        if (mode == SearchMode.SUBSTRING) {
+            String needle = lower(query);
+            if (needle.isEmpty()) return Collections.emptyList();
+            long start = metrics.start();
+            return metrics.record("substringSearch", start, copies(flights.run(repository.version(),
+                    "substringSearch", List.of(needle), () -> Collections.unmodifiableList(substringSearch(needle)))));
+        }
+        // word order, repeats, case and accents do not change the matches
+        SortedSet<String> tokens = new TreeSet<>(Analyzer.tokenize(query));
+        if (tokens.isEmpty()) return Collections.emptyList();
+        long start = metrics.start();
+        return metrics.record("search", start, copies(flights.run(repository.version(), "search", List.of(tokens),
+                () -> Collections.unmodifiableList(repository.findByText(String.join(" ", tokens))))));
+    }
+
+    /**
+     * Find one page of search results. SUBSTRING mode scans the store a batch at a
+     * time and stops as soon as the page is full.
+     */
+    public CursorPage<Quote, Long> search(String query, SearchMode mode, Long after, int limit) {
+        int size = pageSize(limit);
+        if (mode != SearchMode.SUBSTRING) {
+            if (isBlank(query)) return new CursorPage<>(Collections.emptyList(), null);
+            long start = metrics.start();
+            return metrics.record("searchPage", start, repository.findByText(query, after, size));
+        }
+
+        // the scan reads several batches; one snapshot keeps them consistent
+        long start = metrics.start();
+        try (QuoteSnapshot snapshot = repository.snapshot()) {
+            long[] scanned = new long[1];
+            CursorPage<Quote, Long> page = substringPage(snapshot, query, after, size, scanned);
+            metrics.scanned("substringSearchPage", scanned[0]);
+            return metrics.record("substringSearchPage", start, page);
+        }
+    }
+
+    private static CursorPage<Quote, Long> substringPage(QuoteSnapshot snapshot, String query, Long after, int size) {
+        return substringPage(snapshot, query, after, size, new long[1]);
+    }
+
+    /**
+     * @param scanned incremented by the number of quotes read
+     */
+    private static CursorPage<Quote, Long> substringPage(QuoteSnapshot snapshot, String query, Long after, int size,
+                                                        long[] scanned) {
+        String needle = lower(query);
+        List<Quote> items = new ArrayList<>();
+        if (needle.isEmpty()) return new CursorPage<>(items, null);
+        Long cursor = after;
+        do {
+            CursorPage<Quote, Long> batch = snapshot.findAll(cursor, MAX_PAGE_SIZE);
+            scanned[0] += batch.items().size();
+            for (Quote q : batch.items()) {
+                if (!containsSubstring(q, needle)) continue;
+                if (items.size() == size) {
+                    return new CursorPage<>(items, items.get(size - 1).getId());
+                }
+                items.add(q);
+            }
+            cursor = batch.nextCursor();
+        } while (cursor != null);
+        return new CursorPage<>(items, null);
+    }
+
+    /**
+     * Stream every search result, one page at a time, from one snapshot that is
+     * released when the stream is closed
+     */
+    public Stream<Quote> streamSearch(String query, SearchMode mode) {
+        QuoteSnapshot snapshot = repository.snapshot();
+        Function<Long, CursorPage<Quote, Long>> fetch = mode == SearchMode.SUBSTRING
+                ? after -> substringPage(snapshot, query, after, MAX_PAGE_SIZE)
+                : after -> snapshot.findByText(query, after, MAX_PAGE_SIZE);
+        return streamPages(fetch).onClose(snapshot::close);
+    }
+
+    /**
+     * Case-insensitive substring match on every text field and tag; scans all quotes
+     */
+    private List<Quote> substringSearch(String query) {
         String needle = lower(query);
         if (needle.isEmpty()) return Collections.emptyList();
 
-        return repository.findAll().stream()
-                .filter(q -> {
-                    // strings
-                    boolean inTitle      = lower(q.getTitle()).contains(needle);
-                    boolean inDesc       = lower(q.getDescription()).contains(needle);
-                    boolean inCategory   = lower(q.getCategory()).contains(needle);
-                    boolean inAuthor     = lower(q.getAuthor()).contains(needle);
-                    boolean inSource     = lower(q.getSource()).contains(needle);
-                    boolean inPublisher  = lower(q.getPublisher()).contains(needle);
-
-                    // tags (case-insensitive substring match)
-                    boolean inTags = false;
-                    Set<String> tags = q.getTags();
-                    if (tags != null && !tags.isEmpty()) {
-                        for (String t : tags) {
-                            if (t != null && lower(t).contains(needle)) {
-                                inTags = true;
-                                break;
-                            }
-                        }
-                    }
+        List<Quote> all = repository.findAll();
+        metrics.scanned("substringSearch", all.size());
+        return parallel.scan(all, quotes -> quotes
+                .filter(q -> containsSubstring(q, needle))
+                .collect(Collectors.toList()));
+    }
 
-                    return inTitle || inDesc || inCategory || inAuthor || inSource || inPublisher || inTags;
-                })
-                .collect(Collectors.toList());
+    /**
+     * True if the lower-cased needle occurs in any text field or tag of the quote
+     */
+    private static boolean containsSubstring(Quote q, String needle) {
+        // strings
+        boolean inTitle      = lower(q.getTitle()).contains(needle);
+        boolean inDesc       = lower(q.getDescription()).contains(needle);
+        boolean inCategory   = lower(q.getCategory()).contains(needle);
+        boolean inAuthor     = lower(q.getAuthor()).contains(needle);
+        boolean inSource     = lower(q.getSource()).contains(needle);
+        boolean inPublisher  = lower(q.getPublisher()).contains(needle);
+
+        // tags (case-insensitive substring match)
+        boolean inTags = false;
+        Set<String> tags = q.getTags();
+        if (tags != null && !tags.isEmpty()) {
+            for (String t : tags) {
+                if (t != null && lower(t).contains(needle)) {
+                    inTags = true;
+                    break;
+                }
+            }
+        }
+
+        return inTitle || inDesc || inCategory || inAuthor || inSource || inPublisher || inTags;
     }
 
 
     /**
-     * Archive old items (change status to ARCHIVED)
+     * Archive old items (change status to ARCHIVED) in one repository write,
+     * so a concurrent update cannot be lost or half-applied
      */
     public int archiveInactiveItems() {
-        List<Quote> inactive = repository.findByStatus(Quote.Status.INACTIVE);
-        int updated = 0;
-        for (Quote q : inactive) {
-            q.setStatus(Quote.Status.ARCHIVED);
-            repository.save(q);
-            updated++;
+        return repository.updateStatusWhere(Quote.Status.INACTIVE, Quote.Status.ARCHIVED, q -> true);
+    }
+
+    /**
+     * Archive items with one of the given statuses that have not been updated
+     * for at least {@code maxAge}. Each repository write examines at most
+     * {@code batchSize} items, so other writes wait for one batch at most.
+     * @return number of items archived
+     */
+    public int archiveOlderThan(Duration maxAge, Collection<Quote.Status> statuses, int batchSize) {
+        if (batchSize <= 0) throw new IllegalArgumentException("Batch size must be positive");
+        LocalDateTime cutoff = LocalDateTime.now().minus(maxAge);
+        int archived = 0;
+        for (Quote.Status status : statuses) {
+            archived += repository.updateStatusUpdatedBefore(status, Quote.Status.ARCHIVED, cutoff, batchSize);
         }
-        return updated;
+        return archived;
     }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package edu.trincoll.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Caches query results by method and arguments, each tagged with the repository
+ * version it was computed at. An entry is served only while the repository is
+ * still at that version, so any write invalidates every entry without the cache
+ * having to hear about it.
+ * <p>
+ * A hit is a map lookup and a version comparison, without locking. Once the
+ * cache holds more than {@code maxEntries} results, the least recently used is
+ * evicted. Cached results are shared between callers and must not be modified.
+ */
+public final class ResultCache {
+
+    /**
+     * Lookups served from the cache, lookups that computed the result, and
+     * entries evicted to stay within the bound
+     */
+    public record Stats(long hits, long misses, long evictions, int size) {
+    }
+
+    private record Key(String method, List<?> args) {
+    }
+
+    private static final class Entry {
+        final long version;
+        final Object value;
+        volatile long lastUsed;
+
+        Entry(long version, Object value) {
+            this.version = version;
+            this.value = value;
+            this.lastUsed = System.nanoTime();
+        }
+    }
+
+    private final int maxEntries;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public ResultCache(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * The cached result of a query if it was computed at the given version,
+     * otherwise the freshly computed one, which then replaces it
+     * @param version the repository version now; read it before computing
+     * @param method  names the query
+     * @param args    the query's arguments, which must have value equality
+     * @param compute computes the result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(long version, String method, List<?> args, Supplier<T> compute) {
+        Key key = new Key(method, args);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version == version) {
+            entry.lastUsed = System.nanoTime();
+            hits.increment();
+            return (T) entry.value;
+        }
+        misses.increment();
+        T value = compute.get();
+        // a result computed at an older version must not replace a newer one
+        entries.merge(key, new Entry(version, value), (old, fresh) -> old.version > fresh.version ? old : fresh);
+        if (entries.size() > maxEntries) evict();
+        return value;
+    }
+
+    private void evict() {
+        while (entries.size() > maxEntries) {
+            Map.Entry<Key, Entry> oldest = null;
+            for (Map.Entry<Key, Entry> candidate : entries.entrySet()) {
+                if (oldest == null || candidate.getValue().lastUsed < oldest.getValue().lastUsed) {
+                    oldest = candidate;
+                }
+            }
+            if (oldest == null) return;
+            if (entries.remove(oldest.getKey(), oldest.getValue())) evictions.increment();
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+    }
+}
@@ -0,0 +1,82 @@
+package edu.trincoll.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical queries: while one caller computes a result,
+ * every other caller asking for the same method, arguments and repository
+ * version waits for it instead of running the query again. Unlike
+ * {@link ResultCache}, nothing is kept once the computation finishes; the next
+ * call computes afresh.
+ * <p>
+ * Because the version is part of the key, a caller never joins a computation
+ * that started before a write it has already seen. Results are shared between
+ * the coalesced callers and must not be modified.
+ */
+public final class SingleFlight {
+
+    /**
+     * Calls made, calls that waited for another caller's computation instead of
+     * running their own, and computations running now
+     */
+    public record Stats(long calls, long coalesced, int inFlight) {
+    }
+
+    private record Key(long version, String method, List<?> args) {
+    }
+
+    private final Map<Key, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * The result of the computation already running for the same query, or of
+     * this one if none is. An exception thrown by the computation is thrown to
+     * every caller waiting for it.
+     * @param version the repository version now
+     * @param method  names the query
+     * @param args    the query's normalized arguments, which must have value equality
+     * @param compute computes the result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T run(long version, String method, List<?> args, Supplier<T> compute) {
+        calls.increment();
+        Key key = new Key(version, method, args);
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = flights.putIfAbsent(key, flight);
+        if (running != null) {
+            coalesced.increment();
+            return (T) await(running);
+        }
+        try {
+            T value = compute.get();
+            flight.complete(value);
+            return value;
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw e;
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(calls.sum(), coalesced.sum(), flights.size());
+    }
+}
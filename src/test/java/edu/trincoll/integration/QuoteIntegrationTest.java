@@ -10,7 +10,11 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -265,4 +269,382 @@ class QuoteIntegrationTest {
                         .param("query", "Java"))
                 .andExpect(status().isOk());
     }
-}
\ No newline at end of file
+    
+    @Test
+    @DisplayName("Should get most popular tags with a limit")
+    void testGetPopularTags() throws Exception {
+        Quote quote1 = new Quote("Item 1", "Desc");
+        quote1.addTag("wisdom");
+        quote1.addTag("life");
+        Quote quote2 = new Quote("Item 2", "Desc");
+        quote2.addTag("wisdom");
+        
+        mockMvc.perform(post("/api/quotes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(quote1)))
+                .andExpect(status().isCreated());
+        
+        mockMvc.perform(post("/api/quotes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(quote2)))
+                .andExpect(status().isCreated());
+        
+        mockMvc.perform(get("/api/quotes/tags/popular")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0]").value("wisdom"));
+    }
+    
+    @Test
+    @DisplayName("Should page items with limit and after")
+    void testGetItemsPaged() throws Exception {
+        for (int i = 1; i <= 3; i++) {
+            mockMvc.perform(post("/api/quotes")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new Quote("Item " + i, "Desc"))))
+                    .andExpect(status().isCreated());
+        }
+        
+        String response = mockMvc.perform(get("/api/quotes").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.nextCursor").isNumber())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        
+        String cursor = objectMapper.readTree(response).get("nextCursor").asText();
+        
+        mockMvc.perform(get("/api/quotes").param("limit", "2").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].title").value("Item 3"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+        
+        mockMvc.perform(get("/api/quotes/search").param("query", "item").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+    
+    @Test
+    @DisplayName("Should stream items and groups as NDJSON")
+    void testStreamItemsAsNdjson() throws Exception {
+        Quote work = new Quote("Work 1", "Work item");
+        work.setCategory("Work");
+        Quote personal = new Quote("Personal", "Personal item");
+        personal.setCategory("Personal");
+        
+        for (Quote quote : List.of(work, personal)) {
+            mockMvc.perform(post("/api/quotes")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(quote)))
+                    .andExpect(status().isCreated());
+        }
+        
+        MvcResult all = mockMvc.perform(get("/api/quotes").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] lines = mockMvc.perform(asyncDispatch(all))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[0], Quote.class).getTitle()).isEqualTo("Work 1");
+        
+        MvcResult grouped = mockMvc.perform(get("/api/quotes/grouped").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String[] groups = mockMvc.perform(asyncDispatch(grouped))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString()
+                .split("\n");
+        assertThat(groups).hasSize(2);
+        assertThat(objectMapper.readTree(groups[0]).get("category").asText()).isEqualTo("Personal");
+        assertThat(objectMapper.readTree(groups[1]).get("quotes")).hasSize(1);
+    }
+    
+    @Test
+    @DisplayName("Should create items in a batch with per-item results")
+    void testCreateItemsInBatch() throws Exception {
+        List<Quote> batch = List.of(new Quote("Item 1", "Desc"), new Quote("", "Invalid"));
+        
+        mockMvc.perform(post("/api/quotes/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.saved").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.items[0].id").isNumber())
+                .andExpect(jsonPath("$.items[1].error").value("Title is required"));
+        
+        mockMvc.perform(get("/api/quotes"))
+                .andExpect(jsonPath("$", hasSize(1)));
+    }
+
+    @Test
+    @DisplayName("Should tell a change feed client resuming from an unknown position to resync")
+    void testChangeFeedResync() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/quotes/changes")
+                        .header("Last-Event-ID", Long.MAX_VALUE)
+                        .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("event:resync")))
+                .andExpect(content().string(containsString("\"latest\":")));
+    }
+
+    @Test
+    @DisplayName("Should answer a conditional list request with 304 until the store changes")
+    void testCollectionETag() throws Exception {
+        mockMvc.perform(post("/api/quotes")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Quote("Item 1", "Desc"))));
+
+        String etag = mockMvc.perform(get("/api/quotes"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        mockMvc.perform(get("/api/quotes").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag))
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/quotes/tags").header("If-None-Match", "W/" + etag))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(post("/api/quotes")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Quote("Item 2", "Desc"))));
+
+        mockMvc.perform(get("/api/quotes").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)))
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    @DisplayName("Should tag the JSON and NDJSON representations of a URL differently")
+    void testETagPerRepresentation() throws Exception {
+        mockMvc.perform(post("/api/quotes")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new Quote("Item 1", "Desc"))));
+
+        String json = mockMvc.perform(get("/api/quotes").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Vary", containsString("Accept")))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        MvcResult ndjson = mockMvc.perform(get("/api/quotes").accept(MediaType.APPLICATION_NDJSON)
+                        .header("If-None-Match", json))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(json)))
+                .andExpect(header().string("Vary", containsString("Accept")))
+                .andReturn();
+        String tag = ndjson.getResponse().getHeader("ETag");
+        mockMvc.perform(asyncDispatch(ndjson));
+
+        mockMvc.perform(get("/api/quotes").accept(MediaType.APPLICATION_NDJSON).header("If-None-Match", tag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/quotes").accept(MediaType.APPLICATION_JSON).header("If-None-Match", tag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Should change a quote's ETag only when that quote changes")
+    void testItemETag() throws Exception {
+        Quote first = createQuote("Item 1");
+        Quote second = createQuote("Item 2");
+
+        String etag = mockMvc.perform(get("/api/quotes/" + first.getId()))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        second.setTitle("Item 2 updated");
+        mockMvc.perform(put("/api/quotes/" + second.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(second)))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/quotes/" + first.getId()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        first.setTitle("Item 1 updated");
+        mockMvc.perform(put("/api/quotes/" + first.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(first)))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/quotes/" + first.getId()).header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("Item 1 updated"));
+
+        mockMvc.perform(get("/api/quotes/999999").header("If-None-Match", "*"))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist("ETag"));
+    }
+
+    @Test
+    @DisplayName("Should filter by several fields at once and explain the plan on request")
+    void testQueryItems() throws Exception {
+        Quote first = createQuote("Item 1");
+        Quote second = createQuote("Item 2");
+        createQuote("Item 3");
+        for (Quote quote : List.of(first, second)) {
+            quote.setCategory("Work");
+            quote.addTag("urgent");
+            mockMvc.perform(put("/api/quotes/" + quote.getId())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(quote)));
+        }
+
+        mockMvc.perform(get("/api/quotes/query")
+                        .param("category", "work")
+                        .param("tag", "urgent")
+                        .param("sort", "ID_DESC"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(second.getId()));
+
+        mockMvc.perform(get("/api/quotes/query")
+                        .param("status", "ACTIVE")
+                        .param("category", "work")
+                        .param("limit", "1")
+                        .param("explain", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.plan.access").value("category"))
+                .andExpect(jsonPath("$.plan.estimates.category").value(2))
+                .andExpect(jsonPath("$.plan.stoppedEarly").value(true));
+
+        mockMvc.perform(get("/api/quotes/query").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Should list the latest and recently updated items")
+    void testTimeRangeItems() throws Exception {
+        Quote first = createQuote("Item 1");
+        Quote second = createQuote("Item 2");
+
+        mockMvc.perform(get("/api/quotes/latest").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].id").value(second.getId()));
+
+        mockMvc.perform(get("/api/quotes/updated").param("since", first.getUpdatedAt().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+
+        mockMvc.perform(get("/api/quotes/created")
+                        .param("from", "2000-01-01T00:00:00")
+                        .param("to", first.getCreatedAt().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(0)));
+
+        mockMvc.perform(get("/api/quotes/updated"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Should apply a PATCH or PUT only while its If-Match tag is current")
+    void testConditionalUpdate() throws Exception {
+        Quote quote = createQuote("Item 1");
+        String etag = mockMvc.perform(get("/api/quotes/" + quote.getId()))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        String updated = mockMvc.perform(patch("/api/quotes/" + quote.getId())
+                        .contentType("application/merge-patch+json")
+                        .header("If-Match", etag)
+                        .content("{\"title\": \"Item 1 patched\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("Item 1 patched"))
+                .andExpect(jsonPath("$.description").value("Desc"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+        assertThat(updated).isNotEqualTo(etag);
+
+        mockMvc.perform(patch("/api/quotes/" + quote.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("If-Match", etag)
+                        .content("{\"title\": \"Lost update\"}"))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string("ETag", updated));
+        quote.setTitle("Lost update");
+        mockMvc.perform(put("/api/quotes/" + quote.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("If-Match", etag)
+                        .content(objectMapper.writeValueAsString(quote)))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(patch("/api/quotes/" + quote.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("If-Match", "\"not-a-tag\"")
+                        .content("{\"title\": \"Lost update\"}"))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(get("/api/quotes/" + quote.getId()))
+                .andExpect(jsonPath("$.title").value("Item 1 patched"));
+
+        mockMvc.perform(patch("/api/quotes/" + quote.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("If-Match", updated)
+                        .content("{\"id\": 5}"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(patch("/api/quotes/999999")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"x\"}"))
+                .andExpect(status().isNotFound());
+        // a missing quote is reported before its replacement is validated
+        mockMvc.perform(put("/api/quotes/999999")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"title\": \"\"}"))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(put("/api/quotes/999999")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("If-Match", "*")
+                        .content(objectMapper.writeValueAsString(quote)))
+                .andExpect(status().isPreconditionFailed());
+        mockMvc.perform(put("/api/quotes/" + quote.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("If-Match", "*")
+                        .content(objectMapper.writeValueAsString(quote)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.title").value("Lost update"));
+    }
+
+    @Test
+    @DisplayName("Should publish query metrics tagged with the method name")
+    void testQueryMetrics() throws Exception {
+        Quote quote = createQuote("Item 1");
+        mockMvc.perform(get("/api/quotes/" + quote.getId())).andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/metrics/quotes.service.calls").param("tag", "method:findById"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.measurements[?(@.statistic == 'COUNT')].value").value(hasItem(greaterThanOrEqualTo(1.0))));
+        mockMvc.perform(get("/actuator/metrics/quotes.repository.calls").param("tag", "method:findById"))
+                .andExpect(status().isOk());
+    }
+
+    private Quote createQuote(String title) throws Exception {
+        String body = mockMvc.perform(post("/api/quotes")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Quote(title, "Desc"))))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        return objectMapper.readValue(body, Quote.class);
+    }
+}
@@ -0,0 +1,118 @@
+package edu.trincoll.metrics;
+
+import edu.trincoll.model.Quote;
+import edu.trincoll.repository.ColumnarQuoteRepository;
+import edu.trincoll.repository.InMemoryQuoteRepository;
+import edu.trincoll.repository.QuoteQuery;
+import edu.trincoll.repository.QuoteRepository;
+import edu.trincoll.service.ParallelQueries;
+import edu.trincoll.service.QuoteService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class QueryMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private QuoteRepository repository;
+    private QuoteService service;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        double[] percentiles = {0.5, 0.99};
+        repository = new MeteredQuoteRepository(new InMemoryQuoteRepository(),
+                new QueryMetrics(registry, "quotes.repository", percentiles, true));
+        service = new QuoteService(repository, ParallelQueries.SEQUENTIAL,
+                new QueryMetrics(registry, "quotes.service", percentiles, true));
+        for (int i = 0; i < 4; i++) {
+            Quote quote = new Quote("Quote " + i, "Desc");
+            quote.setCategory(i % 2 == 0 ? "Stoic" : "Zen");
+            repository.save(quote);
+        }
+    }
+
+    @Test
+    @DisplayName("Should time each finder and record its result size under the method name")
+    void testRepositoryFinders() {
+        repository.findByCategory("Stoic");
+        repository.findByCategory("Zen");
+        repository.findById(1L);
+
+        assertThat(registry.get("quotes.repository.calls").tag("method", "findByCategory").timer().count())
+                .isEqualTo(2);
+        assertThat(registry.get("quotes.repository.results").tag("method", "findByCategory").summary().totalAmount())
+                .isEqualTo(4);
+        assertThat(registry.get("quotes.repository.calls").tag("method", "findById").timer().count()).isEqualTo(1);
+        assertThat(registry.find("quotes.repository.calls").tag("method", "save").timer()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should record the quotes a query scanned and whether it used an index")
+    void testQueryPlan() {
+        repository.query(new QuoteQuery(null, "Zen", null, null, null, null, 10));
+        repository.query(new QuoteQuery(null, null, null, null, null, null, 10));
+
+        assertThat(registry.get("quotes.repository.scanned").tag("method", "query").summary().totalAmount())
+                .isEqualTo(6);
+        assertThat(registry.get("quotes.repository.index").tag("method", "query").tag("result", "hit")
+                .counter().count()).isEqualTo(1);
+        assertThat(registry.get("quotes.repository.index.ratio").tag("method", "query").gauge().value())
+                .isEqualTo(0.5);
+    }
+
+    @Test
+    @DisplayName("Should record which finders the repositories answered by scanning")
+    void testFinderAccess() {
+        // "uote" has trigrams; "3" is too short for any, so it is a scan
+        repository.findByTitleContaining("uote");
+        repository.findByTitleContaining("3");
+
+        assertThat(registry.get("quotes.repository.scanned").tag("method", "findByTitleContaining").summary()
+                .totalAmount()).isEqualTo(8);
+        assertThat(registry.get("quotes.repository.index.ratio").tag("method", "findByTitleContaining").gauge()
+                .value()).isEqualTo(0.5);
+
+        QuoteRepository columnar = new MeteredQuoteRepository(new ColumnarQuoteRepository(),
+                new QueryMetrics(registry, "quotes.columnar", new double[0], false));
+        columnar.saveAll(List.of(new Quote("Quote", "Desc"), new Quote("Quote", "Desc")));
+        columnar.findByCategory("");
+        assertThat(registry.get("quotes.columnar.scanned").tag("method", "findByCategory").summary().totalAmount())
+                .isEqualTo(2);
+        assertThat(registry.get("quotes.columnar.index").tag("method", "findByCategory").tag("result", "miss")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should record service queries and their cache hits")
+    void testServiceQueries() {
+        service.countByStatus();
+        service.countByStatus();
+        service.search("quote");
+        service.groupByCategory();
+
+        assertThat(registry.get("quotes.service.calls").tag("method", "countByStatus").timer().count()).isEqualTo(2);
+        assertThat(registry.get("quotes.service.cache.ratio").tag("method", "countByStatus").gauge().value())
+                .isEqualTo(0.5);
+        assertThat(registry.get("quotes.service.results").tag("method", "search").summary().totalAmount())
+                .isEqualTo(4);
+        assertThat(registry.get("quotes.service.scanned").tag("method", "groupByCategory").summary().totalAmount())
+                .isEqualTo(4);
+        // the service's finders are recorded again where they reach the repository
+        assertThat(registry.get("quotes.repository.calls").tag("method", "findByText").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should record nothing when disabled")
+    void testNone() {
+        QueryMetrics none = QueryMetrics.NONE;
+        assertThat(none.enabled()).isFalse();
+        assertThat(none.start()).isZero();
+        assertThat(none.record("findAll", 0, List.of(1, 2))).containsExactly(1, 2);
+    }
+}
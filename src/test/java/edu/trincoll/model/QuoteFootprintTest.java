@@ -0,0 +1,168 @@
+package edu.trincoll.model;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Measures the retained heap of many quotes against a replica of the layout
+ * Quote had before its fields were compacted.
+ */
+class QuoteFootprintTest {
+
+    private static final int QUOTES = 10_000;
+
+    /**
+     * The previous layout: boxed id, HashSet of tags, LocalDateTime timestamps,
+     * and a private copy of every string as read from a request
+     */
+    @SuppressWarnings("unused")
+    private static final class LegacyQuote {
+        private Long id;
+        private String title;
+        private String description;
+        private String category;
+        private Quote.Status status;
+        private Set<String> tags = new HashSet<>();
+        private LocalDateTime createdAt = LocalDateTime.now();
+        private LocalDateTime updatedAt = LocalDateTime.now();
+        private String author;
+        private String source;
+        private String publisher;
+    }
+
+    // every request deserializes its own String instances, even for repeated values
+    private static String copy(String s) {
+        return new String(s.toCharArray());
+    }
+
+    private static List<LegacyQuote> legacy() {
+        List<LegacyQuote> quotes = new ArrayList<>(QUOTES);
+        for (int i = 0; i < QUOTES; i++) {
+            LegacyQuote q = new LegacyQuote();
+            q.id = 100_000L + i;
+            q.title = copy("A memorable quote, number " + i);
+            q.description = copy("Something worth remembering about life, time and people, #" + i);
+            q.category = copy("Category " + i % 200);
+            q.status = Quote.Status.ACTIVE;
+            q.author = copy("Author " + i % 4000);
+            q.source = copy("Source " + i % 500);
+            q.publisher = copy("Publisher " + i % 50);
+            for (int t = 0; t < 3; t++) {
+                q.tags.add(copy("tag" + (i + t) % 100));
+            }
+            quotes.add(q);
+        }
+        return quotes;
+    }
+
+    private static List<Quote> compact(ValueDictionary values) {
+        List<Quote> quotes = new ArrayList<>(QUOTES);
+        for (int i = 0; i < QUOTES; i++) {
+            Quote q = new Quote(copy("A memorable quote, number " + i),
+                    copy("Something worth remembering about life, time and people, #" + i));
+            q.setId(100_000L + i);
+            q.setCategory(copy("Category " + i % 200));
+            q.setAuthor(copy("Author " + i % 4000));
+            q.setSource(copy("Source " + i % 500));
+            q.setPublisher(copy("Publisher " + i % 50));
+            Set<String> tags = new HashSet<>();
+            for (int t = 0; t < 3; t++) {
+                tags.add(copy("tag" + (i + t) % 100));
+            }
+            q.setTags(tags);
+            values.acquire(q);
+            quotes.add(q);
+        }
+        return quotes;
+    }
+
+    @Test
+    @DisplayName("Should use at most half the heap per quote of the previous layout")
+    void testFootprintHalved() {
+        long legacy = GraphLayout.parseInstance(legacy()).totalSize();
+        long compact = GraphLayout.parseInstance(compact(new ValueDictionary())).totalSize();
+
+        assertThat(compact)
+                .as("bytes per quote: legacy %d, compact %d", legacy / QUOTES, compact / QUOTES)
+                .isLessThanOrEqualTo(legacy / 2);
+    }
+
+    @Test
+    @DisplayName("Should share repeated values between quotes in the same dictionary")
+    void testValuesShared() {
+        ValueDictionary values = new ValueDictionary();
+        Quote a = new Quote("A", "a");
+        Quote b = new Quote("B", "b");
+        a.setCategory(copy("Shared category"));
+        b.setCategory(copy("Shared category"));
+        a.addTag(copy("shared-tag"));
+        b.setTags(Set.of(copy("shared-tag")));
+        assertThat(a.getCategory()).isNotSameAs(b.getCategory());
+
+        values.acquire(a);
+        values.acquire(b);
+
+        assertThat(a.getCategory()).isSameAs(b.getCategory());
+        assertThat(a.getTags().iterator().next()).isSameAs(b.getTags().iterator().next());
+        assertThat(values.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should drop a value once the last quote holding it is released")
+    void testValuesReleased() {
+        ValueDictionary values = new ValueDictionary();
+        Quote a = new Quote("A", "a");
+        a.setCategory("Stoic");
+        a.setAuthor("Seneca");
+        Quote b = new Quote("B", "b");
+        b.setCategory("Stoic");
+        b.addTag("virtue");
+        LocalDateTime updated = a.getUpdatedAt();
+        values.acquire(a);
+        values.acquire(b);
+        assertThat(values.size()).isEqualTo(3);
+        assertThat(a.getUpdatedAt()).isEqualTo(updated);
+
+        values.release(a);
+        assertThat(values.size()).isEqualTo(2);
+        values.release(b);
+        assertThat(values.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should keep tags sorted and distinct and timestamps exact")
+    void testViewSemantics() {
+        Quote q = new Quote("T", "d");
+        q.addTag("Zen");
+        q.addTag("art");
+        q.addTag("zen ");
+        q.removeTag("missing");
+        assertThat(q.getTags()).containsExactlyInAnyOrder("art", "zen");
+        assertThat(q.hasTag("ART")).isTrue();
+        q.removeTag("art");
+        assertThat(q.getTags()).containsExactly("zen");
+
+        LocalDateTime created = LocalDateTime.of(1999, 12, 31, 23, 59, 59, 123_456_789);
+        LocalDateTime updated = LocalDateTime.of(2024, 2, 29, 0, 0, 0, 1);
+        q.restoreTimestamps(created, updated);
+        assertThat(q.getCreatedAt()).isEqualTo(created);
+        assertThat(q.getUpdatedAt()).isEqualTo(updated);
+
+        q.setId(null);
+        assertThat(q.getId()).isNull();
+        // the reserved value would read back as null
+        assertThatThrownBy(() -> q.setId(Long.MIN_VALUE)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(q.getId()).isNull();
+        q.setId(Long.MIN_VALUE + 1);
+        assertThat(q.getId()).isEqualTo(Long.MIN_VALUE + 1);
+    }
+}
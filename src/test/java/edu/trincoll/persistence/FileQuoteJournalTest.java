@@ -0,0 +1,180 @@
+package edu.trincoll.persistence;
+
+import edu.trincoll.model.Quote;
+import edu.trincoll.repository.InMemoryQuoteRepository;
+import edu.trincoll.repository.QuoteRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for the write-ahead log and snapshot recovery
+ */
+class FileQuoteJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private FileQuoteJournal open(long snapshotEvery) {
+        return new FileQuoteJournal(directory, FileQuoteJournal.SyncMode.COMMIT, Duration.ofMillis(10), snapshotEvery);
+    }
+
+    private List<String> files(String prefix) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.map(p -> p.getFileName().toString()).filter(n -> n.startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    @Test
+    @DisplayName("Should recover saves, updates and deletes after a restart")
+    void testRecoverFromLog() {
+        Long keptId;
+        Long deletedId;
+        try (FileQuoteJournal journal = open(1_000)) {
+            QuoteRepository repository = new InMemoryQuoteRepository(journal);
+            Quote kept = new Quote("Kept", "Survives a restart");
+            kept.setCategory("Wisdom");
+            kept.setTags(Set.of("life", "time"));
+            keptId = repository.save(kept).getId();
+            deletedId = repository.save(new Quote("Deleted", "Gone")).getId();
+
+            kept.setStatus(Quote.Status.INACTIVE);
+            repository.save(kept);
+            repository.deleteById(deletedId);
+        }
+
+        try (FileQuoteJournal journal = open(1_000)) {
+            QuoteRepository repository = new InMemoryQuoteRepository(journal);
+
+            assertThat(repository.count()).isEqualTo(1);
+            assertThat(repository.existsById(deletedId)).isFalse();
+            Quote recovered = repository.findById(keptId).orElseThrow();
+            assertThat(recovered.getTitle()).isEqualTo("Kept");
+            assertThat(recovered.getStatus()).isEqualTo(Quote.Status.INACTIVE);
+            assertThat(recovered.getTags()).containsExactlyInAnyOrder("life", "time");
+            assertThat(repository.findByCategory("wisdom")).extracting(Quote::getId).containsExactly(keptId);
+
+            // ids keep counting from where the last run stopped
+            assertThat(repository.save(new Quote("New", "After restart")).getId()).isEqualTo(deletedId + 1);
+        }
+    }
+
+    @Test
+    @DisplayName("Should reset the id generator when deleteAll is replayed")
+    void testRecoverDeleteAll() {
+        try (FileQuoteJournal journal = open(1_000)) {
+            QuoteRepository repository = new InMemoryQuoteRepository(journal);
+            repository.save(new Quote("One", "1"));
+            repository.save(new Quote("Two", "2"));
+            repository.deleteAll();
+        }
+
+        try (FileQuoteJournal journal = open(1_000)) {
+            QuoteRepository repository = new InMemoryQuoteRepository(journal);
+            assertThat(repository.count()).isZero();
+            assertThat(repository.save(new Quote("Fresh", "start")).getId()).isEqualTo(1L);
+        }
+    }
+
+    @Test
+    @DisplayName("Should snapshot and drop the log before the snapshot")
+    void testSnapshotTruncatesLog() throws IOException {
+        try (FileQuoteJournal journal = open(10)) {
+            QuoteRepository repository = new InMemoryQuoteRepository(journal);
+            for (int i = 0; i < 25; i++) {
+                repository.save(new Quote("Quote " + i, "Description " + i));
+            }
+        }
+
+        assertThat(files("snapshot-")).isNotEmpty().allMatch(n -> n.endsWith(".bin"));
+        assertThat(files("wal-")).hasSizeLessThanOrEqualTo(2);
+
+        try (FileQuoteJournal journal = open(10)) {
+            QuoteRepository repository = new InMemoryQuoteRepository(journal);
+            assertThat(repository.count()).isEqualTo(25);
+            assertThat(repository.findByTitleContaining("Quote 24")).hasSize(1);
+            assertThat(repository.save(new Quote("Next", "one")).getId()).isEqualTo(26L);
+        }
+    }
+
+    @Test
+    @DisplayName("Should ignore a torn record at the end of the log")
+    void testTornTail() throws IOException {
+        try (FileQuoteJournal journal = open(1_000)) {
+            QuoteRepository repository = new InMemoryQuoteRepository(journal);
+            repository.save(new Quote("First", "intact"));
+            repository.save(new Quote("Second", "torn"));
+        }
+
+        Path segment = directory.resolve(files("wal-").getLast());
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (FileQuoteJournal journal = open(1_000)) {
+            QuoteRepository repository = new InMemoryQuoteRepository(journal);
+            assertThat(repository.findAll()).extracting(Quote::getTitle).containsExactly("First");
+        }
+    }
+
+    @Test
+    @DisplayName("Should skip a damaged snapshot and recover from the one before it and the log")
+    void testDamagedSnapshot() throws IOException {
+        try (FileQuoteJournal journal = open(10)) {
+            QuoteRepository repository = new InMemoryQuoteRepository(journal);
+            for (int i = 0; i < 25; i++) {
+                repository.save(new Quote("Quote " + i, "Description " + i));
+            }
+        }
+
+        Path snapshot = directory.resolve(files("snapshot-").getLast());
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, channel.size() - 1);
+            b.put(0, (byte) (b.get(0) ^ 1)).rewind();
+            channel.write(b, channel.size() - 1);
+        }
+
+        try (FileQuoteJournal journal = open(10)) {
+            QuoteRepository repository = new InMemoryQuoteRepository(journal);
+            assertThat(repository.count()).isEqualTo(25);
+            assertThat(repository.findByTitleContaining("Quote 24")).hasSize(1);
+            assertThat(repository.save(new Quote("Next", "one")).getId()).isEqualTo(26L);
+        }
+    }
+
+    @Test
+    @DisplayName("Should leave no temporary files behind a failed or unfinished snapshot")
+    void testSnapshotTempFilesRemoved() throws IOException {
+        Path target;
+        try (FileQuoteJournal journal = open(1_000)) {
+            // a directory where the first snapshot goes makes moving it into place fail
+            target = Files.createDirectory(directory.resolve("snapshot-00000000000000000002.bin"));
+            Quote quote = new Quote("Quote", "Description");
+            quote.setId(1L);
+            journal.snapshot(2, List.of(quote));
+        }
+        Files.delete(target);
+        assertThat(files("snapshot-")).isEmpty();
+
+        Files.createFile(directory.resolve("snapshot-00000000000000000007.bin.tmp"));
+        Files.createFile(directory.resolve("snapshot-00000000000000000007.bin.tmp.records"));
+        try (FileQuoteJournal journal = open(1_000)) {
+            new InMemoryQuoteRepository(journal);
+        }
+        assertThat(files("snapshot-")).isEmpty();
+    }
+}
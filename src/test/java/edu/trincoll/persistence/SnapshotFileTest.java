@@ -0,0 +1,136 @@
+package edu.trincoll.persistence;
+
+import edu.trincoll.model.Quote;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Tests for the mapped snapshot format
+ */
+class SnapshotFileTest {
+
+    @TempDir
+    Path directory;
+
+    private static Quote quote(long id, String title, String category) {
+        Quote quote = new Quote(title, "Description of " + title);
+        quote.setId(id);
+        quote.setCategory(category);
+        quote.setAuthor("Author " + id % 3);
+        quote.setTags(Set.of("shared", "tag" + id % 2));
+        return quote;
+    }
+
+    @Test
+    @DisplayName("Should round-trip every field, including nulls and timestamps")
+    void testRoundTrip() throws IOException {
+        Quote full = quote(7, "Ünïcödé title ✓", "Wisdom");
+        full.setSource("A book");
+        full.setPublisher("A press");
+        full.setStatus(Quote.Status.ARCHIVED);
+        full.restoreTimestamps(LocalDateTime.of(2020, 1, 2, 3, 4, 5, 6), LocalDateTime.of(2021, 6, 7, 8, 9, 10, 11));
+        Quote sparse = new Quote();
+        sparse.setId(8L);
+        sparse.setStatus(null);
+
+        Path file = directory.resolve("snapshot.bin");
+        SnapshotFile.write(file, 9, List.of(full, sparse));
+        SnapshotFile.Contents contents = SnapshotFile.read(file);
+
+        assertThat(contents).isNotNull();
+        assertThat(contents.nextId()).isEqualTo(9);
+        assertThat(contents.quotes()).hasSize(2);
+        Quote a = contents.quotes().get(0);
+        assertThat(a).usingRecursiveComparison().isEqualTo(full);
+        Quote b = contents.quotes().get(1);
+        assertThat(b.getTitle()).isNull();
+        assertThat(b.getCategory()).isNull();
+        assertThat(b.getStatus()).isNull();
+        assertThat(b.getTags()).isEmpty();
+        assertThat(b.getCreatedAt()).isEqualTo(sparse.getCreatedAt());
+    }
+
+    @Test
+    @DisplayName("Should share repeated values and keep strings inside mapped chunks")
+    void testSharedStringsAcrossChunks() throws IOException {
+        List<Quote> quotes = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            quotes.add(quote(id, "Title " + id, "Category " + id % 5));
+        }
+
+        // a tiny chunk size forces many chunk boundaries in the string data
+        Path file = directory.resolve("snapshot.bin");
+        SnapshotFile.write(file, 201, quotes, 64);
+        List<Quote> loaded = SnapshotFile.read(file).quotes();
+
+        assertThat(loaded).extracting(Quote::getTitle)
+                .containsExactlyElementsOf(quotes.stream().map(Quote::getTitle).toList());
+        assertThat(loaded.get(10).getTags()).containsExactlyInAnyOrder("shared", "tag1");
+        // repeated values come back as one shared instance
+        assertThat(loaded.get(0).getCategory()).isSameAs(loaded.get(5).getCategory());
+    }
+
+    @Test
+    @DisplayName("Should reject a file whose header does not match its size")
+    void testTruncatedFile() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        SnapshotFile.write(file, 3, List.of(quote(1, "One", "A"), quote(2, "Two", "B")));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        assertThat(SnapshotFile.read(file)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should reject a file with a damaged body byte")
+    void testDamagedBody() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        SnapshotFile.write(file, 3, List.of(quote(1, "One", "A"), quote(2, "Two", "B")));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, channel.size() - 2);
+            b.put(0, (byte) (b.get(0) ^ 1)).rewind();
+            channel.write(b, channel.size() - 2);
+        }
+
+        assertThat(SnapshotFile.read(file)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should reject a record pointing outside the string table even when the checksums match")
+    void testUndecodableRecord() throws IOException {
+        Path file = directory.resolve("snapshot.bin");
+        SnapshotFile.write(file, 3, List.of(quote(1, "One", "A")));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // the title ref of the first record, then both checksums recomputed
+            channel.write(ByteBuffer.allocate(4).putInt(0, 1_000), SnapshotFile.HEADER_BYTES + 12);
+            ByteBuffer body = ByteBuffer.allocate((int) channel.size() - SnapshotFile.HEADER_BYTES);
+            channel.read(body, SnapshotFile.HEADER_BYTES);
+            CRC32 crc = new CRC32();
+            crc.update(body.flip());
+            channel.write(ByteBuffer.allocate(4).putInt(0, (int) crc.getValue()), 52);
+            ByteBuffer header = ByteBuffer.allocate(56);
+            channel.read(header, 0);
+            crc.reset();
+            crc.update(header.flip());
+            channel.write(ByteBuffer.allocate(4).putInt(0, (int) crc.getValue()), 56);
+        }
+
+        assertThat(SnapshotFile.read(file)).isNull();
+    }
+}
@@ -0,0 +1,68 @@
+package edu.trincoll.repository;
+
+import edu.trincoll.model.Quote;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeFeedTest {
+
+    private static Quote quote(long id) {
+        Quote quote = new Quote("Quote " + id, "Desc");
+        quote.setId(id);
+        return quote;
+    }
+
+    @Test
+    @DisplayName("Should hand out changes after a position, oldest first")
+    void testReadsFromPosition() {
+        ChangeFeed feed = new ChangeFeed(8);
+        feed.saved(quote(1));
+        feed.saved(quote(2));
+        feed.deleted(1);
+
+        ChangeFeed.Batch all = feed.read(0, 10);
+        assertThat(all.resyncRequired()).isFalse();
+        assertThat(all.changes()).extracting(QuoteChange::sequence).containsExactly(1L, 2L, 3L);
+        assertThat(all.changes()).extracting(QuoteChange::type)
+                .containsExactly(QuoteChange.Type.SAVED, QuoteChange.Type.SAVED, QuoteChange.Type.DELETED);
+
+        assertThat(feed.read(1, 1).changes()).extracting(QuoteChange::id).containsExactly(2L);
+        assertThat(feed.read(3, 10).changes()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should ask a reader to resync once its changes are overwritten")
+    void testResyncWhenOverwritten() {
+        ChangeFeed feed = new ChangeFeed(4);
+        for (long id = 1; id <= 6; id++) {
+            feed.saved(quote(id));
+        }
+
+        assertThat(feed.read(1, 10).resyncRequired()).isTrue();
+        assertThat(feed.read(2, 10).changes()).extracting(QuoteChange::sequence).containsExactly(3L, 4L, 5L, 6L);
+        // a position the feed never reached, e.g. from before a restart
+        assertThat(feed.read(7, 10).resyncRequired()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should wake a waiting reader when a change arrives")
+    void testAwaitWakesOnChange() throws Exception {
+        ChangeFeed feed = new ChangeFeed(4);
+        CompletableFuture<ChangeFeed.Batch> next = CompletableFuture.supplyAsync(() -> {
+            try {
+                return feed.await(0, 10, 10_000);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        feed.cleared();
+
+        assertThat(next.get().changes()).extracting(QuoteChange::type).containsExactly(QuoteChange.Type.CLEARED);
+        assertThat(feed.await(1, 10, 10).changes()).isEmpty();
+    }
+}
@@ -0,0 +1,118 @@
+package edu.trincoll.repository;
+
+import edu.trincoll.model.Quote;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ColumnarQuoteRepositoryTest extends QuoteRepositoryTest {
+
+    @Override
+    protected QuoteRepository createRepository() {
+        return new ColumnarQuoteRepository();
+    }
+
+    @Test
+    @DisplayName("Should keep id order and counts through out-of-order ids and compaction")
+    void testCompactionKeepsOrder() {
+        QuoteRepository repository = createRepository();
+        Quote late = new Quote("Late", "saved first with a high id");
+        late.setId(5_000L);
+        repository.save(late);
+
+        List<Quote> quotes = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            Quote q = new Quote("Quote " + i, "d");
+            q.setCategory(i % 2 == 0 ? "Even" : "Odd");
+            quotes.add(q);
+        }
+        repository.saveAll(quotes);
+        // deleting over half of the slots triggers a compaction of the columns
+        for (int i = 0; i < 3_000; i++) {
+            if (i % 2 == 0 || i < 200) repository.deleteById(quotes.get(i).getId());
+        }
+
+        assertThat(repository.count()).isEqualTo(1 + 1_400);
+        assertThat(repository.findByCategory("even")).isEmpty();
+        assertThat(repository.findByCategory("odd")).hasSize(1_400)
+                .extracting(Quote::getId).isSorted();
+        assertThat(repository.findAll()).extracting(Quote::getId).isSorted().endsWith(5_000L);
+        assertThat(repository.countByStatus()).containsEntry(Quote.Status.ACTIVE, 1_401L);
+        assertThat(repository.findAll(4_999L, 10).items())
+                .usingRecursiveFieldByFieldElementComparator().containsExactly(late);
+    }
+
+    @Test
+    @DisplayName("Should release the dictionary codes no live quote holds and reuse them for new values")
+    void testDictionaryReleasesCodes() {
+        ColumnarQuoteRepository repository = new ColumnarQuoteRepository();
+        Quote kept = new Quote("Kept", "d");
+        kept.setCategory("Kept");
+        kept.setAuthor("Author");
+        repository.save(kept);
+        // author, one category, and the blank source and publisher
+        int baseline = repository.dictionarySize();
+
+        Quote churned = new Quote("Churned", "d");
+        churned.setAuthor("Author");
+        repository.save(churned);
+        for (int i = 0; i < 100; i++) {
+            final int n = i;
+            repository.update(churned.getId(), null, q -> {
+                q.setCategory("Category " + n);
+                q.setTags(Set.of("tag" + n, "TAG" + n, "shared"));
+                return q;
+            });
+        }
+        // the churned quote holds one category and two tags at a time
+        assertThat(repository.dictionarySize()).isEqualTo(baseline + 3);
+        assertThat(repository.findDistinctCategories()).containsExactly("category 99", "kept");
+        assertThat(repository.findDistinctTags()).containsExactly("shared", "tag99");
+        assertThat(repository.findByCategory("category 98")).isEmpty();
+        assertThat(repository.findByTag("tag98")).isEmpty();
+
+        repository.deleteById(churned.getId());
+        assertThat(repository.dictionarySize()).isEqualTo(baseline);
+
+        // freed codes go to new values, which must not match the deleted slot
+        Quote fresh = new Quote("Fresh", "d");
+        fresh.setCategory("Fresh");
+        fresh.setTags(Set.of("new"));
+        repository.save(fresh);
+        assertThat(repository.findByCategory("fresh")).extracting(Quote::getTitle).containsExactly("Fresh");
+        assertThat(repository.findByTag("new")).extracting(Quote::getTitle).containsExactly("Fresh");
+        assertThat(repository.findByCategory("category 99")).isEmpty();
+        assertThat(repository.groupByCategory()).containsOnlyKeys("Fresh", "Kept");
+        assertThat(repository.findMostPopularTags(10)).containsExactly("new");
+        assertThat(repository.findByAuthor("author")).extracting(Quote::getTitle).containsExactly("Kept");
+    }
+
+    @Test
+    @DisplayName("Should read a text query's candidates from the full-text index and others by scanning")
+    void testQueryPlan() {
+        QuoteRepository repository = createRepository();
+        List<Quote> quotes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Quote quote = new Quote("Quote " + i, i % 10 == 0 ? "about time" : "about life");
+            quote.setCategory(i % 2 == 0 ? "Even" : "Odd");
+            quotes.add(quote);
+        }
+        repository.saveAll(quotes);
+
+        QueryPlan plan = repository.query(new QuoteQuery(null, "even", null, null, "time", null, 100)).plan();
+        assertThat(plan.access()).isEqualTo("text");
+        assertThat(plan.examined()).isEqualTo(10);
+        assertThat(plan.matched()).isEqualTo(10);
+
+        plan = repository.query(new QuoteQuery(null, "odd", null, null, null, null, 5)).plan();
+        assertThat(plan.access()).isEqualTo("scan");
+        assertThat(plan.examined()).isEqualTo(10);
+        assertThat(plan.stoppedEarly()).isTrue();
+    }
+}
+
@@ -0,0 +1,214 @@
+package edu.trincoll.repository;
+
+import edu.trincoll.model.Quote;
+import edu.trincoll.persistence.QuoteJournal;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryQuoteRepositoryTest extends QuoteRepositoryTest {
+
+    @Override
+    protected QuoteRepository createRepository() {
+        return new InMemoryQuoteRepository();
+    }
+
+    @Test
+    @DisplayName("Should keep snapshots stable while another thread rewrites every quote")
+    void testSnapshotUnderConcurrentWrites() throws Exception {
+        InMemoryQuoteRepository repository = new InMemoryQuoteRepository();
+        List<Quote> quotes = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Quote quote = new Quote("Quote " + i, "Desc");
+            quote.setCategory(i % 2 == 0 ? "even" : "odd");
+            quotes.add(quote);
+        }
+        repository.saveAll(quotes);
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            Quote.Status[] statuses = Quote.Status.values();
+            for (int round = 0; running.get(); round++) {
+                for (Quote quote : quotes) {
+                    quote.setStatus(statuses[round % statuses.length]);
+                    repository.save(quote);
+                }
+            }
+        });
+        writer.start();
+        try {
+            for (int i = 0; i < 50; i++) {
+                try (QuoteSnapshot snapshot = repository.snapshot()) {
+                    Map<Quote.Status, Long> counts = snapshot.countByStatus();
+                    List<Quote> all = snapshot.findAll();
+                    assertThat(all).hasSize(200);
+                    for (Quote.Status status : Quote.Status.values()) {
+                        assertThat(all.stream().filter(q -> q.getStatus() == status).count())
+                                .isEqualTo(counts.get(status));
+                        assertThat(snapshot.findByStatus(status)).hasSize(counts.get(status).intValue());
+                    }
+                    assertThat(snapshot.findAll()).usingRecursiveComparison().isEqualTo(all);
+                }
+            }
+        } finally {
+            running.set(false);
+            writer.join();
+        }
+    }
+
+    @Test
+    @DisplayName("Should apply no write whose journal record could not be appended")
+    void testWriteAheadJournal() {
+        FailingJournal journal = new FailingJournal();
+        InMemoryQuoteRepository repository = new InMemoryQuoteRepository(journal);
+        Quote kept = repository.save(new Quote("Kept", "Desc"));
+        long version = repository.version();
+        journal.failing = true;
+
+        Quote lost = new Quote("Lost", "Desc");
+        assertThatThrownBy(() -> repository.save(lost)).isInstanceOf(UncheckedIOException.class);
+        assertThat(lost.getId()).isNull();
+        Quote changed = repository.findById(kept.getId()).orElseThrow();
+        changed.setTitle("Changed");
+        assertThatThrownBy(() -> repository.save(changed)).isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> repository.update(kept.getId(), null, q -> q)).isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> repository.saveAll(List.of(new Quote("Lost", "Desc"))))
+                .isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> repository.updateStatusWhere(Quote.Status.ACTIVE, Quote.Status.ARCHIVED, q -> true))
+                .isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(() -> repository.deleteById(kept.getId())).isInstanceOf(UncheckedIOException.class);
+        assertThatThrownBy(repository::deleteAll).isInstanceOf(UncheckedIOException.class);
+
+        assertThat(repository.version()).isEqualTo(version);
+        assertThat(repository.findAll()).extracting(Quote::getTitle).containsExactly("Kept");
+        assertThat(repository.findByStatus(Quote.Status.ACTIVE)).hasSize(1);
+        assertThat(repository.findByText("lost")).isEmpty();
+        assertThat(repository.changeFeed().latest()).isEqualTo(1);
+
+        journal.failing = false;
+        assertThat(repository.save(new Quote("Next", "Desc")).getId()).isEqualTo(kept.getId() + 1);
+    }
+
+    @Test
+    @DisplayName("Should give back the ids a batch did not use when an append fails")
+    void testBatchIdRangeGivenBack() {
+        FailingJournal journal = new FailingJournal();
+        InMemoryQuoteRepository repository = new InMemoryQuoteRepository(journal);
+        journal.accepted = 2;
+
+        List<Quote> batch = List.of(new Quote("First", "Desc"), new Quote("Second", "Desc"),
+                new Quote("Third", "Desc"), new Quote("Fourth", "Desc"));
+        assertThatThrownBy(() -> repository.saveAll(batch)).isInstanceOf(UncheckedIOException.class);
+        assertThat(batch).extracting(Quote::getId).containsExactly(1L, 2L, null, null);
+        assertThat(journal.nextIds).containsExactly(5L, 5L);
+        assertThat(repository.findAll()).extracting(Quote::getTitle).containsExactly("First", "Second");
+
+        journal.failing = false;
+        journal.accepted = Integer.MAX_VALUE;
+        assertThat(repository.save(new Quote("Next", "Desc")).getId()).isEqualTo(3L);
+    }
+
+    /**
+     * Accepts records until told to fail or until it has accepted its quota,
+     * then refuses every append
+     */
+    private static final class FailingJournal implements QuoteJournal {
+        volatile boolean failing;
+        volatile int accepted = Integer.MAX_VALUE;
+        final List<Long> nextIds = new ArrayList<>();
+
+        private long append() {
+            if (failing || accepted-- <= 0) {
+                failing = true;
+                throw new UncheckedIOException("Journal write failed", new IOException("disk full"));
+            }
+            return 0;
+        }
+
+        @Override
+        public long logSave(Quote quote, long nextId) {
+            long sequence = append();
+            nextIds.add(nextId);
+            return sequence;
+        }
+
+        @Override
+        public long logDelete(long id) {
+            return append();
+        }
+
+        @Override
+        public long logDeleteAll() {
+            return append();
+        }
+
+        @Override
+        public void sync(long sequence) {
+        }
+
+        @Override
+        public boolean snapshotDue() {
+            return false;
+        }
+
+        @Override
+        public void snapshot(long nextId, Collection<Quote> quotes) {
+        }
+
+        @Override
+        public long recover(Replay replay) {
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Test
+    @DisplayName("Should read a query's candidates from its most selective index")
+    void testQueryPlanPicksSmallestPostings() {
+        InMemoryQuoteRepository repository = new InMemoryQuoteRepository();
+        List<Quote> quotes = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Quote quote = new Quote("Quote " + i, i % 2 == 0 ? "about time" : "about life");
+            quote.setCategory(i % 10 == 0 ? "Stoic" : "Zen");
+            quote.setAuthor(i % 25 == 0 ? "Seneca" : "Unknown");
+            quotes.add(quote);
+        }
+        repository.saveAll(quotes);
+
+        QueryPlan plan = repository.query(new QuoteQuery(Quote.Status.ACTIVE, "stoic", null, null, "time",
+                QuoteQuery.Sort.ID, 100)).plan();
+        assertThat(plan.access()).isEqualTo("category");
+        assertThat(plan.estimates()).containsEntry("status", 100L).containsEntry("category", 10L)
+                .containsEntry("text", 50L).containsEntry("scan", 100L);
+        assertThat(plan.examined()).isEqualTo(10);
+        assertThat(plan.matched()).isEqualTo(10);
+
+        plan = repository.query(new QuoteQuery(null, "stoic", null, "seneca", null, QuoteQuery.Sort.ID, 1)).plan();
+        assertThat(plan.access()).isEqualTo("author");
+        assertThat(plan.examined()).isEqualTo(1);
+        assertThat(plan.stoppedEarly()).isTrue();
+
+        assertThat(repository.query(new QuoteQuery(Quote.Status.ACTIVE, null, null, null, null, null, 5))
+                .plan().access()).isEqualTo("status");
+
+        // text is estimated by its rarest token, then checked against each quote
+        plan = repository.query(new QuoteQuery(null, null, null, null, "about time", QuoteQuery.Sort.ID, 100)).plan();
+        assertThat(plan.access()).isEqualTo("text");
+        assertThat(plan.estimates()).containsEntry("text", 50L);
+        assertThat(plan.matched()).isEqualTo(50);
+    }
+}
+
@@ -5,22 +5,28 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.*;
 
 /**
  * Tests for the repository layer.
  * These tests should pass when the repository is properly implemented.
+ * Every implementation runs them through a subclass.
  */
-class QuoteRepositoryTest {
+abstract class QuoteRepositoryTest {
     
     private QuoteRepository repository;
+
+    protected abstract QuoteRepository createRepository();
     
     @BeforeEach
     void setUp() {
-        repository = new InMemoryQuoteRepository();
+        repository = createRepository();
         repository.deleteAll();
     }
     
@@ -212,4 +218,535 @@ class QuoteRepositoryTest {
         assertThat(programmingQuotes).extracting(Quote::getTitle)
                 .containsExactlyInAnyOrder("Java Programming", "Python Programming");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should match category ignoring case and surrounding whitespace")
+    void testFindByCategoryNormalized() {
+        Quote quote = new Quote("Item 1", "Desc");
+        quote.setCategory("  Work ");
+        repository.save(quote);
+
+        assertThat(repository.findByCategory("work")).hasSize(1);
+        assertThat(repository.findByCategory(" WORK")).hasSize(1);
+        assertThat(repository.findByCategory("Personal")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should reindex a quote whose category and author change on re-save")
+    void testReindexOnResave() {
+        Quote quote = new Quote("Item 1", "Desc");
+        quote.setCategory("Work");
+        quote.setAuthor("Seneca");
+        repository.save(quote);
+
+        quote.setCategory("Personal");
+        quote.setAuthor("Epictetus");
+        repository.save(quote);
+
+        assertThat(repository.findByCategory("Work")).isEmpty();
+        assertThat(repository.findByAuthor("Seneca")).isEmpty();
+        assertThat(repository.findByCategory("Personal"))
+                .usingRecursiveFieldByFieldElementComparator().containsExactly(quote);
+        assertThat(repository.findByAuthor("epictetus"))
+                .usingRecursiveFieldByFieldElementComparator().containsExactly(quote);
+    }
+
+    @Test
+    @DisplayName("Should drop deleted quotes from source and publisher lookups")
+    void testIndexesAfterDelete() {
+        Quote quote = new Quote("Item 1", "Desc");
+        quote.setSource("Letters");
+        quote.setPublisher("Penguin");
+        Quote saved = repository.save(quote);
+
+        assertThat(repository.findBySource("letters")).hasSize(1);
+        assertThat(repository.findByPublisher("PENGUIN")).hasSize(1);
+
+        repository.deleteById(saved.getId());
+
+        assertThat(repository.findBySource("Letters")).isEmpty();
+        assertThat(repository.findByPublisher("Penguin")).isEmpty();
+        assertThat(repository.findByAuthor("   ")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should group quotes by category and list distinct tags")
+    void testGroupByCategoryAndDistinctTags() {
+        Quote quote1 = new Quote("Item 1", "Desc");
+        quote1.setCategory(" Stoic ");
+        quote1.addTag("virtue");
+        Quote quote2 = new Quote("Item 2", "Desc");
+        quote2.setCategory("stoic");
+        quote2.setTags(Set.of(" Courage"));
+        Quote quote3 = new Quote("Item 3", "Desc");
+        quote3.addTag("virtue");
+        Quote quote4 = new Quote("Item 4", "Desc");
+        quote4.setCategory("Stoic");
+        quote4.addTag("love");
+        repository.saveAll(List.of(quote1, quote2, quote3, quote4));
+
+        assertThat(repository.groupByCategory()).containsOnlyKeys("", "Stoic", "stoic");
+        assertThat(repository.groupByCategory().get("Stoic")).extracting(Quote::getTitle)
+                .containsExactly("Item 1", "Item 4");
+        assertThat(repository.findDistinctTags()).containsExactly("courage", "love", "virtue");
+
+        repository.deleteById(quote4.getId());
+
+        assertThat(repository.groupByCategory().get("Stoic")).extracting(Quote::getTitle).containsExactly("Item 1");
+        assertThat(repository.findDistinctTags()).containsExactly("courage", "virtue");
+    }
+
+    @Test
+    @DisplayName("Should intersect and union tag postings")
+    void testFindByAllAndAnyTags() {
+        Quote quote1 = new Quote("Item 1", "Desc");
+        quote1.addTag("stoic");
+        quote1.addTag("virtue");
+
+        Quote quote2 = new Quote("Item 2", "Desc");
+        quote2.addTag("stoic");
+
+        Quote quote3 = new Quote("Item 3", "Desc");
+        quote3.addTag("love");
+
+        repository.saveAll(List.of(quote1, quote2, quote3));
+
+        assertThat(repository.findByAllTags(List.of("Stoic", " virtue ")))
+                .extracting(Quote::getTitle).containsExactly("Item 1");
+        assertThat(repository.findByAllTags(List.of("stoic", "unknown"))).isEmpty();
+        assertThat(repository.findByAnyTag(List.of("virtue", "love")))
+                .extracting(Quote::getTitle).containsExactlyInAnyOrder("Item 1", "Item 3");
+
+        quote1.removeTag("stoic");
+        repository.save(quote1);
+
+        assertThat(repository.findByTag("stoic"))
+                .extracting(Quote::getTitle).containsExactly("Item 2");
+    }
+
+    @Test
+    @DisplayName("Should keep status partitions and counts in step with saves and deletes")
+    void testCountByStatus() {
+        Quote quote1 = repository.save(new Quote("Item 1", "Desc"));
+        Quote quote2 = repository.save(new Quote("Item 2", "Desc"));
+
+        quote2.setStatus(Quote.Status.INACTIVE);
+        repository.save(quote2);
+
+        assertThat(repository.countByStatus())
+                .containsEntry(Quote.Status.ACTIVE, 1L)
+                .containsEntry(Quote.Status.INACTIVE, 1L)
+                .containsEntry(Quote.Status.ARCHIVED, 0L);
+        assertThat(repository.findByStatus(Quote.Status.INACTIVE))
+                .usingRecursiveFieldByFieldElementComparator().containsExactly(quote2);
+
+        repository.deleteById(quote1.getId());
+
+        assertThat(repository.countByStatus()).containsEntry(Quote.Status.ACTIVE, 0L);
+        assertThat(repository.findByStatus(Quote.Status.ACTIVE)).isEmpty();
+
+        repository.deleteAll();
+
+        assertThat(repository.countByStatus().values()).containsOnly(0L);
+    }
+
+    @Test
+    @DisplayName("Should keep the full-text index current as quotes change")
+    void testFindByText() {
+        Quote quote = new Quote("Meditations", "Written by a Roman emperor");
+        quote.setAuthor("Marcus Aurelius");
+        repository.save(quote);
+
+        assertThat(repository.findByText("roman AURELIUS"))
+                .usingRecursiveFieldByFieldElementComparator().containsExactly(quote);
+        assertThat(repository.findByText("roman seneca")).isEmpty();
+
+        quote.setDescription("Notes to himself");
+        repository.save(quote);
+
+        assertThat(repository.findByText("roman")).isEmpty();
+        assertThat(repository.findByText("himself"))
+                .usingRecursiveFieldByFieldElementComparator().containsExactly(quote);
+
+        repository.deleteById(quote.getId());
+
+        assertThat(repository.findByText("meditations")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should find title substrings through trigrams and fall back for short terms")
+    void testFindByTitleContainingTrigrams() {
+        repository.save(new Quote("Java Programming", "Book"));
+        Quote guide = repository.save(new Quote("JavaScript Guide", "Book"));
+        repository.save(new Quote("Data Structures", "Course"));
+        repository.save(new Quote("abc bcd", "Letters"));
+
+        assertThat(repository.findByTitleContaining("ASCRIPT"))
+                .usingRecursiveFieldByFieldElementComparator().containsExactly(guide);
+        // both trigrams of "abcd" occur in "abc bcd", but never as one run
+        assertThat(repository.findByTitleContaining("abcd")).isEmpty();
+        assertThat(repository.findByTitleContaining("ta")).extracting(Quote::getTitle)
+                .containsExactly("Data Structures");
+        assertThat(repository.findByTitleContaining("Da")).hasSize(1);
+
+        guide.setTitle("TypeScript Guide");
+        repository.save(guide);
+
+        assertThat(repository.findByTitleContaining("javascript")).isEmpty();
+        assertThat(repository.findByTitleContaining("typescript"))
+                .usingRecursiveFieldByFieldElementComparator().containsExactly(guide);
+    }
+
+    @Test
+    @DisplayName("Should page through items in id order with a keyset cursor")
+    void testFindAllPaged() {
+        for (int i = 1; i <= 5; i++) {
+            Quote quote = new Quote("Item " + i, "Desc");
+            quote.setCategory(i % 2 == 0 ? "Even" : "Odd");
+            repository.save(quote);
+        }
+
+        CursorPage<Quote, Long> first = repository.findAll(null, 2);
+        assertThat(first.items()).extracting(Quote::getTitle).containsExactly("Item 1", "Item 2");
+        assertThat(first.nextCursor()).isEqualTo(2L);
+
+        CursorPage<Quote, Long> last = repository.findAll(4L, 2);
+        assertThat(last.items()).extracting(Quote::getTitle).containsExactly("Item 5");
+        assertThat(last.nextCursor()).isNull();
+
+        CursorPage<Quote, Long> odd = repository.findByCategory("odd", 1L, 1);
+        assertThat(odd.items()).extracting(Quote::getTitle).containsExactly("Item 3");
+        assertThat(odd.nextCursor()).isEqualTo(3L);
+
+        CursorPage<Quote, Long> active = repository.findByStatus(Quote.Status.ACTIVE, 3L, 10);
+        assertThat(active.items()).hasSize(2);
+        assertThat(active.nextCursor()).isNull();
+
+        CursorPage<Quote, Long> text = repository.findByText("item", 4L, 10);
+        assertThat(text.items()).extracting(Quote::getTitle).containsExactly("Item 5");
+    }
+
+    @Test
+    @DisplayName("Should keep its own copy of saved quotes and hand out copies")
+    void testStoresCopies() {
+        Quote quote = new Quote("Original", "Desc");
+        quote.setCategory("Stoic");
+        repository.save(quote);
+
+        quote.setTitle("Changed after save");
+        Quote found = repository.findById(quote.getId()).orElseThrow();
+        assertThat(found.getTitle()).isEqualTo("Original");
+
+        found.setStatus(Quote.Status.ARCHIVED);
+        assertThat(repository.findById(quote.getId()).orElseThrow().getStatus()).isEqualTo(Quote.Status.ACTIVE);
+        assertThat(repository.findByStatus(Quote.Status.ARCHIVED)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should read one consistent state through a snapshot while writes go on")
+    void testSnapshotIsolation() {
+        Quote kept = new Quote("Kept", "Desc");
+        kept.setCategory("Stoic");
+        Quote moved = new Quote("Moved", "Desc");
+        moved.setCategory("Stoic");
+        Quote removed = new Quote("Removed", "Desc");
+        removed.setCategory("Zen");
+        repository.saveAll(List.of(kept, moved, removed));
+
+        try (QuoteSnapshot snapshot = repository.snapshot()) {
+            moved.setCategory("Zen");
+            moved.setStatus(Quote.Status.INACTIVE);
+            repository.save(moved);
+            repository.deleteById(removed.getId());
+            Quote added = new Quote("Added", "Desc");
+            added.setCategory("Cynic");
+            repository.save(added);
+
+            assertThat(snapshot.findAll()).extracting(Quote::getTitle).containsExactly("Kept", "Moved", "Removed");
+            assertThat(snapshot.findByCategory("stoic")).extracting(Quote::getTitle).containsExactly("Kept", "Moved");
+            assertThat(snapshot.findByCategory("zen")).extracting(Quote::getTitle).containsExactly("Removed");
+            assertThat(snapshot.findDistinctCategories()).containsExactly("stoic", "zen");
+            assertThat(snapshot.findByStatus(Quote.Status.INACTIVE)).isEmpty();
+            assertThat(snapshot.countByStatus().get(Quote.Status.ACTIVE)).isEqualTo(3);
+            assertThat(snapshot.count()).isEqualTo(3);
+            assertThat(snapshot.findById(removed.getId())).isPresent();
+            assertThat(snapshot.findById(added.getId())).isEmpty();
+            assertThat(snapshot.findByText("added", null, 10).items()).isEmpty();
+
+            CursorPage<Quote, Long> page = snapshot.findAll(kept.getId(), 1);
+            assertThat(page.items()).extracting(Quote::getTitle).containsExactly("Moved");
+            assertThat(page.nextCursor()).isEqualTo(moved.getId());
+
+            // the live view has moved on
+            assertThat(repository.findByCategory("zen")).extracting(Quote::getTitle).containsExactly("Moved");
+            assertThat(repository.count()).isEqualTo(3);
+        }
+
+        try (QuoteSnapshot later = repository.snapshot()) {
+            assertThat(later.findAll()).extracting(Quote::getTitle).containsExactly("Kept", "Moved", "Added");
+            assertThat(later.findDistinctCategories()).containsExactly("cynic", "stoic", "zen");
+        }
+    }
+
+    @Test
+    @DisplayName("Should answer text queries and lookups as of the snapshot")
+    void testSnapshotText() {
+        Quote rewritten = new Quote("Virtue", "The only good");
+        Quote removed = new Quote("Virtue again", "Removed later");
+        Quote unchanged = new Quote("Virtue kept", "Never touched");
+        repository.saveAll(List.of(rewritten, removed, unchanged));
+
+        try (QuoteSnapshot snapshot = repository.snapshot()) {
+            rewritten.setTitle("Pleasure");
+            repository.save(rewritten);
+            repository.deleteById(removed.getId());
+            repository.save(new Quote("Virtue added", "After the snapshot"));
+
+            assertThat(snapshot.findByText("virtue", null, 10).items()).extracting(Quote::getTitle)
+                    .containsExactly("Virtue", "Virtue again", "Virtue kept");
+            assertThat(snapshot.findByText("pleasure", null, 10).items()).isEmpty();
+            CursorPage<Quote, Long> page = snapshot.findByText("virtue", rewritten.getId(), 1);
+            assertThat(page.items()).extracting(Quote::getTitle).containsExactly("Virtue again");
+            assertThat(page.nextCursor()).isEqualTo(removed.getId());
+            assertThat(snapshot.findById(null)).isEmpty();
+
+            repository.deleteAll();
+            assertThat(snapshot.findByText("virtue", removed.getId(), 10).items()).extracting(Quote::getTitle)
+                    .containsExactly("Virtue kept");
+        }
+    }
+
+    @Test
+    @DisplayName("Should publish saves and deletes to the change feed in order")
+    void testChangeFeed() {
+        ChangeFeed feed = repository.changeFeed();
+        long start = feed.latest();
+
+        Quote quote = repository.save(new Quote("Item 1", "Desc"));
+        repository.saveAll(List.of(new Quote("Item 2", "Desc")));
+        repository.deleteById(quote.getId());
+        repository.deleteById(quote.getId());
+        repository.deleteAll();
+
+        ChangeFeed.Batch batch = feed.read(start, 10);
+        assertThat(batch.changes()).extracting(QuoteChange::type).containsExactly(
+                QuoteChange.Type.SAVED, QuoteChange.Type.SAVED, QuoteChange.Type.DELETED, QuoteChange.Type.CLEARED);
+        assertThat(batch.changes().get(0).quote().getTitle()).isEqualTo("Item 1");
+        assertThat(batch.changes().get(2).id()).isEqualTo(quote.getId());
+    }
+
+    @Test
+    @DisplayName("Should advance a quote's version only when that quote is saved")
+    void testQuoteVersion() {
+        Quote first = repository.save(new Quote("Item 1", "Desc"));
+        Quote second = repository.save(new Quote("Item 2", "Desc"));
+        long version = repository.version(first.getId()).orElseThrow();
+        assertThat(repository.version()).isGreaterThanOrEqualTo(version);
+
+        second.setTitle("Item 2 updated");
+        repository.save(second);
+        assertThat(repository.version(first.getId())).hasValue(version);
+
+        first.setTitle("Item 1 updated");
+        repository.save(first);
+        assertThat(repository.version(first.getId()).orElseThrow()).isGreaterThan(version);
+
+        repository.deleteById(first.getId());
+        assertThat(repository.version(first.getId())).isEmpty();
+        assertThat(repository.version(999L)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should apply an update only at the expected version")
+    void testUpdate() {
+        Quote quote = repository.save(new Quote("Item 1", "Desc"));
+        long version = repository.version(quote.getId()).orElseThrow();
+
+        Versioned<Quote> updated = repository.update(quote.getId(), version, q -> {
+            q.setTitle("Item 1 updated");
+            return q;
+        }).orElseThrow();
+        assertThat(updated.value().getTitle()).isEqualTo("Item 1 updated");
+        assertThat(updated.value().getDescription()).isEqualTo("Desc");
+        assertThat(updated.version()).isGreaterThan(version)
+                .isEqualTo(repository.version(quote.getId()).orElseThrow());
+        assertThat(repository.findById(quote.getId())).get()
+                .extracting(Quote::getTitle).isEqualTo("Item 1 updated");
+
+        assertThatThrownBy(() -> repository.update(quote.getId(), version, q -> q))
+                .isInstanceOf(VersionConflictException.class)
+                .extracting(e -> ((VersionConflictException) e).currentVersion())
+                .isEqualTo(updated.version());
+        assertThat(repository.findById(quote.getId())).get()
+                .extracting(Quote::getTitle).isEqualTo("Item 1 updated");
+
+        assertThat(repository.update(quote.getId(), null, q -> q)).isPresent();
+        assertThat(repository.update(999L, null, q -> q)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should answer a combined query with only the quotes passing every filter")
+    void testQuery() {
+        List<Quote> quotes = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Quote quote = new Quote("Quote " + (char) ('z' - i % 26) + i, i % 2 == 0 ? "about time" : "about life");
+            quote.setCategory(i % 4 == 0 ? "Stoic" : "Zen");
+            quote.setAuthor(i % 5 == 0 ? "Seneca" : "Unknown");
+            quote.addTag(i % 3 == 0 ? "wisdom" : "humor");
+            if (i % 10 == 0) quote.setStatus(Quote.Status.ARCHIVED);
+            quotes.add(quote);
+        }
+        repository.saveAll(quotes);
+
+        // i % 4 == 0, i % 3 == 0, even, not archived: i = 12, 24, 36
+        QueryResult result = repository.query(new QuoteQuery(Quote.Status.ACTIVE, " stoic ",
+                Set.of("Wisdom"), null, "time", QuoteQuery.Sort.ID, 10));
+        assertThat(result.items()).extracting(Quote::getId).containsExactly(
+                quotes.get(12).getId(), quotes.get(24).getId(), quotes.get(36).getId());
+        assertThat(result.plan().matched()).isEqualTo(3);
+        assertThat(result.plan().stoppedEarly()).isFalse();
+
+        QueryResult top = repository.query(new QuoteQuery(null, null, null, "seneca", null, QuoteQuery.Sort.ID_DESC, 2));
+        assertThat(top.items()).extracting(Quote::getId).containsExactly(
+                quotes.get(35).getId(), quotes.get(30).getId());
+        assertThat(top.plan().stoppedEarly()).isTrue();
+
+        QueryResult byTitle = repository.query(new QuoteQuery(null, "zen", null, null, null, QuoteQuery.Sort.TITLE, 3));
+        assertThat(byTitle.items()).extracting(Quote::getTitle).containsExactly("Quote a25", "Quote c23", "Quote d22");
+
+        assertThat(repository.query(new QuoteQuery(null, "unknown", null, null, null, null, 10)).items()).isEmpty();
+        assertThat(repository.query(new QuoteQuery(null, null, Set.of("nope"), null, null, null, 10)).items())
+                .isEmpty();
+        assertThat(repository.query(new QuoteQuery(null, null, null, null, null, null, 100)).items()).hasSize(40);
+    }
+
+    @Test
+    @DisplayName("Should find quotes by creation and update time")
+    void testFindByTime() {
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        List<Quote> quotes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Quote quote = new Quote("Quote " + i, "Desc");
+            // created on day i, updated on day 10 - i
+            quote.restoreTimestamps(base.plusDays(i), base.plusDays(10 - i));
+            quotes.add(repository.save(quote));
+        }
+
+        assertThat(repository.findCreatedBetween(base.plusDays(2), base.plusDays(5)))
+                .extracting(Quote::getTitle).containsExactly("Quote 2", "Quote 3", "Quote 4");
+        assertThat(repository.findCreatedBetween(null, base.plusDays(1))).extracting(Quote::getTitle)
+                .containsExactly("Quote 0");
+        assertThat(repository.findCreatedBetween(base.plusDays(5), base.plusDays(2))).isEmpty();
+        assertThat(repository.findUpdatedSince(base.plusDays(8))).extracting(Quote::getTitle)
+                .containsExactly("Quote 2", "Quote 1", "Quote 0");
+        assertThat(repository.findLatest(2)).extracting(Quote::getTitle).containsExactly("Quote 9", "Quote 8");
+
+        Quote moved = quotes.get(5);
+        moved.restoreTimestamps(base.plusDays(5), base.plusDays(20));
+        repository.save(moved);
+        repository.deleteById(quotes.get(9).getId());
+
+        assertThat(repository.findUpdatedSince(base.plusDays(8))).extracting(Quote::getTitle)
+                .containsExactly("Quote 2", "Quote 1", "Quote 0", "Quote 5");
+        assertThat(repository.findLatest(2)).extracting(Quote::getTitle).containsExactly("Quote 8", "Quote 7");
+        assertThat(repository.findCreatedBetween(null, null)).hasSize(9);
+    }
+
+    @Test
+    @DisplayName("Should move matching quotes between statuses in bounded batches")
+    void testUpdateStatusWhere() {
+        List<Quote> quotes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Quote quote = new Quote("Quote " + i, i % 2 == 0 ? "old" : "new");
+            quote.setStatus(i < 8 ? Quote.Status.INACTIVE : Quote.Status.ACTIVE);
+            quotes.add(quote);
+        }
+        repository.saveAll(quotes);
+
+        CursorPage<Long, Long> first = repository.updateStatusWhere(Quote.Status.INACTIVE, Quote.Status.ARCHIVED,
+                q -> q.getDescription().equals("old"), null, 3);
+        assertThat(first.items()).containsExactly(quotes.get(0).getId(), quotes.get(2).getId());
+        assertThat(first.nextCursor()).isEqualTo(quotes.get(2).getId());
+
+        CursorPage<Long, Long> rest = repository.updateStatusWhere(Quote.Status.INACTIVE, Quote.Status.ARCHIVED,
+                q -> q.getDescription().equals("old"), first.nextCursor(), 100);
+        assertThat(rest.items()).containsExactly(quotes.get(4).getId(), quotes.get(6).getId());
+        assertThat(rest.nextCursor()).isNull();
+
+        assertThat(repository.countByStatus())
+                .containsEntry(Quote.Status.ARCHIVED, 4L)
+                .containsEntry(Quote.Status.INACTIVE, 4L)
+                .containsEntry(Quote.Status.ACTIVE, 2L);
+        assertThat(repository.findById(quotes.get(8).getId()).orElseThrow().getStatus())
+                .isEqualTo(Quote.Status.ACTIVE);
+
+        assertThat(repository.updateStatusWhere(Quote.Status.INACTIVE, Quote.Status.ACTIVE, q -> true)).isEqualTo(4);
+        assertThat(repository.findByStatus(Quote.Status.INACTIVE)).isEmpty();
+        assertThat(repository.findByStatus(Quote.Status.ACTIVE)).hasSize(6);
+    }
+
+    @Test
+    @DisplayName("Should move only quotes last updated before the cutoff, in batches")
+    void testUpdateStatusUpdatedBefore() {
+        LocalDateTime base = LocalDateTime.of(2020, 1, 1, 0, 0);
+        List<Quote> quotes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Quote quote = new Quote("Quote " + i, "Desc");
+            quote.setStatus(i % 3 == 0 ? Quote.Status.INACTIVE : Quote.Status.ACTIVE);
+            quote.restoreTimestamps(base.plusDays(i), base.plusDays(i));
+            quotes.add(quote);
+        }
+        repository.saveAll(quotes);
+
+        assertThat(repository.updateStatusUpdatedBefore(Quote.Status.ACTIVE, Quote.Status.ARCHIVED,
+                base.plusDays(6), 2)).isEqualTo(4);
+        assertThat(repository.findByStatus(Quote.Status.ARCHIVED)).extracting(Quote::getTitle)
+                .containsExactly("Quote 1", "Quote 2", "Quote 4", "Quote 5");
+        assertThat(repository.findByStatus(Quote.Status.INACTIVE)).hasSize(4);
+        assertThat(repository.findUpdatedSince(base.plusDays(6))).hasSize(8);
+
+        assertThat(repository.updateStatusUpdatedBefore(Quote.Status.ACTIVE, Quote.Status.ARCHIVED,
+                base.plusDays(6), 2)).isZero();
+        assertThatThrownBy(() -> repository.updateStatusUpdatedBefore(Quote.Status.ACTIVE, Quote.Status.ARCHIVED,
+                base, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    @DisplayName("Should keep every other index current when only statuses move")
+    void testUpdateStatusWhereKeepsIndexes() {
+        LocalDateTime base = LocalDateTime.of(2020, 1, 1, 0, 0);
+        Quote quote = new Quote("Meditations", "Written by a Roman emperor");
+        quote.setCategory("Stoic");
+        quote.setAuthor("Marcus Aurelius");
+        quote.addTag("virtue");
+        quote.setStatus(Quote.Status.INACTIVE);
+        quote.restoreTimestamps(base, base);
+        repository.save(quote);
+
+        assertThat(repository.updateStatusWhere(Quote.Status.INACTIVE, Quote.Status.ARCHIVED, q -> true))
+                .isEqualTo(1);
+
+        assertThat(repository.findByStatus(Quote.Status.ARCHIVED)).extracting(Quote::getId)
+                .containsExactly(quote.getId());
+        assertThat(repository.findByText("roman")).extracting(Quote::getStatus).containsExactly(Quote.Status.ARCHIVED);
+        assertThat(repository.findByTitleContaining("medit")).hasSize(1);
+        assertThat(repository.findByCategory("stoic")).hasSize(1);
+        assertThat(repository.findByAuthor("Marcus Aurelius")).hasSize(1);
+        assertThat(repository.findByTag("virtue")).hasSize(1);
+        assertThat(repository.findCreatedBetween(base, base.plusDays(1))).hasSize(1);
+        assertThat(repository.findUpdatedSince(base.plusDays(1))).extracting(Quote::getId)
+                .containsExactly(quote.getId());
+
+        Quote moved = repository.findById(quote.getId()).orElseThrow();
+        moved.setCategory("Roman");
+        repository.save(moved);
+        assertThat(repository.findByCategory("stoic")).isEmpty();
+        assertThat(repository.findByCategory("roman")).hasSize(1);
+
+        repository.deleteById(quote.getId());
+        assertThat(repository.findByText("roman")).isEmpty();
+        assertThat(repository.findByTag("virtue")).isEmpty();
+        assertThat(repository.findUpdatedSince(base)).isEmpty();
+        assertThat(repository.countByStatus().values()).containsOnly(0L);
+    }
+}
@@ -1,16 +1,30 @@
 package edu.trincoll.service;
 
 import edu.trincoll.model.Quote;
+import edu.trincoll.repository.CursorPage;
 import edu.trincoll.repository.InMemoryQuoteRepository;
 import edu.trincoll.repository.QuoteRepository;
+import edu.trincoll.repository.VersionConflictException;
+import edu.trincoll.repository.Versioned;
+import edu.trincoll.search.SearchMode;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -130,6 +144,63 @@ class QuoteServiceTest {
             assertThat(service.findById(id)).isEmpty();
         }
         
+        @Test
+        @DisplayName("Should save valid items of a batch and report invalid ones")
+        void testSaveBatch() {
+            List<Quote> batch = List.of(
+                    new Quote("First", "Desc"),
+                    new Quote("", "Missing title"),
+                    new Quote("Third", "Desc"));
+            
+            BatchResult<Long> result = service.saveBatch(batch);
+            
+            assertThat(result.saved()).isEqualTo(2);
+            assertThat(result.failed()).isEqualTo(1);
+            assertThat(result.items()).extracting(BatchResult.Item::index).containsExactly(0, 1, 2);
+            assertThat(result.items().get(1).id()).isNull();
+            assertThat(result.items().get(1).error()).contains("Title is required");
+            assertThat(result.items().get(2).id()).isEqualTo(result.items().get(0).id() + 1);
+            assertThat(service.count()).isEqualTo(2);
+        }
+        
+        @Test
+        @DisplayName("Should reject batch entries that carry an ID")
+        void testSaveBatchRejectsIds() {
+            Quote existing = service.save(new Quote("Existing", "Desc"));
+            Quote overwrite = new Quote("Overwrite", "Desc");
+            overwrite.setId(existing.getId());
+            Quote ahead = new Quote("Ahead", "Desc");
+            ahead.setId(1_000L);
+            
+            BatchResult<Long> result = service.saveBatch(List.of(overwrite, ahead, new Quote("New", "Desc")));
+            
+            assertThat(result.saved()).isEqualTo(1);
+            assertThat(result.items()).extracting(BatchResult.Item::error)
+                    .containsExactly("ID must not be set when creating", "ID must not be set when creating", null);
+            assertThat(result.items().get(2).id()).isEqualTo(existing.getId() + 1);
+            assertThat(service.findById(existing.getId())).map(Quote::getTitle).contains("Existing");
+            assertThat(service.findById(1_000L)).isEmpty();
+        }
+        
+        @Test
+        @DisplayName("Should validate large batches in parallel and reject all on saveAll")
+        void testSaveAllLargeBatch() {
+            List<Quote> batch = new ArrayList<>();
+            for (int i = 0; i < 2_000; i++) {
+                batch.add(new Quote("Quote " + i, "Desc"));
+            }
+            batch.set(1_500, new Quote(null, "Invalid"));
+            
+            assertThatThrownBy(() -> service.saveAll(batch))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("Title is required");
+            assertThat(service.count()).isZero();
+            
+            BatchResult<Long> result = service.saveBatch(batch);
+            assertThat(result.saved()).isEqualTo(1_999);
+            assertThat(result.items().get(1_500).error()).isNotNull();
+        }
+        
         @Test
         @DisplayName("Should throw exception when deleting non-existent item")
         void testDeleteNonExistent() {
@@ -244,6 +315,22 @@ class QuoteServiceTest {
             assertThat(popular.get(0)).isEqualTo("urgent"); // appears twice
         }
         
+        @Test
+        @DisplayName("Should keep popular tag ranking current as tags change")
+        void testMostPopularTagsAfterChanges() {
+            assertThat(service.getMostPopularTags(10))
+                    .containsExactly("urgent", "home", "project-a", "project-b");
+
+            Quote quote = repository.findByTag("urgent").get(0);
+            quote.removeTag("urgent");
+            service.save(quote);
+            Quote extra = new Quote("Home Task", "Chores");
+            extra.addTag("home");
+            service.save(extra);
+
+            assertThat(service.getMostPopularTags(2)).containsExactly("home", "project-a");
+        }
+        
         @Test
         @DisplayName("Should search items by query")
         void testSearch() {
@@ -255,6 +342,34 @@ class QuoteServiceTest {
                     .contains("Work Task 1", "Work Task 2");
         }
         
+        @Test
+        @DisplayName("Should match whole words in token mode and substrings in fallback mode")
+        void testSearchModes() {
+            assertThat(service.search("tas")).isEmpty();
+            assertThat(service.search("tas", SearchMode.SUBSTRING)).hasSize(4);
+
+            assertThat(service.search("IMPORTANT work")).extracting(Quote::getTitle)
+                    .containsExactly("Work Task 1");
+            assertThat(service.search("project", SearchMode.TOKEN)).extracting(Quote::getTitle)
+                    .containsExactlyInAnyOrder("Work Task 1", "Work Task 2");
+        }
+        
+        @Test
+        @DisplayName("Should page substring search results and reject non-positive limits")
+        void testSearchPaged() {
+            CursorPage<Quote, Long> first = service.search("task", SearchMode.SUBSTRING, null, 3);
+            assertThat(first.items()).hasSize(3);
+            assertThat(first.nextCursor()).isNotNull();
+
+            CursorPage<Quote, Long> rest = service.search("task", SearchMode.SUBSTRING, first.nextCursor(), 3);
+            assertThat(rest.items()).hasSize(1);
+            assertThat(rest.nextCursor()).isNull();
+
+            assertThatThrownBy(() -> service.findAll(null, 0))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("Limit must be positive");
+        }
+        
         @Test
         @DisplayName("Should archive inactive items")
         void testArchiveInactiveItems() {
@@ -270,4 +385,178 @@ class QuoteServiceTest {
             assertThat(archivedQuotes).hasSize(2);
         }
     }
-}
\ No newline at end of file
+
+    @Nested
+    @DisplayName("Parallel Scan Tests")
+    class ParallelScanTests {
+
+        @Test
+        @DisplayName("Should return the sequential results, in the same order, when scanning in parallel")
+        void testParallelScansMatchSequential() {
+            List<Quote> quotes = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                Quote quote = new Quote("Quote " + i, i % 3 == 0 ? "about time" : "about life");
+                quote.setCategory("Category " + (i % 7));
+                quote.addTag("tag" + (i % 11));
+                quotes.add(quote);
+            }
+            repository.saveAll(quotes);
+
+            try (ParallelQueries parallel = ParallelQueries.of(4, 1)) {
+                QuoteService parallelService = new QuoteService(repository, parallel);
+
+                assertThat(parallelService.groupByCategory())
+                        .usingRecursiveComparison().isEqualTo(service.groupByCategory());
+                assertThat(parallelService.getAllUniqueTags()).containsExactlyElementsOf(service.getAllUniqueTags());
+                assertThat(parallelService.search("time", SearchMode.SUBSTRING))
+                        .usingRecursiveFieldByFieldElementComparator()
+                        .containsExactlyElementsOf(service.search("time", SearchMode.SUBSTRING));
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Result Cache Tests")
+    class ResultCacheTests {
+
+        @Test
+        @DisplayName("Should serve aggregates from the cache until a write")
+        void testAggregatesCachedUntilWrite() {
+            repository.save(new Quote("First", "Desc"));
+
+            Map<Quote.Status, Long> counts = service.countByStatus();
+            assertThat(service.countByStatus()).isSameAs(counts);
+            assertThat(service.cacheStats().hits()).isEqualTo(1);
+
+            repository.save(new Quote("Second", "Desc"));
+
+            assertThat(service.countByStatus()).isNotSameAs(counts)
+                    .containsEntry(Quote.Status.ACTIVE, 2L);
+            assertThat(service.cacheStats().misses()).isEqualTo(2);
+        }
+
+        @Test
+        @DisplayName("Should give every caller its own copies of cached quotes")
+        void testCachedQuotesCopiedPerCaller() {
+            Quote saved = new Quote("First", "Desc");
+            saved.setCategory("Stoic");
+            repository.save(saved);
+
+            service.groupByCategory().get("Stoic").getFirst().setTitle("Changed by a caller");
+
+            assertThat(service.groupByCategory().get("Stoic")).extracting(Quote::getTitle).containsExactly("First");
+            assertThat(service.cacheStats().hits()).isEqualTo(1);
+        }
+    }
+
+    @Nested
+    @DisplayName("Patch Tests")
+    class PatchTests {
+
+        @Test
+        @DisplayName("Should change only the patched fields and validate only those")
+        void testPatch() {
+            Quote quote = new Quote("Title", "Desc");
+            quote.setCategory("Stoic");
+            quote.setTags(Set.of("time"));
+            Long id = service.save(quote).getId();
+
+            Map<String, Object> changes = new HashMap<>();
+            changes.put("title", "New title");
+            changes.put("category", null);
+            changes.put("tags", List.of("life", "death"));
+            Versioned<Quote> patched = service.patch(id, null, changes).orElseThrow();
+
+            assertThat(patched.value().getTitle()).isEqualTo("New title");
+            assertThat(patched.value().getDescription()).isEqualTo("Desc");
+            assertThat(patched.value().getCategory()).isNull();
+            assertThat(patched.value().getTags()).containsExactlyInAnyOrder("life", "death");
+            assertThat(service.findById(id)).get().extracting(Quote::getTitle).isEqualTo("New title");
+
+            assertThatThrownBy(() -> service.patch(id, null, Map.of("title", " ")))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessage("Title is required");
+            assertThatThrownBy(() -> service.patch(id, null, Map.of("createdAt", "2020-01-01T00:00:00")))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> service.patch(id, null, Map.of("status", "GONE")))
+                    .isInstanceOf(IllegalArgumentException.class);
+            assertThatThrownBy(() -> service.patch(id, patched.version() - 1, Map.of("status", "ARCHIVED")))
+                    .isInstanceOf(VersionConflictException.class);
+            assertThat(service.findById(id)).get().extracting(Quote::getStatus).isEqualTo(Quote.Status.ACTIVE);
+
+            assertThat(service.patch(999L, null, Map.of("title", "x"))).isEmpty();
+        }
+    }
+
+    @Nested
+    @DisplayName("Archival Tests")
+    class ArchivalTests {
+
+        @Test
+        @DisplayName("Should archive only items not updated within the maximum age")
+        void testArchiveOlderThan() {
+            LocalDateTime now = LocalDateTime.now();
+            List<Quote> quotes = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                Quote quote = new Quote("Quote " + i, "Desc");
+                if (i == 6) quote.setStatus(Quote.Status.INACTIVE);
+                // even items were last updated two years ago
+                LocalDateTime updated = i % 2 == 0 ? now.minusYears(2) : now;
+                quote.restoreTimestamps(updated, updated);
+                quotes.add(quote);
+            }
+            repository.saveAll(quotes);
+
+            int archived = service.archiveOlderThan(Duration.ofDays(365),
+                    Set.of(Quote.Status.ACTIVE, Quote.Status.INACTIVE), 2);
+
+            assertThat(archived).isEqualTo(4);
+            assertThat(service.findByStatus(Quote.Status.ARCHIVED)).extracting(Quote::getTitle)
+                    .containsExactly("Quote 0", "Quote 2", "Quote 4", "Quote 6");
+            assertThat(service.archiveOlderThan(Duration.ofDays(365), Set.of(Quote.Status.ACTIVE), 2)).isZero();
+        }
+    }
+
+    @Nested
+    @DisplayName("Coalescing Tests")
+    class CoalescingTests {
+
+        @Test
+        @DisplayName("Should share one index search between concurrent equivalent queries")
+        void testConcurrentSearchesShareOneLookup() throws Exception {
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicInteger lookups = new AtomicInteger();
+            QuoteRepository slow = new InMemoryQuoteRepository() {
+                @Override
+                public List<Quote> findByText(String query) {
+                    lookups.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.findByText(query);
+                }
+            };
+            slow.save(new Quote("Love and life", "Desc"));
+            QuoteService slowService = new QuoteService(slow);
+
+            try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+                Future<List<Quote>> first = executor.submit(() -> slowService.search("love life"));
+                Future<List<Quote>> second = executor.submit(() -> slowService.search("LIFE,  love"));
+                while (slowService.coalescingStats().coalesced() < 1) {
+                    Thread.sleep(1);
+                }
+                release.countDown();
+
+                // one lookup, but each caller gets its own copy of the quote
+                Quote a = first.get(10, TimeUnit.SECONDS).getFirst();
+                Quote b = second.get(10, TimeUnit.SECONDS).getFirst();
+                assertThat(a).isNotSameAs(b).usingRecursiveComparison().isEqualTo(b);
+            }
+            assertThat(lookups).hasValue(1);
+            assertThat(slowService.search("love life")).hasSize(1);
+            assertThat(lookups).hasValue(2);
+        }
+    }
+}
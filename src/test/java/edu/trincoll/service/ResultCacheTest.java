@@ -0,0 +1,44 @@
+package edu.trincoll.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResultCacheTest {
+
+    @Test
+    @DisplayName("Should serve a result until the version changes")
+    void testServesUntilVersionChanges() {
+        ResultCache cache = new ResultCache(10);
+        AtomicInteger computed = new AtomicInteger();
+
+        assertThat(cache.get(1, "count", List.of(), computed::incrementAndGet)).isEqualTo(1);
+        assertThat(cache.get(1, "count", List.of(), computed::incrementAndGet)).isEqualTo(1);
+        assertThat(cache.get(1, "count", List.of("other"), computed::incrementAndGet)).isEqualTo(2);
+        assertThat(cache.get(2, "count", List.of(), computed::incrementAndGet)).isEqualTo(3);
+
+        assertThat(cache.stats()).isEqualTo(new ResultCache.Stats(1, 3, 0, 2));
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used result beyond its size")
+    void testEvictsLeastRecentlyUsed() throws InterruptedException {
+        ResultCache cache = new ResultCache(2);
+        cache.get(1, "top", List.of(1), () -> "one");
+        Thread.sleep(1);
+        cache.get(1, "top", List.of(2), () -> "two");
+        Thread.sleep(1);
+        cache.get(1, "top", List.of(1), () -> "recomputed");
+        Thread.sleep(1);
+        cache.get(1, "top", List.of(3), () -> "three");
+
+        assertThat(cache.get(1, "top", List.of(1), () -> "recomputed")).isEqualTo("one");
+        assertThat(cache.get(1, "top", List.of(2), () -> "two again")).isEqualTo("two again");
+        assertThat(cache.stats().evictions()).isEqualTo(2);
+        assertThat(cache.stats().size()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,94 @@
+package edu.trincoll.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    @Test
+    @DisplayName("Should run one computation for concurrent identical calls")
+    void testCoalescesConcurrentCalls() throws Exception {
+        SingleFlight flights = new SingleFlight();
+        AtomicInteger computed = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(CALLERS)) {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> flights.run(1, "count", List.of(), () -> {
+                    await(release);
+                    return computed.incrementAndGet();
+                })));
+            }
+            while (flights.stats().coalesced() < CALLERS - 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            for (Future<Integer> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo(1);
+            }
+        }
+        assertThat(flights.stats()).isEqualTo(new SingleFlight.Stats(CALLERS, CALLERS - 1, 0));
+    }
+
+    @Test
+    @DisplayName("Should not keep a result once its computation has finished")
+    void testDoesNotRetainResults() {
+        SingleFlight flights = new SingleFlight();
+        AtomicInteger computed = new AtomicInteger();
+
+        assertThat(flights.run(1, "count", List.of(), computed::incrementAndGet)).isEqualTo(1);
+        assertThat(flights.run(1, "count", List.of(), computed::incrementAndGet)).isEqualTo(2);
+        assertThat(flights.stats().coalesced()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should throw a failed computation's exception to every waiting caller")
+    void testPropagatesFailure() throws Exception {
+        SingleFlight flights = new SingleFlight();
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(2)) {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(executor.submit(() -> flights.run(1, "fail", List.of(), () -> {
+                    await(release);
+                    throw new IllegalStateException("boom");
+                })));
+            }
+            while (flights.stats().coalesced() < 1) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            for (Future<Object> result : results) {
+                assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                        .hasCauseInstanceOf(IllegalStateException.class);
+            }
+        }
+        assertThat(flights.stats().inFlight()).isZero();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}